@@ -19,13 +19,106 @@
 
 package to.adapt.from02oak;
 
+import joptsimple.OptionException;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
 import to.adapt.from02oak.console.Console;
+import to.adapt.from02oak.repository.Repository;
+import to.adapt.from02oak.repository.RepositoryConfig;
 
+import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 public class Main {
 
     public static void main(String[] args) throws IOException {
-        new Console().start();
+        OptionParser parser = new OptionParser();
+        OptionSpec<File> config = parser.accepts("config", "properties file with the repository configuration")
+                .withRequiredArg().ofType(File.class);
+        OptionSpec<String> path = parser.accepts("repository", "root of the repository on disk")
+                .withRequiredArg();
+        OptionSpec<Integer> segmentCache = parser.accepts("segment-cache", "segment cache size in MB")
+                .withRequiredArg().ofType(Integer.class);
+        OptionSpec<Integer> stringCache = parser.accepts("string-cache", "string cache size in MB")
+                .withRequiredArg().ofType(Integer.class);
+        OptionSpec<Integer> templateCache = parser.accepts("template-cache", "template cache size in MB")
+                .withRequiredArg().ofType(Integer.class);
+        OptionSpec<Boolean> mmap = parser.accepts("mmap", "memory map the tar files. Heap buffers if false")
+                .withRequiredArg().ofType(Boolean.class);
+        OptionSpec<Integer> tarSize = parser.accepts("tar-size", "maximum tar file size in MB")
+                .withRequiredArg().ofType(Integer.class);
+        OptionSpec<Integer> sessions = parser.accepts("sessions", "maximum size of the session pool")
+                .withRequiredArg().ofType(Integer.class);
+        OptionSpec<String> asyncIndexes = parser.accepts("async-index", "index to be updated asynchronously. Comma separated")
+                .withRequiredArg().withValuesSeparatedBy(',');
+        OptionSpec<Integer> asyncInterval = parser.accepts("async-interval", "seconds between async index updates")
+                .withRequiredArg().ofType(Integer.class);
+        OptionSpec<String> lucene = parser.accepts("lucene", "properties to index with Lucene. Comma separated")
+                .withRequiredArg().withValuesSeparatedBy(',');
+        OptionSpec<Integer> blobCache = parser.accepts("blob-cache", "heap cache of small binaries in MB")
+                .withRequiredArg().ofType(Integer.class);
+        OptionSpec<Integer> blobCacheRecord = parser.accepts("blob-cache-record", "biggest binary cached in KB")
+                .withRequiredArg().ofType(Integer.class);
+        OptionSpec<String> script = parser.accepts("script", "run the commands in the file unattended. `-` for stdin")
+                .withRequiredArg();
+        OptionSpec<Integer> group = parser.accepts("group", "in script mode, save every n mutating commands")
+                .withRequiredArg().ofType(Integer.class).defaultsTo(0);
+        parser.accepts("help", "print this help").forHelp();
+
+        RepositoryConfig c;
+        String scriptFile;
+        int groupSize;
+        try {
+            OptionSet options = parser.parse(args);
+            if (options.has("help")) {
+                parser.printHelpOn(System.out);
+                return;
+            }
+
+            // command line options win over the properties file
+            c = options.has(config) ? RepositoryConfig.load(options.valueOf(config)) : new RepositoryConfig();
+            if (options.has(path)) { c.setRepositoryPath(options.valueOf(path)); }
+            if (options.has(segmentCache)) { c.setSegmentCacheSize(options.valueOf(segmentCache)); }
+            if (options.has(stringCache)) { c.setStringCacheSize(options.valueOf(stringCache)); }
+            if (options.has(templateCache)) { c.setTemplateCacheSize(options.valueOf(templateCache)); }
+            if (options.has(mmap)) { c.setMemoryMapping(options.valueOf(mmap)); }
+            if (options.has(tarSize)) { c.setMaxTarSize(options.valueOf(tarSize)); }
+            if (options.has(sessions)) { c.setSessionPoolSize(options.valueOf(sessions)); }
+            if (options.has(asyncIndexes)) { c.setAsyncIndexes(options.valuesOf(asyncIndexes)); }
+            if (options.has(asyncInterval)) { c.setAsyncInterval(options.valueOf(asyncInterval)); }
+            if (options.has(lucene)) { c.setLuceneProperties(options.valuesOf(lucene)); }
+            if (options.has(blobCache)) { c.setBlobCacheSize(options.valueOf(blobCache)); }
+            if (options.has(blobCacheRecord)) { c.setBlobCacheMaxRecord(options.valueOf(blobCacheRecord)); }
+
+            scriptFile = options.has(script) ? options.valueOf(script) : null;
+            groupSize = options.valueOf(group);
+        } catch (OptionException | IllegalArgumentException e) {
+            System.err.println("Error parsing the command line. " + e.getMessage());
+            parser.printHelpOn(System.err);
+            System.exit(1);
+            return;
+        }
+
+        Repository.configure(c);
+        if (scriptFile == null) {
+            new Console().start();
+        } else {
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(System.out, UTF_8));
+            try (BufferedReader in = "-".equals(scriptFile)
+                    ? new BufferedReader(new InputStreamReader(System.in, UTF_8))
+                    : Files.newBufferedReader(Paths.get(scriptFile), UTF_8)) {
+                int failures = new Console().runScript(in, out, groupSize);
+                System.exit(failures == 0 ? 0 : 1);
+            }
+        }
     }
 }
@@ -1,78 +1,223 @@
 package to.adapt.from02oak;
 
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.Lists;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.api.Type;
 import org.apache.jackrabbit.oak.commons.PathUtils;
+import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import to.adapt.from02oak.repository.Repository;
 
 import javax.annotation.Nonnull;
-import javax.jcr.*;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
+/**
+ * dump the repository content walking the tree in parallel.
+ *
+ * Subtrees are split across a {@link ForkJoinPool} working straight on {@link NodeState}. Each node is printed
+ * with its full path followed by its properties; sibling subtrees may be printed in any order. Meant for
+ * inspection: to move content between repositories use the {@code export} and {@code import} commands.
+ *
+ * Usage:
+ *      WalkTree [--path /start] [--depth n] [--out file] [--threads n]
+ */
 public class WalkTree {
     private final static Logger LOG = LoggerFactory.getLogger(WalkTree.class);
 
-    private WalkTree() {
+    /**
+     * size of the per-task buffer after which the output is flushed to the sink
+     */
+    private static final int FLUSH_THRESHOLD = 64 * 1024;
+
+    /**
+     * how many subtrees are forked at most in one go, so that flat nodes don't queue a task per child
+     */
+    static final int FORK_CHUNK = 64;
+
+    private final Writer sink;
+    private final int maxDepth;
+    private final LongAdder nodes = new LongAdder();
+
+    /**
+     * @param sink where to write the dump. Writes are synchronised on it. Cannot be null.
+     * @param maxDepth how deep to walk below the starting node. Negative for unlimited.
+     */
+    WalkTree(@Nonnull Writer sink, int maxDepth) {
+        this.sink = checkNotNull(sink);
+        this.maxDepth = maxDepth;
     }
 
     public static void main (String... args) throws IOException {
+        OptionParser parser = new OptionParser();
+        OptionSpec<String> path = parser.accepts("path", "where to start walking").withRequiredArg().defaultsTo("/");
+        OptionSpec<Integer> depth = parser.accepts("depth", "maximum depth below the starting path")
+                .withRequiredArg().ofType(Integer.class).defaultsTo(-1);
+        OptionSpec<String> out = parser.accepts("out", "file to write to. stdout if missing").withRequiredArg();
+        OptionSpec<Integer> threads = parser.accepts("threads", "parallelism of the walk")
+                .withRequiredArg().ofType(Integer.class).defaultsTo(Runtime.getRuntime().availableProcessors());
+        parser.accepts("help").forHelp();
+
+        OptionSet options = parser.parse(args);
+        if (options.has("help")) {
+            parser.printHelpOn(System.out);
+            return;
+        }
+
         Repository repo = Repository.getRepo();
-        Session session = null;
+        Writer w = options.has(out)
+                ? Files.newBufferedWriter(Paths.get(options.valueOf(out)), UTF_8)
+                : new BufferedWriter(new OutputStreamWriter(System.out, UTF_8));
+        ForkJoinPool pool = new ForkJoinPool(options.valueOf(threads));
 
         try {
-            // Loggin in
-            session = repo.login(Repository.ADMIN);
-            LOG.debug("Logged in: {}", session);
-
-            // simple tree walking
-            walk(session.getRootNode());
+            String start = options.valueOf(path);
+            NodeState node = repo.getNodeStore().getRoot();
+            for (String name : PathUtils.elements(start)) {
+                node = node.getChildNode(name);
+            }
+            if (!node.exists()) {
+                LOG.error("Path not found: {}", start);
+                return;
+            }
 
-        } catch (RepositoryException e) {
-            LOG.error("Error while performing repository operations.", e);
+            WalkTree walker = new WalkTree(w, options.valueOf(depth));
+            Stopwatch sw = Stopwatch.createStarted();
+            walker.walk(pool, start, node);
+            long n = walker.getNodeCount();
+            LOG.info("Walked {} nodes in {} ({} nodes/s)", n, sw,
+                    n * 1000 / Math.max(1, sw.elapsed(TimeUnit.MILLISECONDS)));
         } finally {
-            session.logout();
+            pool.shutdown();
+            w.close();
+            repo.close();
         }
-        repo.close();
     }
 
-    private static void walk(@Nonnull Node node) throws RepositoryException {
-        checkNotNull(node);
-        String p = node.getPath();
-        int depth = PathUtils.getDepth(p);
+    /**
+     * walk the provided node and its subtree, blocking till done.
+     *
+     * @param pool where to run the walk. Cannot be null.
+     * @param path the path of {@code node}. Cannot be null.
+     * @param node where to start from. Cannot be null.
+     */
+    void walk(@Nonnull ForkJoinPool pool, @Nonnull String path, @Nonnull NodeState node) throws IOException {
+        checkNotNull(pool);
+        try {
+            pool.invoke(new Walker(checkNotNull(path), checkNotNull(node), 0));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        sink.flush();
+    }
 
+    long getNodeCount() {
+        return nodes.sum();
+    }
 
-        // building the depth
-        String dt = "";
-        if (depth == 0) {
-            LOG.info("{} {}", p, node.getName());
-        } else {
-            for (int i = 0; i < depth; i++) {
-                dt += "|";
-            }
-            LOG.info("{}-> {}", dt, node.getName());
+    /**
+     * print the subtree rooted at a node. Children with their own children are forked as new tasks, at most
+     * {@link #FORK_CHUNK} at a time; leaves are printed inline to keep the tasks coarse enough.
+     */
+    private class Walker extends RecursiveAction {
+        private final String path;
+        private final NodeState node;
+        private final int depth;
+        private final StringBuilder buffer = new StringBuilder();
+
+        Walker(String path, NodeState node, int depth) {
+            this.path = path;
+            this.node = node;
+            this.depth = depth;
         }
 
-        final String depthTree = dt;
+        @Override
+        protected void compute() {
+            dump(path, node);
 
-        // dumping properties
-        node.getProperties().forEachRemaining(property -> {
-            try {
-                Property pp = (Property) property;
-                LOG.info("{}- {}: {}", depthTree, pp.getName(), (pp.isMultiple() ? pp.getValues() : pp.getValue()));
-            } catch (RepositoryException e) {
-                LOG.error("Error while dumping property", e);
+            List<Walker> forks = Lists.newArrayList();
+            if (maxDepth < 0 || depth < maxDepth) {
+                for (ChildNodeEntry child : node.getChildNodeEntries()) {
+                    if (isHidden(child.getName())) {
+                        continue;
+                    }
+
+                    String p = PathUtils.concat(path, child.getName());
+                    NodeState n = child.getNodeState();
+                    if (n.getChildNodeCount(1) == 0 || (maxDepth >= 0 && depth + 1 >= maxDepth)) {
+                        dump(p, n);
+                    } else {
+                        forks.add(new Walker(p, n, depth + 1));
+                        if (forks.size() >= FORK_CHUNK) {
+                            flush();
+                            invokeAll(forks);
+                            forks.clear();
+                        }
+                    }
+
+                    if (buffer.length() > FLUSH_THRESHOLD) {
+                        flush();
+                    }
+                }
+            }
+            flush();
+
+            invokeAll(forks);
+        }
+
+        private void dump(@Nonnull String p, @Nonnull NodeState n) {
+            buffer.append(p).append('\n');
+            for (PropertyState ps : n.getProperties()) {
+                buffer.append("  - ").append(ps.getName()).append(": ").append(format(ps)).append('\n');
             }
-        });
+            nodes.increment();
+        }
 
-        // dumping subnodes
-        node.getNodes().forEachRemaining(n -> {
+        private void flush() {
+            if (buffer.length() == 0) {
+                return;
+            }
             try {
-                walk((Node) n);
-            } catch (RepositoryException e) {
-                LOG.error("Error dumping nodes", e);
+                synchronized (sink) {
+                    sink.append(buffer);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
-        });
+            buffer.setLength(0);
+        }
+    }
+
+    /**
+     * render the property value avoiding to load binaries in memory
+     */
+    private static String format(@Nonnull PropertyState ps) {
+        if (ps.getType().tag() == Type.BINARY.tag()) {
+            return ps.isArray() ? "<" + ps.count() + " binaries>" : "<binary " + ps.size() + " bytes>";
+        }
+        return ps.isArray() ? ps.getValue(Type.STRINGS).toString() : ps.getValue(Type.STRING);
+    }
+
+    private static boolean isHidden(@Nonnull String name) {
+        return name.startsWith(":");
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.benchmark;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+import joptsimple.OptionException;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+import org.apache.jackrabbit.core.data.DataIdentifier;
+import org.apache.jackrabbit.core.data.DataStoreException;
+import org.apache.jackrabbit.core.data.FileDataStore;
+import to.adapt.from02oak.repository.CachingFileDataStore;
+
+import javax.annotation.Nonnull;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * compares reading binaries straight from the {@link FileDataStore} against the {@link CachingFileDataStore},
+ * first with an empty cache (cold) then with the same reads repeated (warm).
+ *
+ * The records are written to a temporary folder, deleted at the end. Reads are skewed: 90% of them hit the
+ * {@code --hot} percent of the records, like a site serving the same assets over and over.
+ *
+ * The operating system page cache is not dropped, so the cold figures are for files already in memory: what's
+ * left is the cost of opening and reading them through the data store.
+ *
+ * Usage:
+ *      java -cp from02oak.jar to.adapt.from02oak.benchmark.BlobCacheBenchmark [--records 1000] [--size 32]
+ */
+public class BlobCacheBenchmark {
+    private final List<DataIdentifier> ids;
+    private final int reads;
+    private final int hot;
+
+    BlobCacheBenchmark(@Nonnull List<DataIdentifier> ids, int reads, int hot) {
+        this.ids = ids;
+        this.reads = reads;
+        this.hot = hot;
+    }
+
+    public static void main(String[] args) throws Exception {
+        OptionParser parser = new OptionParser();
+        OptionSpec<Integer> records = parser.accepts("records", "binaries to write")
+                .withRequiredArg().ofType(Integer.class).defaultsTo(1000);
+        OptionSpec<Integer> size = parser.accepts("size", "size of each binary in KB")
+                .withRequiredArg().ofType(Integer.class).defaultsTo(32);
+        OptionSpec<Integer> reads = parser.accepts("reads", "binaries read in each pass")
+                .withRequiredArg().ofType(Integer.class).defaultsTo(100000);
+        OptionSpec<Integer> hot = parser.accepts("hot", "percent of the binaries getting most of the reads")
+                .withRequiredArg().ofType(Integer.class).defaultsTo(10);
+        OptionSpec<Integer> cache = parser.accepts("cache", "cache size in MB")
+                .withRequiredArg().ofType(Integer.class).defaultsTo(64);
+        parser.accepts("help", "print this help").forHelp();
+
+        OptionSet options;
+        try {
+            options = parser.parse(args);
+        } catch (OptionException e) {
+            System.err.println("Error parsing the command line. " + e.getMessage());
+            parser.printHelpOn(System.err);
+            System.exit(1);
+            return;
+        }
+        if (options.has("help")) {
+            parser.printHelpOn(System.out);
+            return;
+        }
+
+        int recordSize = options.valueOf(size) * 1024;
+        Path dir = Files.createTempDirectory("blob-cache-benchmark");
+        try {
+            FileDataStore plain = init(new FileDataStore(), dir.toFile());
+            List<DataIdentifier> ids = write(plain, options.valueOf(records), recordSize);
+            CachingFileDataStore caching = init(
+                    new CachingFileDataStore(options.valueOf(cache) * 1024L * 1024, recordSize), dir.toFile());
+
+            BlobCacheBenchmark b = new BlobCacheBenchmark(ids, options.valueOf(reads),
+                    Math.max(1, ids.size() * options.valueOf(hot) / 100));
+            System.out.printf("%-10s %9s %9s %9s %9s %11s%n", "pass", "mean us", "p50", "p95", "p99", "reads/s");
+            // a first pass warming up the JIT and the page cache
+            b.report("warm-up", plain);
+            b.report("disk", plain);
+            b.report("cold", caching);
+            b.report("warm", caching);
+            System.out.println(caching);
+        } finally {
+            delete(dir);
+        }
+    }
+
+    private static <T extends FileDataStore> T init(@Nonnull T ds, @Nonnull File dir) {
+        ds.setPath(dir.getAbsolutePath());
+        ds.init(null);
+        return ds;
+    }
+
+    private static List<DataIdentifier> write(@Nonnull FileDataStore ds, int records, int size)
+            throws DataStoreException {
+        Random r = new Random(42);
+        byte[] data = new byte[size];
+        List<DataIdentifier> ids = Lists.newArrayListWithCapacity(records);
+        for (int i = 0; i < records; i++) {
+            r.nextBytes(data);
+            ids.add(ds.addRecord(new ByteArrayInputStream(data)).getIdentifier());
+        }
+        System.out.printf("Written %d binaries of %d KB%n", records, size / 1024);
+        return ids;
+    }
+
+    void report(@Nonnull String pass, @Nonnull FileDataStore ds) throws DataStoreException, IOException {
+        // same sequence of reads on every pass
+        Random r = new Random(42);
+        DescriptiveStatistics stats = new DescriptiveStatistics();
+        long bytes = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < reads; i++) {
+            DataIdentifier id = ids.get(r.nextInt(10) < 9 ? r.nextInt(hot) : r.nextInt(ids.size()));
+            long s = System.nanoTime();
+            try (InputStream in = ds.getRecord(id).getStream()) {
+                bytes += ByteStreams.copy(in, ByteStreams.nullOutputStream());
+            }
+            stats.addValue((System.nanoTime() - s) / 1e3);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-10s %9.1f %9.1f %9.1f %9.1f %11.0f  (%d MB)%n", pass, stats.getMean(),
+                stats.getPercentile(50), stats.getPercentile(95), stats.getPercentile(99), reads / seconds,
+                bytes / 1024 / 1024);
+    }
+
+    private static void delete(@Nonnull Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.benchmark;
+
+import com.google.common.base.Stopwatch;
+import joptsimple.OptionException;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import to.adapt.from02oak.repository.Repository;
+import to.adapt.from02oak.repository.RepositoryConfig;
+import to.adapt.from02oak.repository.SegmentStoreStats;
+import to.adapt.from02oak.repository.SubtreeCopier;
+import to.adapt.from02oak.repository.initialisers.ContentGenerator;
+
+import javax.annotation.Nonnull;
+import javax.jcr.Session;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.apache.jackrabbit.oak.commons.IOUtils.humanReadableByteCount;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.TYPE_PROPERTY_NAME;
+
+/**
+ * compares copying a subtree with {@link SubtreeCopier}, which shares the existing records, against
+ * {@code Workspace.copy}, which copies node by node through JCR.
+ *
+ * Works on a fresh repository in a temporary folder, deleted at the end. The {@code colour} index is disabled
+ * so that both copies are measured without index updates. The bytes are the segments written by each copy.
+ *
+ * Usage:
+ *      java -cp from02oak.jar to.adapt.from02oak.benchmark.CopyBenchmark [--nodes 10000] [--copies 3]
+ */
+public class CopyBenchmark {
+    private static final String SOURCE = "/source";
+
+    private final Repository repo;
+    private final SegmentStoreStats stats;
+
+    CopyBenchmark(@Nonnull Repository repo) {
+        this.repo = repo;
+        this.stats = repo.getSegmentStoreStats();
+    }
+
+    public static void main(String[] args) throws Exception {
+        OptionParser parser = new OptionParser();
+        OptionSpec<Long> nodes = parser.accepts("nodes", "nodes in the copied subtree")
+                .withRequiredArg().ofType(Long.class).defaultsTo(10000L);
+        OptionSpec<Integer> copies = parser.accepts("copies", "copies made by each approach")
+                .withRequiredArg().ofType(Integer.class).defaultsTo(3);
+        parser.accepts("help", "print this help").forHelp();
+
+        OptionSet options;
+        try {
+            options = parser.parse(args);
+        } catch (OptionException e) {
+            System.err.println("Error parsing the command line. " + e.getMessage());
+            parser.printHelpOn(System.err);
+            System.exit(1);
+            return;
+        }
+        if (options.has("help")) {
+            parser.printHelpOn(System.out);
+            return;
+        }
+
+        Path dir = Files.createTempDirectory("copy-benchmark");
+        Repository.configure(new RepositoryConfig().setRepositoryPath(dir.toString()));
+        Repository repo = Repository.getRepo();
+        try {
+            CopyBenchmark b = new CopyBenchmark(repo);
+            b.disableColourIndex();
+            b.generate(options.valueOf(nodes));
+
+            System.out.printf("%-10s %10s %12s%n", "copy", "ms", "written");
+            for (int i = 0; i < options.valueOf(copies); i++) {
+                String target = "/nodestore-" + i;
+                b.report("nodestore", () -> SubtreeCopier.copy(repo, SOURCE, target));
+            }
+            for (int i = 0; i < options.valueOf(copies); i++) {
+                String target = "/jcr-" + i;
+                b.report("jcr", () -> {
+                    Session s = repo.login(Repository.ADMIN);
+                    try {
+                        s.getWorkspace().copy(SOURCE, target);
+                    } finally {
+                        s.logout();
+                    }
+                });
+            }
+        } finally {
+            repo.close();
+            delete(dir);
+        }
+    }
+
+    private interface Copy {
+        void run() throws Exception;
+    }
+
+    private void disableColourIndex() throws Exception {
+        NodeBuilder root = repo.getNodeStore().getRoot().builder();
+        root.getChildNode(INDEX_DEFINITIONS_NAME).getChildNode(Repository.COLOUR_INDEX)
+                .setProperty(TYPE_PROPERTY_NAME, "disabled");
+        repo.merge(root);
+    }
+
+    private void generate(long nodes) throws Exception {
+        Stopwatch sw = Stopwatch.createStarted();
+        new ContentGenerator(nodes, ContentGenerator.DEFAULT_FAN_OUT, 1, 42)
+                .generate(repo, SOURCE, Runtime.getRuntime().availableProcessors(), 10000, n -> {});
+        repo.flush();
+        System.out.printf("Generated %d nodes in %s, %s on disk%n", nodes, sw,
+                humanReadableByteCount(stats.getOnDiskSize()));
+    }
+
+    private void report(@Nonnull String name, @Nonnull Copy copy) throws Exception {
+        long written = stats.getWritten();
+        Stopwatch sw = Stopwatch.createStarted();
+        copy.run();
+        long ms = sw.elapsed(TimeUnit.MILLISECONDS);
+        // the pending segments are part of the cost of the copy
+        repo.flush();
+        System.out.printf("%-10s %10d %12s%n", name, ms, humanReadableByteCount(stats.getWritten() - written));
+    }
+
+    private static void delete(@Nonnull Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.benchmark;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import joptsimple.OptionException;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import to.adapt.from02oak.repository.AsyncIndexer;
+import to.adapt.from02oak.repository.Repository;
+import to.adapt.from02oak.repository.RepositoryConfig;
+import to.adapt.from02oak.repository.initialisers.ContentGenerator;
+import to.adapt.from02oak.repository.initialisers.LucenePropertyIndex;
+
+import javax.annotation.Nonnull;
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.query.Query;
+import javax.jcr.query.QueryResult;
+import javax.jcr.query.RowIterator;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.TYPE_PROPERTY_NAME;
+
+/**
+ * compares query latency of the {@code colour} property index against the Lucene property index.
+ *
+ * Generates random content under {@code /bench} (reused on later runs), waits for the async Lucene index to
+ * catch up, then runs the same queries twice: first with only the property index enabled, then with only the
+ * Lucene one. The other index is disabled by setting its type to {@code disabled} for the duration of the run.
+ *
+ * Usage:
+ *      java -cp from02oak.jar to.adapt.from02oak.benchmark.IndexBenchmark [--nodes 100000] [--queries 100]
+ */
+public class IndexBenchmark {
+    private static final Logger LOG = LoggerFactory.getLogger(IndexBenchmark.class);
+    private static final String ROOT = "/bench";
+    /**
+     * restricted to the generated content, as other nodes have a colour as well
+     */
+    private static final String SINGLE = "SELECT * FROM [nt:base] WHERE ISDESCENDANTNODE([" + ROOT + "]) "
+            + "AND colour = $colour";
+    private static final String MULTI = SINGLE + " AND p0 = $p0";
+    private static final List<String> COLOURS = ImmutableList.of("red", "green", "blue");
+    private static final String DISABLED = "disabled";
+
+    private final Repository repo;
+    private final int queries;
+
+    IndexBenchmark(@Nonnull Repository repo, int queries) {
+        this.repo = repo;
+        this.queries = queries;
+    }
+
+    public static void main(String[] args) throws Exception {
+        OptionParser parser = new OptionParser();
+        OptionSpec<String> path = parser.accepts("repository", "root of the benchmark repository on disk")
+                .withRequiredArg().defaultsTo("benchmark-repository");
+        OptionSpec<Long> nodes = parser.accepts("nodes", "nodes to generate")
+                .withRequiredArg().ofType(Long.class).defaultsTo(100000L);
+        OptionSpec<Integer> queries = parser.accepts("queries", "executions of each query")
+                .withRequiredArg().ofType(Integer.class).defaultsTo(100);
+        OptionSpec<Integer> timeout = parser.accepts("timeout", "seconds to wait for the async index")
+                .withRequiredArg().ofType(Integer.class).defaultsTo(600);
+        parser.accepts("help", "print this help").forHelp();
+
+        OptionSet options;
+        try {
+            options = parser.parse(args);
+        } catch (OptionException e) {
+            System.err.println("Error parsing the command line. " + e.getMessage());
+            parser.printHelpOn(System.err);
+            System.exit(1);
+            return;
+        }
+        if (options.has("help")) {
+            parser.printHelpOn(System.out);
+            return;
+        }
+
+        Repository.configure(new RepositoryConfig()
+                .setRepositoryPath(options.valueOf(path))
+                .setLuceneProperties(ImmutableList.of("colour", "p0"))
+                .setAsyncInterval(1));
+        Repository repo = Repository.getRepo();
+        try {
+            IndexBenchmark b = new IndexBenchmark(repo, options.valueOf(queries));
+            b.generate(options.valueOf(nodes));
+            b.awaitIndexing(options.valueOf(timeout));
+            b.run();
+        } finally {
+            repo.close();
+        }
+    }
+
+    void generate(long nodes) throws CommitFailedException, InterruptedException {
+        if (repo.getNodeStore().getRoot().hasChildNode(ROOT.substring(1))) {
+            System.out.printf("Reusing content under %s%n", ROOT);
+            return;
+        }
+        Stopwatch sw = Stopwatch.createStarted();
+        new ContentGenerator(nodes, ContentGenerator.DEFAULT_FAN_OUT, 1, 42)
+                .generate(repo, ROOT, Runtime.getRuntime().availableProcessors(), 10000, n -> {});
+        System.out.printf("Generated %d nodes in %s%n", nodes, sw);
+    }
+
+    void awaitIndexing(int timeoutSeconds) throws InterruptedException {
+        AsyncIndexer indexer = repo.getAsyncIndexer();
+        long since = System.currentTimeMillis();
+        long deadline = since + TimeUnit.SECONDS.toMillis(timeoutSeconds);
+        Stopwatch sw = Stopwatch.createStarted();
+        while (System.currentTimeMillis() < deadline) {
+            Calendar to = indexer.getLastIndexedTo();
+            if (to != null && to.getTimeInMillis() >= since) {
+                System.out.printf("Async indexes caught up in %s%n", sw);
+                return;
+            }
+            Thread.sleep(500);
+        }
+        throw new IllegalStateException("Async indexes not up to date after " + timeoutSeconds + " seconds");
+    }
+
+    void run() throws RepositoryException, CommitFailedException, InterruptedException {
+        List<String> p0 = sampleP0(100);
+
+        try {
+            setType(LucenePropertyIndex.NAME, DISABLED);
+            report("property", p0);
+
+            setType(LucenePropertyIndex.NAME, "lucene");
+            setType(Repository.COLOUR_INDEX, DISABLED);
+            report("lucene", p0);
+        } finally {
+            setType(Repository.COLOUR_INDEX, "property");
+            setType(LucenePropertyIndex.NAME, "lucene");
+        }
+    }
+
+    private void report(@Nonnull String name, @Nonnull List<String> p0)
+            throws RepositoryException, InterruptedException {
+        Random r = new Random(42);
+        Session s = repo.login(Repository.ADMIN);
+        try {
+            awaitPlan(s, name);
+
+            DescriptiveStatistics single = new DescriptiveStatistics();
+            DescriptiveStatistics multi = new DescriptiveStatistics();
+            long rows = 0;
+            for (int i = 0; i < queries; i++) {
+                String colour = COLOURS.get(r.nextInt(COLOURS.size()));
+
+                Query q = s.getWorkspace().getQueryManager().createQuery(SINGLE, Query.JCR_SQL2);
+                q.bindValue("colour", s.getValueFactory().createValue(colour));
+                long start = System.nanoTime();
+                rows += consume(q.execute());
+                single.addValue((System.nanoTime() - start) / 1e6);
+
+                q = s.getWorkspace().getQueryManager().createQuery(MULTI, Query.JCR_SQL2);
+                q.bindValue("colour", s.getValueFactory().createValue(colour));
+                q.bindValue("p0", s.getValueFactory().createValue(p0.get(r.nextInt(p0.size()))));
+                start = System.nanoTime();
+                rows += consume(q.execute());
+                multi.addValue((System.nanoTime() - start) / 1e6);
+            }
+
+            System.out.printf("%n%s index, %d rows read%n", name, rows);
+            System.out.printf("%-14s %9s %9s %9s %9s%n", "query", "mean ms", "p50", "p95", "p99");
+            print("colour", single);
+            print("colour + p0", multi);
+        } finally {
+            s.logout();
+        }
+    }
+
+    private static void print(@Nonnull String query, @Nonnull DescriptiveStatistics stats) {
+        System.out.printf("%-14s %9.2f %9.2f %9.2f %9.2f%n", query, stats.getMean(),
+                stats.getPercentile(50), stats.getPercentile(95), stats.getPercentile(99));
+    }
+
+    private static long consume(@Nonnull QueryResult result) throws RepositoryException {
+        long c = 0;
+        RowIterator rows = result.getRows();
+        while (rows.hasNext()) {
+            rows.nextRow().getPath();
+            c++;
+        }
+        return c;
+    }
+
+    /**
+     * the query engine picks up index definition changes asynchronously. Wait till the plan uses the right one.
+     */
+    private static void awaitPlan(@Nonnull Session s, @Nonnull String index)
+            throws RepositoryException, InterruptedException {
+        String plan = "";
+        for (int i = 0; i < 100; i++) {
+            s.refresh(false);
+            Query q = s.getWorkspace().getQueryManager().createQuery("explain " + MULTI, Query.JCR_SQL2);
+            q.bindValue("colour", s.getValueFactory().createValue("red"));
+            q.bindValue("p0", s.getValueFactory().createValue(""));
+            plan = q.execute().getRows().nextRow().getValue("plan").getString();
+            if (plan.contains(index)) {
+                System.out.printf("Plan: %s%n", plan);
+                return;
+            }
+            Thread.sleep(100);
+        }
+        LOG.warn("Index {} not used by the plan: {}", index, plan);
+    }
+
+    /**
+     * @return some existing values of {@code p0}
+     */
+    private List<String> sampleP0(int amount) throws RepositoryException {
+        Session s = repo.login(Repository.ADMIN);
+        try {
+            Query q = s.getWorkspace().getQueryManager().createQuery(SINGLE, Query.JCR_SQL2);
+            q.bindValue("colour", s.getValueFactory().createValue("red"));
+            q.setLimit(amount);
+            List<String> values = Lists.newArrayList();
+            RowIterator rows = q.execute().getRows();
+            while (rows.hasNext()) {
+                Node n = rows.nextRow().getNode();
+                if (n.hasProperty("p0")) {
+                    values.add(n.getProperty("p0").getString());
+                }
+            }
+            if (values.isEmpty()) {
+                throw new IllegalStateException("No content found under " + ROOT);
+            }
+            return values;
+        } finally {
+            s.logout();
+        }
+    }
+
+    private void setType(@Nonnull String index, @Nonnull String type) throws CommitFailedException {
+        NodeBuilder root = repo.getNodeStore().getRoot().builder();
+        root.getChildNode(INDEX_DEFINITIONS_NAME).getChildNode(index).setProperty(TYPE_PROPERTY_NAME, type);
+        repo.merge(root);
+        LOG.debug("Index {} set to {}", index, type);
+    }
+}
@@ -28,6 +28,8 @@ import to.adapt.from02oak.console.commands.Commands;
 import to.adapt.from02oak.repository.Repository;
 
 import javax.annotation.Nonnull;
+import javax.jcr.RepositoryException;
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.PrintWriter;
 
@@ -36,6 +38,12 @@ import static com.google.common.base.Strings.isNullOrEmpty;
 
 public class Console {
     private static final Logger LOG = LoggerFactory.getLogger(Console.class);
+    private static final String PROMPT = "$ ";
+
+    /**
+     * set once an exit command has been executed
+     */
+    private boolean exit;
 
     public void start() throws IOException {
         ConsoleReader reader;
@@ -46,7 +54,7 @@ public class Console {
 
             // initialise the console
             reader = new ConsoleReader();
-            reader.setPrompt("$ ");
+            reader.setPrompt(PROMPT);
             out = new PrintWriter(reader.getOutput());
 
             header(out);
@@ -58,23 +66,10 @@ public class Console {
             } else {
                 out.println("done");
                 out.println("");
-                boolean exit = false;
                 // interactive inputs
                 while (!exit && (line = reader.readLine()) != null) {
                     if (!isNullOrEmpty(line)) {
-                        String[] a = line.split(" ");
-                        Command c;
-                        try {
-                            c = Commands.parse(a);
-                            c.execute(out,a);
-                            exit = c.isExit();
-                        } catch (IllegalArgumentException e) {
-                            LOG.error("Command not found. {} ", a, e);
-                            out.println("Command not found. Try `help`");
-                        } catch (IOException e) {
-                            LOG.error("Error executing", e);
-                            out.printf("Error executing. %s\n", e.getMessage());
-                        }
+                        dispatch(out, line);
                     }
                 }
             }
@@ -89,6 +84,96 @@ public class Console {
         if (out != null) { out.println("Bye!"); }
     }
 
+    /**
+     * run unattended the commands read from a script, one per line. Empty lines and lines starting with {@code #}
+     * are skipped. Stops at the end of the script or at the first {@code exit}. The repository is shut down once
+     * done.
+     *
+     * @param script where to read the commands from. Cannot be null.
+     * @param out where to print the output. Cannot be null.
+     * @param groupSize if positive, commands share a single session and changes are saved every
+     *                  {@code groupSize} mutating operations. See {@link Repository#beginGroup(int)}.
+     * @return the number of failed commands
+     */
+    public int runScript(@Nonnull BufferedReader script, @Nonnull PrintWriter out, int groupSize) throws IOException {
+        checkNotNull(script);
+        checkNotNull(out);
+
+        Repository repo = Repository.getRepo();
+        if (repo == null) {
+            out.println("Error while initialising the repository. Quitting.");
+            out.flush();
+            return 1;
+        }
+
+        int failures = 0;
+        long lineNo = 0;
+        String line;
+        try {
+            if (groupSize > 0) {
+                repo.beginGroup(groupSize);
+            }
+
+            while (!exit && (line = script.readLine()) != null) {
+                lineNo++;
+                line = line.trim();
+                if (isNullOrEmpty(line) || line.startsWith("#")) {
+                    continue;
+                }
+
+                out.println(PROMPT + line);
+                if (dispatch(out, line) != 0) {
+                    LOG.warn("Command at line {} failed: {}", lineNo, line);
+                    failures++;
+                }
+            }
+        } catch (RepositoryException e) {
+            LOG.error("Error starting the session group", e);
+            out.println("Error starting the session group. " + e.getMessage());
+            failures++;
+        } finally {
+            try {
+                long saved = repo.endGroup();
+                if (groupSize > 0) {
+                    out.printf("%d grouped operations saved%n", saved);
+                }
+            } catch (RepositoryException e) {
+                LOG.error("Error saving the last group of operations", e);
+                out.println("Error saving the last group of operations. " + e.getMessage());
+                failures++;
+            }
+            out.println("Shutting down the repository");
+            repo.close();
+        }
+
+        out.printf("Script completed. %d commands failed%n", failures);
+        out.flush();
+        return failures;
+    }
+
+    /**
+     * parse and execute a command line
+     *
+     * @return the exit code of the command. {@code 1} if the command was not found or failed with an error.
+     */
+    private int dispatch(@Nonnull PrintWriter out, @Nonnull String line) {
+        String[] a = line.split(" ");
+        Command c;
+        try {
+            c = Commands.parse(a);
+            int code = c.execute(out, a);
+            exit = c.isExit();
+            return code;
+        } catch (IllegalArgumentException e) {
+            LOG.error("Command not found. {} ", a, e);
+            out.println("Command not found. Try `help`");
+        } catch (IOException e) {
+            LOG.error("Error executing", e);
+            out.printf("Error executing. %s\n", e.getMessage());
+        }
+        return 1;
+    }
+
     private static void header(@Nonnull PrintWriter out) {
         checkNotNull(out);
 
@@ -70,19 +70,17 @@ class AddCommand implements Command {
         Repository repo = Repository.getRepo();
         Session s = null;
         try {
-            s = repo.login(Repository.ADMIN);
+            s = repo.borrowSession();
 
             LOG.debug("Adding node {} of type {}", o.path, o.primaryType);
             s.getRootNode().addNode(o.path, o.primaryType);
-            s.save();
+            repo.save(s);
         } catch (RepositoryException e) {
             LOG.error("Error while adding a node.", e);
             out.println("Error while adding node. " + e.getMessage());
             return 1;
         } finally {
-            if (s != null) {
-                s.logout();
-            }
+            repo.returnSession(s);
         }
 
         return 0;
@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.console.commands;
+
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import to.adapt.from02oak.repository.BlobGC;
+import to.adapt.from02oak.repository.Repository;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.apache.jackrabbit.oak.commons.IOUtils.humanReadableByteCount;
+
+/**
+ * delete the binaries of the data store no longer referenced by the repository.
+ *
+ * Binaries of removed nodes are still referenced by the old revisions till {@code gc} reclaims them, so run
+ * {@code gc} first.
+ *
+ * Usage:
+ *
+ *      // see what would be reclaimed
+ *      blobgc --dry-run
+ *
+ *      // delete unreferenced binaries older than 10 minutes
+ *      blobgc --window 600 [--threads 4]
+ */
+class BlobGcCommand implements Command {
+    private static final Logger LOG = LoggerFactory.getLogger(BlobGcCommand.class);
+    static final long DEFAULT_WINDOW = TimeUnit.HOURS.toSeconds(24);
+
+    private final OptionParser parser = new OptionParser();
+    private final OptionSpec<Void> dryRun = parser.accepts("dry-run", "report without deleting anything");
+    private final OptionSpec<Long> window = parser.accepts("window",
+            "seconds an unreferenced binary is kept for, as it may be about to be committed")
+            .withRequiredArg()
+            .ofType(Long.class)
+            .defaultsTo(DEFAULT_WINDOW);
+    private final OptionSpec<Integer> threads = parser.accepts("threads", "parallelism of the sweep")
+            .withRequiredArg()
+            .ofType(Integer.class)
+            .defaultsTo(Runtime.getRuntime().availableProcessors());
+
+    class Options {
+        boolean dryRun;
+        long window;
+        int threads;
+    }
+
+    @Override
+    public int execute(@Nonnull PrintWriter out, @Nonnull String[] args) throws IOException {
+        Options o = parseCommandLine(out, args);
+        if (o == null) {
+            return 1;
+        }
+
+        BlobGC gc = Repository.getRepo().getBlobGC();
+        if (gc == null) {
+            out.println("Blob gc is available only on the segment store.");
+            return 1;
+        }
+
+        BlobGC.Result r;
+        try {
+            r = gc.run(TimeUnit.SECONDS.toMillis(o.window), o.threads, o.dryRun);
+        } catch (IOException | IllegalStateException e) {
+            LOG.error("Error running blob gc", e);
+            out.println("Error running blob gc. " + e.getMessage());
+            return 1;
+        }
+
+        out.printf("  referenced: %d binaries (marked in %d ms)%n", r.getMarked(), r.getMarkTime());
+        out.printf("  records:    %d in the data store%n", r.getRecords());
+        out.printf("  %s %d files, %s%n", r.isDryRun() ? "to reclaim:" : "reclaimed: ", r.getReclaimedFiles(),
+                humanReadableByteCount(r.getReclaimedBytes()));
+        out.printf("  kept:       %d unreferenced within the %d s window%n", r.getRecent(), o.window);
+        if (r.getFailed() > 0) {
+            out.printf("  failed:     %d, see the logs%n", r.getFailed());
+        }
+        out.printf("  time spent: %d ms%n", r.getTime());
+
+        return r.getFailed() > 0 ? 1 : 0;
+    }
+
+    /**
+     * analyse the command line and return the equivalent options
+     *
+     * @param out where to redirect any output message. Cannot be null
+     * @param args passed in command line. Cannot be null.
+     * @return the options or null in case of errors.
+     */
+    Options parseCommandLine(@Nonnull PrintWriter out, @Nonnull String[] args) {
+        checkNotNull(out);
+        checkNotNull(args);
+
+        OptionSet options;
+        try {
+            options = parser.parse(args);
+        } catch (Exception e) {
+            LOG.error("Error occured while parsing the command line", e);
+            out.println("Error parsing the command line. " + e.getMessage());
+            printHelp(out);
+            return null;
+        }
+
+        Options o = new Options();
+        o.dryRun = options.has(dryRun);
+        o.window = options.valueOf(window);
+        o.threads = options.valueOf(threads);
+        if (o.window < 0 || o.threads < 1) {
+            out.println("Error parsing the command line. --window cannot be negative and --threads must be positive.");
+            printHelp(out);
+            return null;
+        }
+        return o;
+    }
+
+    private void printHelp(@Nonnull PrintWriter pw) {
+        checkNotNull(pw);
+
+        pw.println("\nUsage: blobgc [option params]\n");
+
+        try {
+            parser.printHelpOn(pw);
+        } catch (IOException e) {
+            LOG.error("Error printing help", e);
+            pw.write("Error while printing help screen.");
+        }
+    }
+
+    @Override
+    public String getDescription() {
+        return "Delete the binaries no longer referenced";
+    }
+
+    @Override
+    public boolean isExit() {
+        return false;
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.console.commands;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import to.adapt.from02oak.repository.Repository;
+
+import javax.annotation.Nonnull;
+import javax.jcr.Node;
+import javax.jcr.PathNotFoundException;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.query.Query;
+import javax.jcr.query.RowIterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * applies an {@link UpCommand.Instruction} to every node matching a JCR-SQL2 condition.
+ *
+ * The query results are streamed by the calling thread into a bounded queue, drained by {@code threads}
+ * workers each with its own session from the pool, saving every {@code batchSize} changes. Memory stays
+ * bounded regardless of the amount of matching nodes.
+ *
+ * A failed save discards its batch only; the others go ahead.
+ *
+ * The batches are saved on their own, outside any group opened with {@link Repository#beginGroup(int)}: with
+ * {@code --group} in script mode the operations pending in the group are saved before the query, so that it
+ * sees them, and {@code up --where} always commits immediately.
+ */
+class BulkUpdate {
+    private static final Logger LOG = LoggerFactory.getLogger(BulkUpdate.class);
+    private static final String END = "";
+
+    private final Repository repo;
+    private final UpCommand.Instruction instruction;
+    private final int batchSize;
+    private final int threads;
+    private final LongAdder matched = new LongAdder();
+    private final LongAdder updated = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    BulkUpdate(@Nonnull Repository repo, @Nonnull UpCommand.Instruction instruction, int batchSize, int threads) {
+        checkArgument(batchSize > 0, "batchSize must be positive. %s", batchSize);
+        checkArgument(threads > 0, "threads must be positive. %s", threads);
+        this.repo = checkNotNull(repo);
+        this.instruction = checkNotNull(instruction);
+        this.batchSize = batchSize;
+        this.threads = threads;
+    }
+
+    /**
+     * @return the statement selecting the nodes to update
+     */
+    static String statement(@Nonnull String condition) {
+        return "SELECT * FROM [nt:base] WHERE " + condition;
+    }
+
+    /**
+     * run the update.
+     *
+     * @param condition the JCR-SQL2 condition on {@code [nt:base]}. Cannot be null.
+     * @param onSaved called after each successful save with the amount of nodes saved. Called concurrently.
+     */
+    void run(@Nonnull String condition, @Nonnull LongConsumer onSaved) throws RepositoryException,
+            InterruptedException {
+        checkNotNull(condition);
+        checkNotNull(onSaved);
+
+        BlockingQueue<String> queue = new ArrayBlockingQueue<>(batchSize * threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+                new ThreadFactoryBuilder().setNameFormat("bulk-update-%d").build());
+        Session reader = null;
+        try {
+            // the query and the workers would not see the unsaved changes of the group
+            repo.flushGroup();
+            reader = repo.borrowSession();
+            // parsed upfront so that a wrong condition fails before starting the workers
+            RowIterator rows = reader.getWorkspace().getQueryManager()
+                    .createQuery(statement(condition), Query.JCR_SQL2).execute().getRows();
+
+            List<Future<?>> workers = Lists.newArrayList();
+            for (int i = 0; i < threads; i++) {
+                workers.add(executor.submit(() -> {
+                    work(queue, onSaved);
+                    return null;
+                }));
+            }
+
+            while (rows.hasNext()) {
+                String path = rows.nextRow().getPath();
+                matched.increment();
+                while (!queue.offer(path, 1, TimeUnit.SECONDS)) {
+                    checkWorkers(workers);
+                }
+            }
+            for (int i = 0; i < threads; i++) {
+                while (!queue.offer(END, 1, TimeUnit.SECONDS)) {
+                    checkWorkers(workers);
+                }
+            }
+
+            for (Future<?> w : workers) {
+                w.get();
+            }
+        } catch (ExecutionException e) {
+            throw new RepositoryException("Error updating nodes", e.getCause());
+        } finally {
+            executor.shutdownNow();
+            repo.returnSession(reader);
+        }
+    }
+
+    /**
+     * fail fast if a worker died, as nobody would drain the queue anymore
+     */
+    private static void checkWorkers(@Nonnull List<Future<?>> workers) throws ExecutionException,
+            InterruptedException {
+        for (Future<?> w : workers) {
+            if (w.isDone()) {
+                w.get();
+                throw new IllegalStateException("Worker completed before the end of the results");
+            }
+        }
+    }
+
+    private void work(@Nonnull BlockingQueue<String> queue, @Nonnull LongConsumer onSaved)
+            throws RepositoryException, InterruptedException {
+        Session session = repo.borrowSession();
+        int pending = 0;
+        try {
+            for (String path = queue.take(); !END.equals(path); path = queue.take()) {
+                if (apply(session, path)) {
+                    pending++;
+                } else {
+                    skipped.increment();
+                }
+                if (pending >= batchSize) {
+                    save(session, pending, onSaved);
+                    pending = 0;
+                }
+            }
+            save(session, pending, onSaved);
+        } finally {
+            repo.returnSession(session);
+        }
+    }
+
+    /**
+     * @return {@code false} if there was nothing to change
+     */
+    private boolean apply(@Nonnull Session session, @Nonnull String path) throws RepositoryException {
+        Node n;
+        try {
+            n = session.getNode(path);
+        } catch (PathNotFoundException e) {
+            LOG.debug("Node removed meanwhile: {}", path);
+            return false;
+        }
+
+        switch (instruction.op) {
+            case DELETE:
+                if (!n.hasProperty(instruction.propertyName)) {
+                    return false;
+                }
+                n.getProperty(instruction.propertyName).remove();
+                return true;
+            case EDIT:
+                if (instruction.values.size() == 1) {
+                    n.setProperty(instruction.propertyName, instruction.values.get(0));
+                } else {
+                    n.setProperty(instruction.propertyName, instruction.values.toArray(new String[0]));
+                }
+                return true;
+            default:
+                throw new IllegalStateException("Unknown operation " + instruction.op);
+        }
+    }
+
+    private void save(@Nonnull Session session, int pending, @Nonnull LongConsumer onSaved)
+            throws RepositoryException {
+        if (pending == 0) {
+            return;
+        }
+        try {
+            // no group on the worker threads: saved right away
+            repo.save(session);
+            updated.add(pending);
+            onSaved.accept(pending);
+        } catch (RepositoryException e) {
+            LOG.error("Error saving a batch of {} nodes. Discarding it.", pending, e);
+            failed.add(pending);
+            session.refresh(false);
+        }
+    }
+
+    /**
+     * @return nodes matching the condition so far
+     */
+    long getMatched() {
+        return matched.sum();
+    }
+
+    /**
+     * @return nodes changed and saved
+     */
+    long getUpdated() {
+        return updated.sum();
+    }
+
+    /**
+     * @return nodes with nothing to change, or removed meanwhile
+     */
+    long getSkipped() {
+        return skipped.sum();
+    }
+
+    /**
+     * @return nodes changed whose batch failed to save
+     */
+    long getFailed() {
+        return failed.sum();
+    }
+}
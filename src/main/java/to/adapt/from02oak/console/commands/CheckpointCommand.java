@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package to.adapt.from02oak.console.commands;
+
+import com.google.common.collect.ImmutableMap;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import to.adapt.from02oak.repository.Checkpoints;
+import to.adapt.from02oak.repository.Repository;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * create, list and release checkpoints of the repository content, to be compared with {@code diff} later on.
+ *
+ * Checkpoints keep the content they refer to from being garbage collected: release them once done.
+ *
+ * Usage:
+ *      checkpoint [list]
+ *      checkpoint create [--lifetime 86400] [--label "before the import"]
+ *      checkpoint release 4a9c26b5-...
+ */
+class CheckpointCommand implements Command {
+    private static final Logger LOG = LoggerFactory.getLogger(CheckpointCommand.class);
+    static final long DEFAULT_LIFETIME = TimeUnit.DAYS.toSeconds(1);
+
+    enum Action {
+        LIST, CREATE, RELEASE
+    }
+
+    private final OptionParser parser = new OptionParser();
+    private final OptionSpec<Long> lifetime = parser.accepts("lifetime", "seconds the checkpoint is valid for")
+            .withRequiredArg()
+            .ofType(Long.class)
+            .defaultsTo(DEFAULT_LIFETIME);
+    private final OptionSpec<String> label = parser.accepts("label", "description stored along the checkpoint")
+            .withRequiredArg();
+
+    class Options {
+        Action action;
+        String name;
+        long lifetime;
+        String label;
+    }
+
+    @Override
+    public int execute(@Nonnull PrintWriter out, @Nonnull String[] args) {
+        Options o = parseCommandLine(out, args);
+        if (o == null) {
+            return 1;
+        }
+
+        if (!Commands.flushGroup(out)) {
+            return 1;
+        }
+
+        Checkpoints checkpoints = Repository.getRepo().getCheckpoints();
+        switch (o.action) {
+            case CREATE:
+                Map<String, String> properties = o.label == null ? ImmutableMap.of("creator", "console")
+                        : ImmutableMap.of("creator", "console", "label", o.label);
+                try {
+                    out.println(checkpoints.create(TimeUnit.SECONDS.toMillis(o.lifetime), properties));
+                } catch (IllegalArgumentException e) {
+                    LOG.error("Error creating checkpoint", e);
+                    out.println("Error creating checkpoint. " + e.getMessage());
+                    return 1;
+                }
+                return 0;
+            case RELEASE:
+                if (!checkpoints.release(o.name)) {
+                    out.println("Error releasing checkpoint. Not found: " + o.name);
+                    return 1;
+                }
+                out.println("Released " + o.name);
+                return 0;
+            default:
+                out.printf("%-36s %-24s %-24s %s%n", "checkpoint", "created", "expires", "properties");
+                for (Checkpoints.Info i : checkpoints.list()) {
+                    out.printf("%-36s %-24s %-24s %s%n", i.getName(), format(i.getCreated()),
+                            format(i.getExpires()), i.getProperties());
+                }
+                return 0;
+        }
+    }
+
+    private static String format(long millis) {
+        return millis < 0 ? "" : Instant.ofEpochMilli(millis).toString();
+    }
+
+    Options parseCommandLine(@Nonnull PrintWriter out, @Nonnull String[] args) {
+        checkNotNull(out);
+        checkNotNull(args);
+
+        OptionSet options;
+        try {
+            options = parser.parse(args);
+        } catch (Exception e) {
+            LOG.error("Error occured while parsing the command line", e);
+            out.println("Error parsing the command line. " + e.getMessage());
+            printHelp(out);
+            return null;
+        }
+
+        List<?> nonOptions = options.nonOptionArguments();
+        Options o = new Options();
+        // first item is the command itself
+        try {
+            o.action = nonOptions.size() < 2 ? Action.LIST
+                    : Action.valueOf(nonOptions.get(1).toString().toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException e) {
+            out.println("Error parsing the command line. Unknown action: " + nonOptions.get(1));
+            printHelp(out);
+            return null;
+        }
+
+        int expected = o.action == Action.RELEASE ? 3 : 2;
+        if (nonOptions.size() > expected || o.action == Action.RELEASE && nonOptions.size() < expected
+                || o.action != Action.CREATE && (options.has(lifetime) || options.has(label))) {
+            out.println("Error parsing the command line.");
+            printHelp(out);
+            return null;
+        }
+
+        o.name = o.action == Action.RELEASE ? nonOptions.get(2).toString() : null;
+        o.lifetime = options.valueOf(lifetime);
+        o.label = options.valueOf(label);
+        if (o.lifetime < 1) {
+            out.println("Error parsing the command line. Lifetime must be positive.");
+            return null;
+        }
+        return o;
+    }
+
+    private void printHelp(@Nonnull PrintWriter pw) {
+        checkNotNull(pw);
+
+        pw.println("\nUsage: checkpoint [list | create [option params] | release <checkpoint>]\n");
+
+        try {
+            parser.printHelpOn(pw);
+        } catch (IOException e) {
+            LOG.error("Error printing help", e);
+            pw.write("Error while printing help screen.");
+        }
+    }
+
+    @Override
+    public String getDescription() {
+        return "Create, list or release checkpoints";
+    }
+
+    @Override
+    public boolean isExit() {
+        return false;
+    }
+}
@@ -20,9 +20,10 @@
 
 package to.adapt.from02oak.console.commands;
 
-import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import to.adapt.from02oak.repository.ColourCache;
 import to.adapt.from02oak.repository.Repository;
 
 import javax.annotation.Nonnull;
@@ -31,17 +32,23 @@ import javax.jcr.Session;
 import javax.jcr.query.*;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.List;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * query the repository for nodes with the provided colour
  *
+ * The statement is constant and the colour passed as bind variable. Results are cached till a colour changes,
+ * see {@link ColourCache}.
+ *
  * Usage:
  *  colour red
  */
 public class ColourCommand  implements Command{
     private static final Logger LOG = LoggerFactory.getLogger(ColourCommand.class);
+    static final String STATEMENT = "SELECT * FROM [nt:base] WHERE colour = $colour";
+    private static final String BIND_COLOUR = "colour";
 
     @Override
     public int execute(@Nonnull PrintWriter out, @Nonnull String[] args) throws IOException {
@@ -55,42 +62,71 @@ public class ColourCommand  implements Command{
         }
 
         String colour = args[1];
-        String statement = String.format("SELECT * FROM [nt:base] WHERE colour = '%s'", colour);
-        Session session = null;
+        Repository repo = Repository.getRepo();
+        ColourCache cache = repo.getColourCache();
+        List<String> paths = cache == null ? null : cache.get(colour);
+        if (paths != null) {
+            LOG.debug("{} nodes of colour {} served from cache", paths.size(), colour);
+            print(out, colour, paths);
+            return 0;
+        }
 
+        Session session = null;
         try {
-            session = Repository.getRepo().login(Repository.ADMIN);
-            QueryManager qm =  session.getWorkspace().getQueryManager();
-            Query q = qm.createQuery(statement, Query.JCR_SQL2);
-            QueryResult results = q.execute();
-            RowIterator rows = results.getRows();
-
-            if (rows.hasNext()) {
-                rows.forEachRemaining(o -> {
-                    Row r = (Row)o;
-                    try {
-                        out.printf("  - %s%n", r.getPath());
-                    } catch (RepositoryException e) {
-                        LOG.error("Error looping through nodes", e);
-                        out.println("Error looping through nodes. " + e.getMessage());
-                    }
-                });
-            } else {
-                out.printf("No nodes found for colour: %s%n", colour);
+            session = repo.borrowSession();
+            long generation = cache == null ? 0 : cache.getGeneration();
+            // a query holds the session it's created with: not kept across calls as the session goes back to the pool
+            Query q = session.getWorkspace().getQueryManager().createQuery(STATEMENT, Query.JCR_SQL2);
+            q.bindValue(BIND_COLOUR, session.getValueFactory().createValue(colour));
+            RowIterator rows = q.execute().getRows();
+
+            paths = Lists.newArrayList();
+            while (rows.hasNext()) {
+                Row r = rows.nextRow();
+                out.printf("  - %s%n", r.getPath());
+                paths.add(r.getPath());
+                if (paths.size() > ColourCache.MAX_CACHED_PATHS) {
+                    // too big to be cached. Keep streaming without collecting.
+                    paths.clear();
+                    paths = null;
+                    rows.forEachRemaining(o -> {
+                        try {
+                            out.printf("  - %s%n", ((Row) o).getPath());
+                        } catch (RepositoryException e) {
+                            LOG.error("Error looping through nodes", e);
+                            out.println("Error looping through nodes. " + e.getMessage());
+                        }
+                    });
+                    break;
+                }
+            }
+
+            if (paths != null) {
+                if (paths.isEmpty()) {
+                    out.printf("No nodes found for colour: %s%n", colour);
+                }
+                if (cache != null) {
+                    cache.put(colour, paths, generation);
+                }
             }
         } catch (RepositoryException e) {
             LOG.error("Error searching for colours", e);
             out.println("Error while searching for colour. " + e.getMessage());
         } finally {
-            if (session != null) {
-                session.logout();
-            }
+            repo.returnSession(session);
         }
 
 
         return 0;
     }
 
+    private static void print(@Nonnull PrintWriter out, @Nonnull String colour, @Nonnull List<String> paths) {
+        if (paths.isEmpty()) {
+            out.printf("No nodes found for colour: %s%n", colour);
+        }
+        paths.forEach(p -> out.printf("  - %s%n", p));
+    }
+
     @Override
     public String getDescription() {
         return "Search for all the nodes with a specific `colour`";
@@ -0,0 +1,266 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.console.commands;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.Lists;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import to.adapt.from02oak.repository.Repository;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_CONTENT_NODE_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NAME;
+
+/**
+ * print the distinct values of a property index, optionally with how many nodes hold each of them.
+ *
+ * Counts are read from the index content only, no content node is loaded. By default they come from the
+ * approximate counters Oak keeps on each value; values too small to have one are counted exactly up to
+ * {@link #APPROXIMATE_SCAN_LIMIT}. With {@code --exact} the index entries are scanned in parallel.
+ *
+ * Usage:
+ *      colours [--count [--exact] [--threads 4]] [--index colour]
+ */
+class ColoursCommand implements Command {
+    private static final Logger LOG = LoggerFactory.getLogger(ColoursCommand.class);
+    static final long APPROXIMATE_SCAN_LIMIT = 10000;
+
+    /**
+     * as in {@code ContentMirrorStoreStrategy} and {@code ApproximateCounter}
+     */
+    private static final String MATCH = "match";
+    private static final String COUNT = ":count";
+
+    private final OptionParser parser = new OptionParser();
+    private final OptionSpec<Void> count = parser.accepts("count", "count the nodes for each value");
+    private final OptionSpec<Void> exact = parser.accepts("exact", "scan the index for exact counts");
+    private final OptionSpec<Integer> threads = parser.accepts("threads", "parallelism of the exact scan")
+            .withRequiredArg()
+            .ofType(Integer.class)
+            .defaultsTo(Runtime.getRuntime().availableProcessors());
+    private final OptionSpec<String> index = parser.accepts("index", "property index to read")
+            .withRequiredArg()
+            .ofType(String.class)
+            .defaultsTo(Repository.COLOUR_INDEX);
+
+    class Options {
+        boolean count;
+        boolean exact;
+        int threads;
+        String index;
+    }
+
+    @Override
+    public int execute(@Nonnull PrintWriter out, @Nonnull String[] args) throws IOException {
+        Options o = parseCommandLine(out, args);
+        if (o == null) {
+            return 1;
+        }
+
+        if (!Commands.flushGroup(out)) {
+            return 1;
+        }
+
+        NodeState definition = Repository.getRepo().getNodeStore().getRoot()
+                .getChildNode(INDEX_DEFINITIONS_NAME).getChildNode(o.index);
+        if (!definition.exists()) {
+            out.printf("Error. Index %s not found%n", o.index);
+            return 1;
+        }
+        NodeState content = definition.getChildNode(INDEX_CONTENT_NODE_NAME);
+
+        Stopwatch sw = Stopwatch.createStarted();
+        ForkJoinPool pool = o.count && o.exact ? new ForkJoinPool(o.threads) : null;
+        try {
+            long total = 0;
+            for (ChildNodeEntry value : content.getChildNodeEntries()) {
+                String name = decode(value.getName());
+                if (!o.count) {
+                    out.println(name);
+                    continue;
+                }
+
+                if (pool != null) {
+                    long c = pool.invoke(new Counter(value.getNodeState()));
+                    total += c;
+                    out.printf("%-20s %d%n", name, c);
+                } else {
+                    PropertyState approx = value.getNodeState().getProperty(COUNT);
+                    if (approx != null) {
+                        long c = approx.getValue(Type.LONG);
+                        total += c;
+                        out.printf("%-20s ~%d%n", name, c);
+                    } else {
+                        long c = countUpTo(value.getNodeState(), APPROXIMATE_SCAN_LIMIT);
+                        total += c;
+                        out.printf("%-20s %s%d%n", name, c >= APPROXIMATE_SCAN_LIMIT ? ">=" : "", c);
+                    }
+                }
+            }
+            if (o.count) {
+                out.printf("%-20s %s%d in %s%n", "total", o.exact ? "" : "~", total, sw);
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * values are stored url encoded
+     */
+    static String decode(@Nonnull String name) {
+        try {
+            return URLDecoder.decode(name, "UTF-8");
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            return name;
+        }
+    }
+
+    /**
+     * count the index entries of a subtree, stopping at {@code limit}
+     */
+    static long countUpTo(@Nonnull NodeState node, long limit) {
+        long c = node.getBoolean(MATCH) ? 1 : 0;
+        for (ChildNodeEntry e : node.getChildNodeEntries()) {
+            if (c >= limit) {
+                break;
+            }
+            c += countUpTo(e.getNodeState(), limit - c);
+        }
+        return c;
+    }
+
+    /**
+     * counts the index entries of a subtree. Leaves are counted inline; children with their own children are
+     * forked, at most {@link #FORK_CHUNK} at a time, so that flat content doesn't queue a task per node.
+     */
+    static class Counter extends RecursiveTask<Long> {
+        /**
+         * as {@code WalkTree.FORK_CHUNK}
+         */
+        static final int FORK_CHUNK = 64;
+
+        private final NodeState node;
+
+        Counter(@Nonnull NodeState node) {
+            this.node = node;
+        }
+
+        @Override
+        protected Long compute() {
+            long c = node.getBoolean(MATCH) ? 1 : 0;
+            List<Counter> forks = Lists.newArrayListWithCapacity(FORK_CHUNK);
+            for (ChildNodeEntry e : node.getChildNodeEntries()) {
+                NodeState n = e.getNodeState();
+                if (n.getChildNodeCount(1) == 0) {
+                    c += n.getBoolean(MATCH) ? 1 : 0;
+                } else {
+                    forks.add(new Counter(n));
+                    if (forks.size() >= FORK_CHUNK) {
+                        c += join(forks);
+                    }
+                }
+            }
+            return c + join(forks);
+        }
+
+        private static long join(@Nonnull List<Counter> forks) {
+            long c = 0;
+            invokeAll(forks);
+            for (Counter f : forks) {
+                c += f.join();
+            }
+            forks.clear();
+            return c;
+        }
+    }
+
+    Options parseCommandLine(@Nonnull PrintWriter out, @Nonnull String[] args) {
+        checkNotNull(out);
+        checkNotNull(args);
+
+        OptionSet options;
+        try {
+            options = parser.parse(args);
+        } catch (Exception e) {
+            LOG.error("Error occured while parsing the command line", e);
+            out.println("Error parsing the command line. " + e.getMessage());
+            printHelp(out);
+            return null;
+        }
+
+        Options o = new Options();
+        o.count = options.has(count);
+        o.exact = options.has(exact);
+        o.threads = options.valueOf(threads);
+        o.index = options.valueOf(index);
+        if (o.threads < 1) {
+            out.println("Error parsing the command line. Threads must be positive.");
+            return null;
+        }
+
+        return o;
+    }
+
+    private void printHelp(@Nonnull PrintWriter pw) {
+        checkNotNull(pw);
+
+        pw.println("\nUsage: colours [option params]\n");
+
+        try {
+            parser.printHelpOn(pw);
+        } catch (IOException e) {
+            LOG.error("Error printing help", e);
+            pw.write("Error while printing help screen.");
+        }
+    }
+
+    @Override
+    public String getDescription() {
+        return "Print the distinct colours and how many nodes have them";
+    }
+
+    @Override
+    public boolean isExit() {
+        return false;
+    }
+}
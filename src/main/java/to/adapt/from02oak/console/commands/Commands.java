@@ -21,8 +21,11 @@ package to.adapt.from02oak.console.commands;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import to.adapt.from02oak.repository.Repository;
 
 import javax.annotation.Nonnull;
+import javax.jcr.RepositoryException;
+import java.io.PrintWriter;
 import java.util.Comparator;
 import java.util.Locale;
 
@@ -30,13 +33,29 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 public enum Commands {
     EXIT("exit", new ExitCommand()),
+    EXPLAIN("explain", new ExplainCommand()),
+    FIND("find", new FindCommand()),
     LS("ls", new ListCommand()),
     HELP("help", new HelpCommand()),
     CAT("cat", new CatCommand()),
     ADD("add", new AddCommand()),
     RM("rm", new RmCommand()),
+    CP("cp", new CopyCommand(false)),
+    MV("mv", new CopyCommand(true)),
     UP("up", new UpCommand()),
-    COLOUR("colour", new ColourCommand());
+    PUT("put", new PutCommand()),
+    COLOUR("colour", new ColourCommand()),
+    COLOURS("colours", new ColoursCommand()),
+    IMPORT("import", new ImportCommand()),
+    EXPORT("export", new ExportCommand()),
+    GENERATE("generate", new GenerateCommand()),
+    GC("gc", new GcCommand()),
+    BLOBGC("blobgc", new BlobGcCommand()),
+    INDEX("index", new IndexCommand()),
+    CHECKPOINT("checkpoint", new CheckpointCommand()),
+    DIFF("diff", new DiffCommand()),
+    STATS("stats", new StatsCommand()),
+    STORESTATS("storestats", new StoreStatsCommand());
 
     public static Comparator<Commands> LEXICOGRAPHICALLY_ORDER = new Comparator<Commands>() {
         @Override
@@ -51,21 +70,50 @@ public enum Commands {
     private static final Logger LOG = LoggerFactory.getLogger(Commands.class);
 
     private final String name;
-    private final Command command;
+    private final TimedCommand command;
 
     Commands(@Nonnull String name, @Nonnull Command command) {
         this.name = checkNotNull(name);
-        this.command = checkNotNull(command);
+        this.command = new TimedCommand(command);
     }
 
+    /**
+     * @return the command. Every execution is recorded in {@link #getStats()}.
+     */
     public Command getCommand() {
         return this.command;
     }
 
+    /**
+     * @return latency and error counters of the command
+     */
+    public LatencyStats getStats() {
+        return this.command.getStats();
+    }
+
     public String getName() {
         return this.name;
     }
 
+    /**
+     * save the operations pending in the script group of the current thread, see
+     * {@link Repository#beginGroup(int)}. To be called first by every command working straight on the
+     * {@code NodeStore}, which would otherwise miss them and conflict with their later save.
+     *
+     * @param out where to report an error. Cannot be null.
+     * @return {@code false} if the save failed, already reported on {@code out}
+     */
+    static boolean flushGroup(@Nonnull PrintWriter out) {
+        try {
+            Repository.getRepo().flushGroup();
+            return true;
+        } catch (RepositoryException e) {
+            LOG.error("Error saving the pending operations", e);
+            out.println("Error saving the pending operations. " + e.getMessage());
+            return false;
+        }
+    }
+
     /**
      * Parse the command Line and return the requested command if exists.
      *
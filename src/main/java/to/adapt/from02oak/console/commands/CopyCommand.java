@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.console.commands;
+
+import com.google.common.base.Stopwatch;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.commons.PathUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import to.adapt.from02oak.repository.Repository;
+import to.adapt.from02oak.repository.SubtreeCopier;
+
+import javax.annotation.Nonnull;
+import javax.jcr.RepositoryException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * copy or move a subtree straight on the {@code NodeStore}. The copy shares the existing records in the segment
+ * store, so it takes about the same time and space whatever the size of the subtree.
+ *
+ * No JCR validation is performed: the target parent must accept the node as a child.
+ *
+ * usage: cp /path/to/source /path/to/target
+ *        mv /path/to/source /path/to/target
+ */
+class CopyCommand implements Command {
+    private static final Logger LOG = LoggerFactory.getLogger(CopyCommand.class);
+
+    private final OptionParser parser = new OptionParser();
+    private final boolean move;
+
+    class Options {
+        String source;
+        String target;
+    }
+
+    /**
+     * @param move {@code true} to remove the source once copied
+     */
+    CopyCommand(boolean move) {
+        this.move = move;
+    }
+
+    @Override
+    public int execute(@Nonnull PrintWriter out, @Nonnull String[] args) throws IOException {
+        Options o = parseCommandLine(out, args);
+        if (o == null) {
+            return 1;
+        }
+
+        Stopwatch sw = Stopwatch.createStarted();
+        try {
+            if (move) {
+                SubtreeCopier.move(Repository.getRepo(), o.source, o.target);
+            } else {
+                SubtreeCopier.copy(Repository.getRepo(), o.source, o.target);
+            }
+        } catch (CommitFailedException | RepositoryException | IllegalArgumentException e) {
+            LOG.error("Error while {} node", move ? "moving" : "copying", e);
+            out.printf("Error while %s node. %s%n", move ? "moving" : "copying", e.getMessage());
+            return 1;
+        }
+
+        out.printf("%s %s to %s in %s%n", move ? "Moved" : "Copied", o.source, o.target, sw);
+        return 0;
+    }
+
+    Options parseCommandLine(@Nonnull PrintWriter out, @Nonnull String[] args) {
+        checkNotNull(out);
+        checkNotNull(args);
+
+        OptionSet options;
+        try {
+            options = parser.parse(args);
+        } catch (Exception e) {
+            LOG.error("Error occured while parsing the command line", e);
+            out.println("Error parsing the command line. " + e.getMessage());
+            printHelp(out);
+            return null;
+        }
+
+        List<?> nonOptions = options.nonOptionArguments();
+        // first item is the command itself
+        if (nonOptions.size() != 3) {
+            out.println("Error parsing the command line");
+            printHelp(out);
+            return null;
+        }
+
+        Options o = new Options();
+        o.source = nonOptions.get(1).toString();
+        o.target = nonOptions.get(2).toString();
+        if (!PathUtils.isAbsolute(o.source) || !PathUtils.isAbsolute(o.target)
+                || PathUtils.denotesRoot(o.source) || PathUtils.denotesRoot(o.target)) {
+            out.println("Error parsing the command line. Paths must be absolute and not the root.");
+            return null;
+        }
+        return o;
+    }
+
+    private void printHelp(@Nonnull PrintWriter pw) {
+        checkNotNull(pw);
+
+        pw.printf("%nUsage: %s /path/to/source /path/to/target%n%n", move ? "mv" : "cp");
+
+        try {
+            parser.printHelpOn(pw);
+        } catch (IOException e) {
+            LOG.error("Error printing help", e);
+            pw.write("Error while printing help screen.");
+        }
+    }
+
+    @Override
+    public String getDescription() {
+        return move ? "move a node and all the subnodes" : "copy a node and all the subnodes";
+    }
+
+    @Override
+    public boolean isExit() {
+        return false;
+    }
+}
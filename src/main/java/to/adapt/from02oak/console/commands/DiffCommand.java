@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package to.adapt.from02oak.console.commands;
+
+import com.google.common.base.Stopwatch;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+import org.apache.jackrabbit.oak.commons.PathUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import to.adapt.from02oak.repository.Checkpoints;
+import to.adapt.from02oak.repository.Repository;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * print what changed below a path since a checkpoint. Only the changed subtrees are visited, so it costs about
+ * the size of the change whatever the size of the repository.
+ *
+ * Each line is a change: {@code +} added, {@code -} removed, {@code ^} modified. Added and removed subtrees are
+ * printed by their root only.
+ *
+ * Usage:
+ *      diff 4a9c26b5-... [/path] [--limit 1000]
+ */
+class DiffCommand implements Command {
+    private static final Logger LOG = LoggerFactory.getLogger(DiffCommand.class);
+
+    private final OptionParser parser = new OptionParser();
+    private final OptionSpec<Integer> limit = parser.accepts("limit", "maximum amount of changes to print")
+            .withRequiredArg()
+            .ofType(Integer.class)
+            .defaultsTo(1000);
+
+    class Options {
+        String checkpoint;
+        String path;
+        int limit;
+    }
+
+    @Override
+    public int execute(@Nonnull PrintWriter out, @Nonnull String[] args) {
+        Options o = parseCommandLine(out, args);
+        if (o == null) {
+            return 1;
+        }
+
+        if (!Commands.flushGroup(out)) {
+            return 1;
+        }
+
+        Stopwatch sw = Stopwatch.createStarted();
+        int[] changes = {0};
+        long compared;
+        try {
+            compared = Repository.getRepo().getCheckpoints().diff(o.checkpoint, o.path, (change, path, property) -> {
+                out.printf("%c %s%s%n", symbol(change), path, property ? " (property)" : "");
+                return ++changes[0] < o.limit;
+            });
+        } catch (IllegalArgumentException e) {
+            LOG.error("Error comparing against checkpoint", e);
+            out.println("Error comparing against checkpoint. " + e.getMessage());
+            return 1;
+        }
+
+        if (changes[0] >= o.limit) {
+            out.printf("Stopped after %d changes.%n", changes[0]);
+        }
+        out.printf("%d changes. %d nodes compared in %s%n", changes[0], compared, sw);
+        return 0;
+    }
+
+    private static char symbol(@Nonnull Checkpoints.Change change) {
+        switch (change) {
+            case ADDED:
+                return '+';
+            case REMOVED:
+                return '-';
+            default:
+                return '^';
+        }
+    }
+
+    Options parseCommandLine(@Nonnull PrintWriter out, @Nonnull String[] args) {
+        checkNotNull(out);
+        checkNotNull(args);
+
+        OptionSet options;
+        try {
+            options = parser.parse(args);
+        } catch (Exception e) {
+            LOG.error("Error occured while parsing the command line", e);
+            out.println("Error parsing the command line. " + e.getMessage());
+            printHelp(out);
+            return null;
+        }
+
+        List<?> nonOptions = options.nonOptionArguments();
+        // first item is the command itself
+        if (nonOptions.size() < 2 || nonOptions.size() > 3) {
+            out.println("Error parsing the command line.");
+            printHelp(out);
+            return null;
+        }
+
+        Options o = new Options();
+        o.checkpoint = nonOptions.get(1).toString();
+        o.path = nonOptions.size() > 2 ? nonOptions.get(2).toString() : "/";
+        o.limit = options.valueOf(limit);
+        if (!PathUtils.isAbsolute(o.path)) {
+            out.println("Error parsing the command line. Path must be absolute.");
+            return null;
+        }
+        if (o.limit < 1) {
+            out.println("Error parsing the command line. Limit must be positive.");
+            return null;
+        }
+        return o;
+    }
+
+    private void printHelp(@Nonnull PrintWriter pw) {
+        checkNotNull(pw);
+
+        pw.println("\nUsage: diff <checkpoint> [/path] [option params]\n");
+
+        try {
+            parser.printHelpOn(pw);
+        } catch (IOException e) {
+            LOG.error("Error printing help", e);
+            pw.write("Error while printing help screen.");
+        }
+    }
+
+    @Override
+    public String getDescription() {
+        return "Print the changes since a checkpoint";
+    }
+
+    @Override
+    public boolean isExit() {
+        return false;
+    }
+}
@@ -0,0 +1,304 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.console.commands;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import to.adapt.from02oak.repository.Repository;
+
+import javax.annotation.Nonnull;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.query.Query;
+import javax.jcr.query.RowIterator;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * print how Oak is going to run a JCR-SQL2 query: the plan, the index picked and the cost of each candidate.
+ *
+ * With {@code --profile} the query is executed as well, reporting rows, traversed nodes, time and memory
+ * allocated. With {@code --strict n} a query whose plan costs more than {@code n}, typically a traversal, is not
+ * executed. So is a plan whose cost could not be told, e.g. because Oak logged it in an unknown format.
+ *
+ * Costs and traversed nodes are taken from Oak's debug logging, captured for the duration of the command.
+ *
+ * Usage:
+ *      explain [--profile] [--strict 10000] SELECT * FROM [nt:base] WHERE colour = 'red'
+ */
+class ExplainCommand implements Command {
+    private static final Logger LOG = LoggerFactory.getLogger(ExplainCommand.class);
+    static final String TRAVERSE = "traverse";
+
+    private static final String QUERY_LOGGER = "org.apache.jackrabbit.oak.query";
+    private static final String INDEX_LOGGER = "org.apache.jackrabbit.oak.plugins.index";
+    private static final Pattern COST = Pattern.compile("cost for (\\S+) is (\\S+)");
+    /**
+     * advanced indexes, e.g. lucene, log the plan as it appears in the explain output
+     */
+    private static final Pattern ADVANCED_COST = Pattern.compile(
+            "cost for \\[(.*?)\\] of type \\((.*?)\\) with plan \\[(.*)\\] is (\\S+)");
+    private static final Pattern TRAVERSED = Pattern.compile("[Tt]raversed (\\d+) nodes");
+    private static final Pattern INDEX = Pattern.compile("/\\*\\s*(\\S+)");
+
+    private final OptionParser parser = new OptionParser();
+    private final OptionSpec<Void> profile = parser.accepts("profile", "execute the query and report its costs");
+    private final OptionSpec<Long> strict = parser.accepts("strict", "do not execute plans costing more than this")
+            .withRequiredArg()
+            .ofType(Long.class);
+
+    class Options {
+        String statement;
+        boolean profile;
+        Long strict;
+    }
+
+    @Override
+    public int execute(@Nonnull PrintWriter out, @Nonnull String[] args) throws IOException {
+        Options o = parseCommandLine(out, args);
+        if (o == null) {
+            return 1;
+        }
+
+        Repository repo = Repository.getRepo();
+        Session session = null;
+        try {
+            session = repo.borrowSession();
+
+            String plan;
+            Map<String, Double> costs;
+            try (LogCapture capture = new LogCapture(QUERY_LOGGER)) {
+                Query q = session.getWorkspace().getQueryManager().createQuery("explain " + o.statement, Query.JCR_SQL2);
+                plan = q.execute().getRows().nextRow().getValue("plan").getString();
+                costs = costs(capture.getMessages());
+            }
+
+            List<String> indexes = indexes(plan);
+            double cost = cost(indexes, costs);
+            out.printf("plan:  %s%n", plan);
+            out.printf("index: %s%s%n", String.join(", ", indexes), indexes.contains(TRAVERSE) ? "  <-- TRAVERSAL" : "");
+            costs.forEach((index, c) -> out.printf("  cost for %-30s %.1f%n", index, c));
+
+            boolean refused = o.strict != null && (Double.isNaN(cost) || cost > o.strict);
+            if (refused && Double.isNaN(cost)) {
+                out.printf("Plan cost unknown: refused by the strict limit of %d%n", o.strict);
+            } else if (refused) {
+                out.printf("Plan cost %.1f exceeds the strict limit of %d%n", cost, o.strict);
+            }
+            if (!o.profile) {
+                return 0;
+            }
+            if (refused) {
+                out.println("Not executing the query.");
+                return 1;
+            }
+
+            profile(out, session, o.statement);
+        } catch (RepositoryException | RuntimeException e) {
+            LOG.error("Error explaining query", e);
+            out.println("Error explaining query. " + e.getMessage());
+            return 1;
+        } finally {
+            repo.returnSession(session);
+        }
+
+        return 0;
+    }
+
+    private static void profile(@Nonnull PrintWriter out, @Nonnull Session session, @Nonnull String statement)
+            throws RepositoryException {
+        long allocated = allocatedBytes();
+        long rows = 0;
+        long traversed;
+        Stopwatch sw = Stopwatch.createStarted();
+        try (LogCapture capture = new LogCapture(QUERY_LOGGER, INDEX_LOGGER)) {
+            RowIterator it = session.getWorkspace().getQueryManager().createQuery(statement, Query.JCR_SQL2)
+                    .execute().getRows();
+            while (it.hasNext()) {
+                it.nextRow().getPath();
+                rows++;
+            }
+            sw.stop();
+            traversed = traversed(capture.getMessages());
+        }
+        allocated = allocated < 0 ? -1 : allocatedBytes() - allocated;
+
+        out.printf("rows:      %d%n", rows);
+        // Oak reports the traversed nodes every thousand
+        out.printf("traversed: %s%n", traversed < 0 ? "< 1000" : "~" + traversed);
+        out.printf("time:      %s%n", sw);
+        out.printf("allocated: %s%n", allocated < 0 ? "n/a" : allocated + " bytes");
+    }
+
+    /**
+     * @return the bytes allocated so far by the current thread. {@code -1} if the JVM can't tell.
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean b = (com.sun.management.ThreadMXBean) bean;
+            if (b.isThreadAllocatedMemorySupported() && b.isThreadAllocatedMemoryEnabled()) {
+                return b.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the cost of each index considered by the planner, as logged by Oak. Advanced indexes are keyed by the
+     * first token of their plan, as returned by {@link #indexes(String)}.
+     */
+    static Map<String, Double> costs(@Nonnull List<String> messages) {
+        Map<String, Double> costs = Maps.newLinkedHashMap();
+        for (String m : messages) {
+            String index;
+            String cost;
+            Matcher matcher = ADVANCED_COST.matcher(m);
+            if (matcher.find()) {
+                String plan = matcher.group(3).trim();
+                index = plan.isEmpty() ? matcher.group(2) : plan.split("\\s+")[0];
+                cost = matcher.group(4);
+            } else if ((matcher = COST.matcher(m)).find()) {
+                index = matcher.group(1);
+                cost = matcher.group(2);
+            } else {
+                continue;
+            }
+            try {
+                costs.put(index, Double.valueOf(cost));
+            } catch (NumberFormatException e) {
+                LOG.debug("Unparseable cost: {}", m);
+            }
+        }
+        return costs;
+    }
+
+    /**
+     * @return the highest amount of traversed nodes reported. {@code -1} if none.
+     */
+    static long traversed(@Nonnull List<String> messages) {
+        long max = -1;
+        for (String m : messages) {
+            Matcher matcher = TRAVERSED.matcher(m);
+            if (matcher.find()) {
+                max = Math.max(max, Long.parseLong(matcher.group(1)));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * @return the indexes used by each selector of the plan
+     */
+    static List<String> indexes(@Nonnull String plan) {
+        List<String> indexes = Lists.newArrayList();
+        Matcher m = INDEX.matcher(plan);
+        while (m.find()) {
+            indexes.add(m.group(1));
+        }
+        return indexes;
+    }
+
+    /**
+     * @return the cost of the chosen indexes. {@link Double#NaN} if the cost of any of them is not known.
+     */
+    static double cost(@Nonnull List<String> indexes, @Nonnull Map<String, Double> costs) {
+        if (indexes.isEmpty()) {
+            return Double.NaN;
+        }
+        double total = 0;
+        for (String index : indexes) {
+            total += costs.entrySet().stream()
+                    .filter(e -> index.startsWith(e.getKey()))
+                    .mapToDouble(Map.Entry::getValue)
+                    .min()
+                    .orElse(Double.NaN);
+        }
+        return total;
+    }
+
+    Options parseCommandLine(@Nonnull PrintWriter out, @Nonnull String[] args) {
+        checkNotNull(out);
+        checkNotNull(args);
+
+        OptionSet options;
+        try {
+            options = parser.parse(args);
+        } catch (Exception e) {
+            LOG.error("Error occured while parsing the command line", e);
+            out.println("Error parsing the command line. " + e.getMessage());
+            printHelp(out);
+            return null;
+        }
+
+        List<?> nonOptions = options.nonOptionArguments();
+        // first item is the command itself
+        if (nonOptions.size() < 2) {
+            out.println("Error parsing the command line. Missing query.");
+            printHelp(out);
+            return null;
+        }
+
+        Options o = new Options();
+        o.statement = nonOptions.subList(1, nonOptions.size()).stream().map(Object::toString)
+                .collect(Collectors.joining(" "));
+        o.profile = options.has(profile);
+        o.strict = options.valueOf(strict);
+        return o;
+    }
+
+    private void printHelp(@Nonnull PrintWriter pw) {
+        checkNotNull(pw);
+
+        pw.println("\nUsage: explain [option params] <JCR-SQL2 query>\n");
+
+        try {
+            parser.printHelpOn(pw);
+        } catch (IOException e) {
+            LOG.error("Error printing help", e);
+            pw.write("Error while printing help screen.");
+        }
+    }
+
+    @Override
+    public String getDescription() {
+        return "Explain and optionally profile a JCR-SQL2 query";
+    }
+
+    @Override
+    public boolean isExit() {
+        return false;
+    }
+}
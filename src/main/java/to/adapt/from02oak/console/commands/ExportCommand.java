@@ -0,0 +1,323 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.console.commands;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+import org.apache.jackrabbit.oak.api.Blob;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.commons.PathUtils;
+import org.apache.jackrabbit.oak.commons.json.JsopBuilder;
+import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import to.adapt.from02oak.repository.Repository;
+
+import javax.annotation.Nonnull;
+import javax.jcr.PropertyType;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.jackrabbit.JcrConstants.JCR_PRIMARYTYPE;
+import static to.adapt.from02oak.console.commands.ImportCommand.rate;
+
+/**
+ * export a subtree to a JSON lines file that {@code import} can read back, optionally under another path.
+ *
+ * The subtree is walked depth first straight on a {@code NodeState} snapshot and written one node per line, parents
+ * before their children, so memory stays constant whatever the size of the subtree. Property types JSON cannot
+ * express are listed under {@code "types"}:
+ *
+ * <pre>
+ *     {"path": "/a/b", "type": "oak:Unstructured", "properties": {"colour": "red", "at": "2016-09-26T10:00:00.000Z"},
+ *      "types": {"at": "Date"}}
+ * </pre>
+ *
+ * Binaries are written inline in base64, one at a time, or with {@code --binaries reference} as references to the
+ * blob store, for importing into a repository sharing the same data store. Blobs with no reference, as the ones
+ * inlined in the segments, are always written inline. Hidden items, as {@code :childOrder}, are skipped.
+ *
+ * Usage:
+ *      export /path/to/node /path/to/file.jsonl [--binaries inline|reference]
+ */
+class ExportCommand implements Command {
+    private static final Logger LOG = LoggerFactory.getLogger(ExportCommand.class);
+    private static final long PROGRESS_INTERVAL_MS = TimeUnit.SECONDS.toMillis(5);
+    static final String BINARY_REFERENCE = "BinaryReference";
+
+    enum Binaries {
+        INLINE, REFERENCE
+    }
+
+    private final OptionParser parser = new OptionParser();
+    private final OptionSpec<String> binaries = parser.accepts("binaries", "inline or reference")
+            .withRequiredArg()
+            .ofType(String.class)
+            .defaultsTo("inline");
+
+    class Options {
+        String path;
+        File file;
+        Binaries binaries;
+    }
+
+    @Override
+    public int execute(@Nonnull PrintWriter out, @Nonnull String[] args) throws IOException {
+        Options o = parseCommandLine(out, args);
+        if (o == null) {
+            return 1;
+        }
+
+        Repository repo = Repository.getRepo();
+        if (!Commands.flushGroup(out)) {
+            return 1;
+        }
+
+        NodeState node = repo.getNodeStore().getRoot();
+        for (String name : PathUtils.elements(o.path)) {
+            node = node.getChildNode(name);
+        }
+        if (!node.exists()) {
+            out.println("Error while exporting. Not found: " + o.path);
+            return 1;
+        }
+
+        Exporter e = new Exporter(out, o.binaries == Binaries.REFERENCE);
+        try (Writer w = Files.newBufferedWriter(o.file.toPath(), UTF_8)) {
+            e.export(w, o.path, node);
+        } catch (IOException ex) {
+            LOG.error("Error while exporting", ex);
+            out.println("Error while exporting. " + ex.getMessage());
+            return 1;
+        }
+
+        out.printf("Exported %d nodes in %s (%.0f nodes/s). %d binaries inline, %d by reference.%n",
+                e.nodes, e.sw, rate(e.nodes, e.sw), e.inlined, e.referenced);
+        return 0;
+    }
+
+    /**
+     * writes the nodes and tracks the progress
+     */
+    private static class Exporter {
+        private final PrintWriter out;
+        private final boolean references;
+        private final Stopwatch sw = Stopwatch.createStarted();
+        private long lastPrint;
+        private long nodes;
+        private long inlined;
+        private long referenced;
+
+        Exporter(@Nonnull PrintWriter out, boolean references) {
+            this.out = out;
+            this.references = references;
+        }
+
+        void export(@Nonnull Writer w, @Nonnull String path, @Nonnull NodeState node) throws IOException {
+            w.write(toJson(path, node));
+            w.write('\n');
+            nodes++;
+
+            long now = sw.elapsed(TimeUnit.MILLISECONDS);
+            if (now - lastPrint >= PROGRESS_INTERVAL_MS) {
+                lastPrint = now;
+                out.printf("  %d nodes exported (%.0f nodes/s)%n", nodes, rate(nodes, sw));
+                out.flush();
+            }
+
+            for (ChildNodeEntry c : node.getChildNodeEntries()) {
+                if (!isHidden(c.getName())) {
+                    export(w, PathUtils.concat(path, c.getName()), c.getNodeState());
+                }
+            }
+        }
+
+        /**
+         * @return the node as a single JSON line, without the trailing new line
+         */
+        String toJson(@Nonnull String path, @Nonnull NodeState node) throws IOException {
+            JsopBuilder json = new JsopBuilder();
+            json.object().key("path").value(path);
+            String type = node.getName(JCR_PRIMARYTYPE);
+            if (type != null) {
+                json.key("type").value(type);
+            }
+
+            Map<String, String> types = Maps.newLinkedHashMap();
+            json.key("properties").object();
+            for (PropertyState p : node.getProperties()) {
+                String name = p.getName();
+                if (isHidden(name) || JCR_PRIMARYTYPE.equals(name)) {
+                    continue;
+                }
+                int tag = p.getType().tag();
+                boolean byReference = tag == PropertyType.BINARY && references && hasReferences(p);
+                json.key(name);
+                if (p.isArray()) {
+                    json.array();
+                    for (int i = 0; i < p.count(); i++) {
+                        value(json, p, i, byReference);
+                    }
+                    json.endArray();
+                } else {
+                    value(json, p, 0, byReference);
+                }
+
+                boolean nativeJson = tag == PropertyType.STRING
+                        || (tag == PropertyType.LONG || tag == PropertyType.BOOLEAN) && (!p.isArray() || p.count() > 0);
+                if (byReference) {
+                    types.put(name, BINARY_REFERENCE);
+                } else if (!nativeJson) {
+                    types.put(name, PropertyType.nameFromValue(tag));
+                }
+            }
+            json.endObject();
+
+            if (!types.isEmpty()) {
+                json.key("types").object();
+                types.forEach((name, t) -> json.key(name).value(t));
+                json.endObject();
+            }
+            return json.endObject().toString();
+        }
+
+        private void value(@Nonnull JsopBuilder json, @Nonnull PropertyState p, int index, boolean byReference)
+                throws IOException {
+            switch (p.getType().tag()) {
+                case PropertyType.LONG:
+                    json.value(p.getValue(Type.LONG, index));
+                    break;
+                case PropertyType.BOOLEAN:
+                    json.value(p.getValue(Type.BOOLEAN, index));
+                    break;
+                case PropertyType.BINARY:
+                    Blob blob = p.getValue(Type.BINARY, index);
+                    if (byReference) {
+                        json.value(blob.getReference());
+                        referenced++;
+                    } else {
+                        try (InputStream in = blob.getNewStream()) {
+                            json.value(Base64.getEncoder().encodeToString(ByteStreams.toByteArray(in)));
+                        }
+                        inlined++;
+                    }
+                    break;
+                default:
+                    json.value(p.getValue(Type.STRING, index));
+            }
+        }
+
+        /**
+         * @return {@code true} if every blob of the property can be written as a reference
+         */
+        private static boolean hasReferences(@Nonnull PropertyState p) {
+            for (int i = 0; i < p.count(); i++) {
+                if (p.getValue(Type.BINARY, i).getReference() == null) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static boolean isHidden(@Nonnull String name) {
+        return name.startsWith(":");
+    }
+
+    Options parseCommandLine(@Nonnull PrintWriter out, @Nonnull String[] args) {
+        checkNotNull(out);
+        checkNotNull(args);
+
+        OptionSet options;
+        try {
+            options = parser.parse(args);
+        } catch (Exception e) {
+            LOG.error("Error occured while parsing the command line", e);
+            out.println("Error parsing the command line. " + e.getMessage());
+            printHelp(out);
+            return null;
+        }
+
+        List<?> nonOptions = options.nonOptionArguments();
+        // first item is the command itself
+        if (nonOptions.size() != 3) {
+            out.println("Error parsing the command line. Expected the path to export and the file to write.");
+            printHelp(out);
+            return null;
+        }
+
+        Options o = new Options();
+        o.path = nonOptions.get(1).toString();
+        o.file = new File(nonOptions.get(2).toString());
+        try {
+            o.binaries = Binaries.valueOf(options.valueOf(binaries).toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException e) {
+            out.println("Error parsing the command line. Unknown binaries mode: " + options.valueOf(binaries));
+            printHelp(out);
+            return null;
+        }
+        if (!PathUtils.isAbsolute(o.path) || PathUtils.denotesRoot(o.path)) {
+            out.println("Error parsing the command line. Path must be absolute and not the root.");
+            return null;
+        }
+        return o;
+    }
+
+    private void printHelp(@Nonnull PrintWriter pw) {
+        checkNotNull(pw);
+
+        pw.println("\nUsage: export /path/to/node /path/to/file.jsonl [option params]\n");
+
+        try {
+            parser.printHelpOn(pw);
+        } catch (IOException e) {
+            LOG.error("Error printing help", e);
+            pw.write("Error while printing help screen.");
+        }
+    }
+
+    @Override
+    public String getDescription() {
+        return "export a node and all the subnodes to a JSON lines file";
+    }
+
+    @Override
+    public boolean isExit() {
+        return false;
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.console.commands;
+
+import com.google.common.collect.Maps;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import to.adapt.from02oak.repository.Repository;
+
+import javax.annotation.Nonnull;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.query.Query;
+import javax.jcr.query.RowIterator;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * search for the nodes having all the provided property values.
+ *
+ * The values are passed as bind variables; a property without an index makes the query traverse the
+ * repository. See {@code index create} and {@code explain}.
+ *
+ * Usage:
+ *      find colour=red [size=large] [--limit 1000]
+ */
+class FindCommand implements Command {
+    private static final Logger LOG = LoggerFactory.getLogger(FindCommand.class);
+    private static final int FLUSH_EVERY = 100;
+
+    private final OptionParser parser = new OptionParser();
+    private final OptionSpec<Long> limit = parser.accepts("limit", "maximum amount of nodes to print. 0 for all")
+            .withRequiredArg()
+            .ofType(Long.class)
+            .defaultsTo(1000L);
+
+    class Options {
+        Map<String, String> conditions;
+        long limit;
+    }
+
+    @Override
+    public int execute(@Nonnull PrintWriter out, @Nonnull String[] args) throws IOException {
+        Options o = parseCommandLine(out, args);
+        if (o == null) {
+            return 1;
+        }
+
+        Repository repo = Repository.getRepo();
+        Session session = null;
+        try {
+            session = repo.borrowSession();
+            Query q = session.getWorkspace().getQueryManager().createQuery(statement(o.conditions), Query.JCR_SQL2);
+            int i = 0;
+            for (String value : o.conditions.values()) {
+                q.bindValue("v" + i++, session.getValueFactory().createValue(value));
+            }
+            if (o.limit > 0) {
+                q.setLimit(o.limit);
+            }
+
+            long found = 0;
+            RowIterator rows = q.execute().getRows();
+            while (rows.hasNext()) {
+                out.printf("  - %s%n", rows.nextRow().getPath());
+                if (++found % FLUSH_EVERY == 0) {
+                    out.flush();
+                }
+            }
+            out.printf("%d nodes found%s%n", found, o.limit > 0 && found == o.limit ? ". Limit reached." : "");
+        } catch (RepositoryException e) {
+            LOG.error("Error searching for nodes", e);
+            out.println("Error searching for nodes. " + e.getMessage());
+            return 1;
+        } finally {
+            repo.returnSession(session);
+        }
+
+        return 0;
+    }
+
+    /**
+     * @return the JCR-SQL2 statement matching all the conditions, values bound as {@code $v0, $v1, ...}
+     */
+    static String statement(@Nonnull Map<String, String> conditions) {
+        StringBuilder sb = new StringBuilder("SELECT * FROM [nt:base] WHERE ");
+        int i = 0;
+        for (String property : conditions.keySet()) {
+            if (i > 0) {
+                sb.append(" AND ");
+            }
+            sb.append('[').append(property).append("] = $v").append(i++);
+        }
+        return sb.toString();
+    }
+
+    Options parseCommandLine(@Nonnull PrintWriter out, @Nonnull String[] args) {
+        checkNotNull(out);
+        checkNotNull(args);
+
+        OptionSet options;
+        try {
+            options = parser.parse(args);
+        } catch (Exception e) {
+            LOG.error("Error occured while parsing the command line", e);
+            out.println("Error parsing the command line. " + e.getMessage());
+            printHelp(out);
+            return null;
+        }
+
+        List<?> nonOptions = options.nonOptionArguments();
+        // first item is the command itself
+        if (nonOptions.size() < 2) {
+            out.println("Error parsing the command line. Missing conditions.");
+            printHelp(out);
+            return null;
+        }
+
+        Options o = new Options();
+        o.conditions = Maps.newLinkedHashMap();
+        for (Object c : nonOptions.subList(1, nonOptions.size())) {
+            String condition = c.toString();
+            int eq = condition.indexOf('=');
+            String property = eq < 0 ? "" : condition.substring(0, eq);
+            if (property.isEmpty() || property.contains("[") || property.contains("]")) {
+                out.println("Error parsing the command line. Invalid condition: " + condition);
+                printHelp(out);
+                return null;
+            }
+            o.conditions.put(property, condition.substring(eq + 1));
+        }
+        o.limit = options.valueOf(limit);
+        if (o.limit < 0) {
+            out.println("Error parsing the command line. Limit cannot be negative.");
+            return null;
+        }
+        return o;
+    }
+
+    private void printHelp(@Nonnull PrintWriter pw) {
+        checkNotNull(pw);
+
+        pw.println("\nUsage: find [option params] <property>=<value> [<property>=<value> ...]\n");
+
+        try {
+            parser.printHelpOn(pw);
+        } catch (IOException e) {
+            LOG.error("Error printing help", e);
+            pw.write("Error while printing help screen.");
+        }
+    }
+
+    @Override
+    public String getDescription() {
+        return "Search for the nodes having all the provided property values";
+    }
+
+    @Override
+    public boolean isExit() {
+        return false;
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.console.commands;
+
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import to.adapt.from02oak.repository.Repository;
+import to.adapt.from02oak.repository.RevisionGC;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.apache.jackrabbit.oak.commons.IOUtils.humanReadableByteCount;
+
+/**
+ * run the online revision garbage collection in background.
+ *
+ * Usage:
+ *
+ *      // estimate, compact and cleanup
+ *      gc
+ *
+ *      // compact and cleanup without estimating first
+ *      gc --force
+ *
+ *      // check how it's going
+ *      gc --status
+ *
+ *      // skip the phases not started yet. A running compaction is not interrupted
+ *      gc --cancel
+ */
+class GcCommand implements Command {
+    private static final Logger LOG = LoggerFactory.getLogger(GcCommand.class);
+
+    private final OptionParser parser = new OptionParser();
+    private final OptionSpec<Void> force = parser.accepts("force", "skip the estimation and always compact");
+    private final OptionSpec<Void> status = parser.accepts("status", "print the status of the current or last run");
+    private final OptionSpec<Void> cancel = parser.accepts("cancel", "skip the remaining phases of the current run. Best effort: a running compaction is not interrupted");
+    private final OptionSpec<Integer> lockWait = parser.accepts("lock-wait",
+            "seconds compaction may block writers to commit the compacted head")
+            .withRequiredArg()
+            .ofType(Integer.class);
+    private final OptionSpec<Integer> retries = parser.accepts("retries",
+            "times compaction tries to catch up with concurrent commits")
+            .withRequiredArg()
+            .ofType(Integer.class);
+    private final OptionSpec<Boolean> forceAfterFail = parser.accepts("force-after-fail",
+            "block the writers to complete compaction once the retries are exhausted")
+            .withRequiredArg()
+            .ofType(Boolean.class);
+
+    enum Action {
+        START, STATUS, CANCEL
+    }
+
+    class Options {
+        Action action;
+        boolean force;
+        Integer lockWait;
+        Integer retries;
+        Boolean forceAfterFail;
+    }
+
+    @Override
+    public int execute(@Nonnull PrintWriter out, @Nonnull String[] args) throws IOException {
+        Options o = parseCommandLine(out, args);
+        if (o == null) {
+            return 1;
+        }
+
+        RevisionGC gc = Repository.getRepo().getRevisionGC();
+        if (gc == null) {
+            out.println("Revision gc is available only on the segment store.");
+            return 1;
+        }
+
+        switch (o.action) {
+            case CANCEL:
+                out.println(gc.cancel() ? "Cancellation requested. It takes effect after the running phase." : "Revision gc is not running.");
+                break;
+            case STATUS:
+                printStatus(out, gc);
+                break;
+            case START:
+                if (o.lockWait != null) { gc.setLockWaitTime(o.lockWait); }
+                if (o.retries != null) { gc.setRetryCount(o.retries); }
+                if (o.forceAfterFail != null) { gc.setForceAfterFail(o.forceAfterFail); }
+
+                if (!gc.start(o.force)) {
+                    out.println("Revision gc already running.");
+                    printStatus(out, gc);
+                    return 1;
+                }
+                out.printf("Revision gc started in background. Size before: %s. Use `gc --status` to follow it.%n",
+                        humanReadableByteCount(gc.getSizeBefore()));
+                break;
+        }
+
+        return 0;
+    }
+
+    private static void printStatus(@Nonnull PrintWriter out, @Nonnull RevisionGC gc) {
+        out.printf("  outcome:    %s%n", gc.getOutcome());
+        out.printf("  progress:   %s%n", gc.getProgress());
+        if (gc.getElapsed() >= 0) {
+            out.printf("  time spent: %d ms%n", gc.getElapsed());
+        }
+        if (gc.getSizeBefore() >= 0) {
+            out.printf("  size before: %s%n", humanReadableByteCount(gc.getSizeBefore()));
+        }
+        if (gc.getSizeAfter() >= 0) {
+            out.printf("  size after:  %s (%s reclaimed)%n", humanReadableByteCount(gc.getSizeAfter()),
+                    humanReadableByteCount(Math.max(0, gc.getSizeBefore() - gc.getSizeAfter())));
+        } else {
+            out.printf("  size now:    %s%n", humanReadableByteCount(gc.getCurrentSize()));
+        }
+        out.printf("  gc options:  %s%n", gc.getOptions());
+    }
+
+    /**
+     * analyse the command line and return the equivalent options
+     *
+     * @param out where to redirect any output message. Cannot be null
+     * @param args passed in command line. Cannot be null.
+     * @return the options or null in case of errors.
+     */
+    Options parseCommandLine(@Nonnull PrintWriter out, @Nonnull String[] args) {
+        checkNotNull(out);
+        checkNotNull(args);
+
+        OptionSet options;
+        try {
+            options = parser.parse(args);
+        } catch (Exception e) {
+            LOG.error("Error occured while parsing the command line", e);
+            out.println("Error parsing the command line. " + e.getMessage());
+            printHelp(out);
+            return null;
+        }
+
+        if (options.has(status) && options.has(cancel)) {
+            out.println("Error parsing the command line. --status and --cancel are exclusive.");
+            printHelp(out);
+            return null;
+        }
+
+        Options o = new Options();
+        o.action = options.has(cancel) ? Action.CANCEL : options.has(status) ? Action.STATUS : Action.START;
+        o.force = options.has(force);
+        o.lockWait = options.valueOf(lockWait);
+        o.retries = options.valueOf(retries);
+        o.forceAfterFail = options.valueOf(forceAfterFail);
+        return o;
+    }
+
+    private void printHelp(@Nonnull PrintWriter pw) {
+        checkNotNull(pw);
+
+        pw.println("\nUsage: gc [option params]\n");
+
+        try {
+            parser.printHelpOn(pw);
+        } catch (IOException e) {
+            LOG.error("Error printing help", e);
+            pw.write("Error while printing help screen.");
+        }
+    }
+
+    @Override
+    public String getDescription() {
+        return "Run the online revision garbage collection";
+    }
+
+    @Override
+    public boolean isExit() {
+        return false;
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.console.commands;
+
+import com.google.common.base.Stopwatch;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.commons.PathUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import to.adapt.from02oak.repository.Repository;
+import to.adapt.from02oak.repository.initialisers.ContentGenerator;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static to.adapt.from02oak.console.commands.ImportCommand.rate;
+
+/**
+ * generate random coloured content for load testing, writing straight into the {@code NodeStore}.
+ *
+ * Nodes are spread over a bucketed hierarchy so that no node has more than {@code --fanout} children. The top
+ * level buckets are generated in parallel and each of them is merged every {@code --batch} nodes. Given the
+ * same options and {@code --seed} the same content is generated.
+ *
+ * Usage:
+ *      generate [--nodes 100000] [--fanout 1000 | --depth 3] [--properties 0] [--seed 42]
+ *               [--path /generated] [--threads 4] [--batch 10000]
+ */
+class GenerateCommand implements Command {
+    private static final Logger LOG = LoggerFactory.getLogger(GenerateCommand.class);
+    private static final long PROGRESS_INTERVAL_MS = TimeUnit.SECONDS.toMillis(5);
+
+    private final OptionParser parser = new OptionParser();
+    private final OptionSpec<Long> nodes = parser.accepts("nodes", "amount of nodes to generate")
+            .withRequiredArg()
+            .ofType(Long.class)
+            .defaultsTo(100000L);
+    private final OptionSpec<Integer> fanOut = parser.accepts("fanout", "maximum amount of children per node")
+            .withRequiredArg()
+            .ofType(Integer.class)
+            .defaultsTo(ContentGenerator.DEFAULT_FAN_OUT);
+    private final OptionSpec<Integer> depth = parser.accepts("depth", "levels of the hierarchy. Overrides --fanout")
+            .withRequiredArg()
+            .ofType(Integer.class);
+    private final OptionSpec<Integer> properties = parser.accepts("properties", "random properties per node besides the colour")
+            .withRequiredArg()
+            .ofType(Integer.class)
+            .defaultsTo(0);
+    private final OptionSpec<Long> seed = parser.accepts("seed", "seed of the random content. Random if missing")
+            .withRequiredArg()
+            .ofType(Long.class);
+    private final OptionSpec<String> path = parser.accepts("path", "where to generate the content")
+            .withRequiredArg()
+            .ofType(String.class)
+            .defaultsTo("/generated");
+    private final OptionSpec<Integer> threads = parser.accepts("threads", "parallelism")
+            .withRequiredArg()
+            .ofType(Integer.class)
+            .defaultsTo(Runtime.getRuntime().availableProcessors());
+    private final OptionSpec<Integer> batch = parser.accepts("batch", "amount of nodes per commit")
+            .withRequiredArg()
+            .ofType(Integer.class)
+            .defaultsTo(ImportCommand.DEFAULT_BATCH_SIZE);
+
+    class Options {
+        ContentGenerator generator;
+        String path;
+        int threads;
+        int batchSize;
+    }
+
+    @Override
+    public int execute(@Nonnull PrintWriter out, @Nonnull String[] args) throws IOException {
+        Options o = parseCommandLine(out, args);
+        if (o == null) {
+            return 1;
+        }
+
+        if (!Commands.flushGroup(out)) {
+            return 1;
+        }
+
+        out.printf("Generating %d nodes under %s: %s%n", o.generator.getCount(), o.path, o.generator);
+        out.flush();
+
+        Stopwatch sw = Stopwatch.createStarted();
+        LongAdder generated = new LongAdder();
+        AtomicLong lastPrint = new AtomicLong();
+        try {
+            o.generator.generate(Repository.getRepo(), o.path, o.threads, o.batchSize, merged -> {
+                generated.add(merged);
+                long now = sw.elapsed(TimeUnit.MILLISECONDS);
+                long last = lastPrint.get();
+                if (now - last >= PROGRESS_INTERVAL_MS && lastPrint.compareAndSet(last, now)) {
+                    long g = generated.sum();
+                    out.printf("  %d nodes generated (%.0f nodes/s)%n", g, rate(g, sw));
+                    out.flush();
+                }
+            });
+        } catch (CommitFailedException | RuntimeException e) {
+            LOG.error("Error while generating content", e);
+            out.println("Error while generating content. " + e.getMessage());
+            out.printf("%d nodes have been persisted.%n", generated.sum());
+            return 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            out.printf("Interrupted. %d nodes have been persisted.%n", generated.sum());
+            return 1;
+        }
+
+        long g = generated.sum();
+        out.printf("Generated %d nodes in %s (%.0f nodes/s)%n", g, sw, rate(g, sw));
+        return 0;
+    }
+
+    Options parseCommandLine(@Nonnull PrintWriter out, @Nonnull String[] args) {
+        checkNotNull(out);
+        checkNotNull(args);
+
+        OptionSet options;
+        try {
+            options = parser.parse(args);
+        } catch (Exception e) {
+            LOG.error("Error occured while parsing the command line", e);
+            out.println("Error parsing the command line. " + e.getMessage());
+            printHelp(out);
+            return null;
+        }
+
+        Options o = new Options();
+        o.path = options.valueOf(path);
+        o.threads = options.valueOf(threads);
+        o.batchSize = options.valueOf(batch);
+        if (!PathUtils.isAbsolute(o.path)) {
+            out.println("Error parsing the command line. Path must be absolute.");
+            return null;
+        }
+        if (o.threads < 1 || o.batchSize < 1) {
+            out.println("Error parsing the command line. Threads and batch size must be positive.");
+            return null;
+        }
+
+        long s = options.has(seed) ? options.valueOf(seed) : new Random().nextLong();
+        try {
+            o.generator = options.has(depth)
+                    ? ContentGenerator.withDepth(options.valueOf(nodes), options.valueOf(depth), options.valueOf(properties), s)
+                    : new ContentGenerator(options.valueOf(nodes), options.valueOf(fanOut), options.valueOf(properties), s);
+        } catch (IllegalArgumentException e) {
+            out.println("Error parsing the command line. " + e.getMessage());
+            return null;
+        }
+
+        return o;
+    }
+
+    private void printHelp(@Nonnull PrintWriter pw) {
+        checkNotNull(pw);
+
+        pw.println("\nUsage: generate [option params]\n");
+
+        try {
+            parser.printHelpOn(pw);
+        } catch (IOException e) {
+            LOG.error("Error printing help", e);
+            pw.write("Error while printing help screen.");
+        }
+    }
+
+    @Override
+    public String getDescription() {
+        return "Generate random coloured content for load testing";
+    }
+
+    @Override
+    public boolean isExit() {
+        return false;
+    }
+}
@@ -0,0 +1,525 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.console.commands;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+import org.apache.jackrabbit.oak.api.Blob;
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.commons.PathUtils;
+import org.apache.jackrabbit.oak.commons.json.JsonObject;
+import org.apache.jackrabbit.oak.commons.json.JsopTokenizer;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import to.adapt.from02oak.repository.Repository;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.jcr.PropertyType;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.jackrabbit.JcrConstants.JCR_PRIMARYTYPE;
+import static org.apache.jackrabbit.oak.plugins.nodetype.NodeTypeConstants.NT_OAK_UNSTRUCTURED;
+
+/**
+ * bulk load nodes from a file, writing straight into the {@code NodeStore}.
+ *
+ * The file is streamed one line at a time and changes are merged every {@code --batch} nodes, so that memory
+ * stays bounded regardless of the file size. Supported formats:
+ *
+ * <pre>
+ *     # JSON lines
+ *     {"path": "/a/b", "type": "oak:Unstructured", "properties": {"colour": "red", "tags": ["x", "y"]}}
+ *
+ *     # CSV: path,type[,name=value]*. No quoting, use JSON lines for values containing commas.
+ *     /a/b,oak:Unstructured,colour=red
+ * </pre>
+ *
+ * Missing ancestors are created as {@code oak:Unstructured}. Lines starting with {@code #} are ignored.
+ *
+ * JSON lines may list under {@code "types"} the JCR type of the properties JSON cannot express, as written by
+ * {@code export}. Binaries are either base64 ({@code Binary}) or references to the blob store
+ * ({@code BinaryReference}).
+ *
+ * With a target path the first node of the file is imported as the target and the following ones, which must be
+ * its descendants, below it. Without it the nodes are imported at their own paths.
+ *
+ * Usage:
+ *      import /path/to/file.jsonl [/target/path] [--batch 10000] [--format jsonl|csv]
+ */
+class ImportCommand implements Command {
+    private static final Logger LOG = LoggerFactory.getLogger(ImportCommand.class);
+    static final int DEFAULT_BATCH_SIZE = 10000;
+
+    enum Format {
+        JSONL, CSV
+    }
+
+    private final OptionParser parser = new OptionParser();
+    private final OptionSpec<Integer> batch = parser.accepts("batch", "amount of nodes per commit")
+            .withRequiredArg()
+            .ofType(Integer.class)
+            .defaultsTo(DEFAULT_BATCH_SIZE);
+    private final OptionSpec<String> format = parser.accepts("format", "jsonl or csv. Guessed from the file extension if missing")
+            .withRequiredArg()
+            .ofType(String.class);
+
+    class Options {
+        File file;
+        String target;
+        int batchSize;
+        Format format;
+    }
+
+    /**
+     * a single node to be imported
+     */
+    static class Record {
+        String path;
+        String type;
+        Map<String, Object> properties = Maps.newLinkedHashMap();
+        Map<String, String> types = Maps.newHashMap();
+    }
+
+    @Override
+    public int execute(@Nonnull PrintWriter out, @Nonnull String[] args) throws IOException {
+        Options o = parseCommandLine(out, args);
+        if (o == null) {
+            return 1;
+        }
+
+        Repository repo = Repository.getRepo();
+        if (!Commands.flushGroup(out)) {
+            return 1;
+        }
+
+        Stopwatch sw = Stopwatch.createStarted();
+        long imported = 0;
+        long lineNo = 0;
+        Batch b = new Batch(repo);
+        String source = null;
+
+        try (BufferedReader reader = Files.newBufferedReader(o.file.toPath(), UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                Record r;
+                try {
+                    r = o.format == Format.CSV ? parseCsv(line) : parseJson(line);
+                } catch (IllegalArgumentException e) {
+                    LOG.error("Error parsing line {}", lineNo, e);
+                    out.printf("Error parsing line %d. %s%n", lineNo, e.getMessage());
+                    return 1;
+                }
+
+                try {
+                    if (o.target != null) {
+                        source = source == null ? r.path : source;
+                        r.path = rebase(source, o.target, r.path);
+                    }
+                    b.write(r);
+                } catch (IllegalArgumentException e) {
+                    LOG.error("Error importing line {}", lineNo, e);
+                    out.printf("Error importing line %d. %s%n", lineNo, e.getMessage());
+                    out.printf("Nodes up to the last reported batch have been persisted.%n");
+                    return 1;
+                }
+                imported++;
+
+                if (b.size() >= o.batchSize) {
+                    b.commit();
+                    printRate(out, imported, sw);
+                }
+            }
+            b.commit();
+        } catch (CommitFailedException e) {
+            LOG.error("Error while importing around line {}", lineNo, e);
+            out.printf("Error while importing around line %d. %s%n", lineNo, e.getMessage());
+            out.printf("Nodes up to the last reported batch have been persisted.%n");
+            return 1;
+        }
+
+        out.printf("Imported %d nodes in %s (%.0f nodes/s)%n", imported, sw, rate(imported, sw));
+        return 0;
+    }
+
+    /**
+     * tracks the changes to be merged into the repository in one go.
+     */
+    private static class Batch {
+        private final Repository repo;
+        private NodeBuilder root;
+        private int size;
+
+        // the last parent looked up. Imports are usually sorted so siblings are hit in a row.
+        private String lastParentPath;
+        private NodeBuilder lastParent;
+
+        Batch(@Nonnull Repository repo) {
+            this.repo = repo;
+            reset();
+        }
+
+        void write(@Nonnull Record r) throws IOException {
+            String parentPath = PathUtils.getParentPath(r.path);
+            if (!parentPath.equals(lastParentPath)) {
+                lastParent = getOrCreate(root, parentPath);
+                lastParentPath = parentPath;
+            }
+
+            NodeBuilder node = lastParent.child(PathUtils.getName(r.path));
+            node.setProperty(JCR_PRIMARYTYPE, r.type == null ? NT_OAK_UNSTRUCTURED : r.type, Type.NAME);
+            for (Map.Entry<String, Object> p : r.properties.entrySet()) {
+                String type = r.types.get(p.getKey());
+                if (type == null) {
+                    setProperty(node, p.getKey(), p.getValue());
+                } else {
+                    setProperty(node, p.getKey(), p.getValue(), type, repo.getNodeStore());
+                }
+            }
+            size++;
+        }
+
+        void commit() throws CommitFailedException {
+            if (size > 0) {
+                repo.merge(root);
+                LOG.debug("Merged {} nodes", size);
+            }
+            reset();
+        }
+
+        int size() {
+            return size;
+        }
+
+        private void reset() {
+            root = repo.getNodeStore().getRoot().builder();
+            size = 0;
+            lastParentPath = null;
+            lastParent = null;
+        }
+    }
+
+    /**
+     * retrieve the builder at the provided absolute path creating any missing node as {@code oak:Unstructured}
+     */
+    static NodeBuilder getOrCreate(@Nonnull NodeBuilder root, @Nonnull String path) {
+        NodeBuilder b = root;
+        for (String name : PathUtils.elements(path)) {
+            if (b.hasChildNode(name)) {
+                b = b.getChildNode(name);
+            } else {
+                b = b.child(name).setProperty(JCR_PRIMARYTYPE, NT_OAK_UNSTRUCTURED, Type.NAME);
+            }
+        }
+        return b;
+    }
+
+    /**
+     * set the property on the builder mapping the java type to the closest oak one. Lists become multi-value
+     * properties.
+     */
+    static void setProperty(@Nonnull NodeBuilder node, @Nonnull String name, @Nullable Object value) {
+        if (value == null) {
+            node.removeProperty(name);
+        } else if (value instanceof List) {
+            List<?> values = (List<?>) value;
+            if (!values.isEmpty() && values.stream().allMatch(v -> v instanceof Long)) {
+                node.setProperty(name, values.stream().map(v -> (Long) v).collect(Collectors.toList()), Type.LONGS);
+            } else if (!values.isEmpty() && values.stream().allMatch(v -> v instanceof Boolean)) {
+                node.setProperty(name, values.stream().map(v -> (Boolean) v).collect(Collectors.toList()), Type.BOOLEANS);
+            } else if (!values.isEmpty() && values.stream().allMatch(v -> v instanceof Double)) {
+                node.setProperty(name, values.stream().map(v -> (Double) v).collect(Collectors.toList()), Type.DOUBLES);
+            } else {
+                node.setProperty(name, values.stream().map(String::valueOf).collect(Collectors.toList()), Type.STRINGS);
+            }
+        } else {
+            node.setProperty(name, value);
+        }
+    }
+
+    /**
+     * set the property with the provided JCR type, converting the values from their string representation.
+     *
+     * @param type the JCR type name, or {@link ExportCommand#BINARY_REFERENCE} for references to the blob store
+     * @throws IllegalArgumentException if the type is unknown or a value cannot be converted
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static void setProperty(@Nonnull NodeBuilder node, @Nonnull String name, @Nullable Object value,
+                            @Nonnull String type, @Nonnull NodeStore store) throws IOException {
+        if (value == null) {
+            node.removeProperty(name);
+            return;
+        }
+        int tag = ExportCommand.BINARY_REFERENCE.equals(type) ? PropertyType.BINARY : PropertyType.valueFromName(type);
+        if (value instanceof List) {
+            List<Object> values = Lists.newArrayList();
+            for (Object v : (List<?>) value) {
+                values.add(convert(String.valueOf(v), tag, type, store));
+            }
+            node.setProperty(name, values, (Type) Type.fromTag(tag, true));
+        } else {
+            node.setProperty(name, convert(String.valueOf(value), tag, type, store), (Type) Type.fromTag(tag, false));
+        }
+    }
+
+    private static Object convert(@Nonnull String value, int tag, @Nonnull String type, @Nonnull NodeStore store)
+            throws IOException {
+        switch (tag) {
+            case PropertyType.LONG:
+                return Long.valueOf(value);
+            case PropertyType.DOUBLE:
+                return Double.valueOf(value);
+            case PropertyType.BOOLEAN:
+                return Boolean.valueOf(value);
+            case PropertyType.DECIMAL:
+                return new BigDecimal(value);
+            case PropertyType.BINARY:
+                if (ExportCommand.BINARY_REFERENCE.equals(type)) {
+                    Blob blob = store.getBlob(value);
+                    if (blob == null) {
+                        throw new IllegalArgumentException("Binary not found: " + value);
+                    }
+                    return blob;
+                }
+                return store.createBlob(new ByteArrayInputStream(Base64.getDecoder().decode(value)));
+            default:
+                // dates, names, paths, references and URIs are strings in oak
+                return value;
+        }
+    }
+
+    /**
+     * @return {@code path} moved from below {@code source} to below {@code target}
+     * @throws IllegalArgumentException if {@code path} is not {@code source} or one of its descendants
+     */
+    static String rebase(@Nonnull String source, @Nonnull String target, @Nonnull String path) {
+        if (source.equals(path)) {
+            return target;
+        }
+        if (!PathUtils.isAncestor(source, path)) {
+            throw new IllegalArgumentException("Not below the first node of the file, " + source + ": " + path);
+        }
+        return PathUtils.concat(target, PathUtils.relativize(source, path));
+    }
+
+    /**
+     * parse a JSON line in the form {@code {"path": "/a/b", "type": "t", "properties": {...}}}
+     *
+     * @throws IllegalArgumentException in case of malformed line
+     */
+    static Record parseJson(@Nonnull String line) {
+        checkNotNull(line);
+        JsopTokenizer t = new JsopTokenizer(line);
+        t.read('{');
+        JsonObject o = JsonObject.create(t);
+
+        Record r = new Record();
+        Map<String, String> p = o.getProperties();
+        r.path = p.containsKey("path") ? JsopTokenizer.decodeQuoted(p.get("path")) : null;
+        r.type = p.containsKey("type") ? JsopTokenizer.decodeQuoted(p.get("type")) : null;
+        JsonObject props = o.getChildren().get("properties");
+        if (props != null) {
+            props.getProperties().forEach((name, raw) -> r.properties.put(name, parseRawValue(raw)));
+        }
+        JsonObject types = o.getChildren().get("types");
+        if (types != null) {
+            types.getProperties().forEach((name, raw) -> r.types.put(name, JsopTokenizer.decodeQuoted(raw)));
+        }
+
+        return validate(r);
+    }
+
+    /**
+     * parse a CSV line in the form {@code path,type[,name=value]*}
+     *
+     * @throws IllegalArgumentException in case of malformed line
+     */
+    static Record parseCsv(@Nonnull String line) {
+        checkNotNull(line);
+        String[] cells = line.split(",");
+
+        Record r = new Record();
+        r.path = cells[0].trim();
+        r.type = cells.length > 1 && !cells[1].trim().isEmpty() ? cells[1].trim() : null;
+        for (int i = 2; i < cells.length; i++) {
+            int eq = cells[i].indexOf('=');
+            if (eq < 1) {
+                throw new IllegalArgumentException("Expected name=value but got: " + cells[i]);
+            }
+            r.properties.put(cells[i].substring(0, eq).trim(), cells[i].substring(eq + 1));
+        }
+
+        return validate(r);
+    }
+
+    /**
+     * convert a raw JSON value into the java equivalent. Arrays are returned as lists.
+     */
+    @Nullable
+    static Object parseRawValue(@Nonnull String raw) {
+        String v = raw.trim();
+        if (v.startsWith("\"")) {
+            return JsopTokenizer.decodeQuoted(v);
+        } else if (v.startsWith("[")) {
+            List<Object> values = Lists.newArrayList();
+            JsopTokenizer t = new JsopTokenizer(v);
+            t.read('[');
+            if (!t.matches(']')) {
+                do {
+                    values.add(parseRawValue(t.readRawValue()));
+                } while (t.matches(','));
+                t.read(']');
+            }
+            return values;
+        } else if ("true".equals(v) || "false".equals(v)) {
+            return Boolean.valueOf(v);
+        } else if ("null".equals(v)) {
+            return null;
+        } else if (v.contains(".") || v.contains("e") || v.contains("E")) {
+            return Double.valueOf(v);
+        } else {
+            return Long.valueOf(v);
+        }
+    }
+
+    private static Record validate(@Nonnull Record r) {
+        if (r.path == null || !PathUtils.isAbsolute(r.path) || PathUtils.denotesRoot(r.path)) {
+            throw new IllegalArgumentException("An absolute, non root, path is mandatory. " + r.path);
+        }
+        return r;
+    }
+
+    static double rate(long count, @Nonnull Stopwatch sw) {
+        long ms = Math.max(1, sw.elapsed(TimeUnit.MILLISECONDS));
+        return count * 1000d / ms;
+    }
+
+    private static void printRate(@Nonnull PrintWriter out, long count, @Nonnull Stopwatch sw) {
+        out.printf("  %d nodes imported (%.0f nodes/s)%n", count, rate(count, sw));
+        out.flush();
+    }
+
+    /**
+     * parse the command line and return the options
+     *
+     * @param out where to print any error. Cannot be null.
+     * @param args Cannot be null.
+     * @return options for the executing the command or {@code null} in case of errors
+     */
+    Options parseCommandLine(@Nonnull PrintWriter out, @Nonnull String[] args) {
+        checkNotNull(out);
+        checkNotNull(args);
+
+        OptionSet options;
+        try {
+            options = parser.parse(args);
+        } catch (Exception e) {
+            LOG.error("Error occured while parsing the command line", e);
+            out.println("Error parsing the command line. " + e.getMessage());
+            printHelp(out);
+            return null;
+        }
+
+        List<?> nonOptions = options.nonOptionArguments();
+        // first item is the command itself
+        if (nonOptions.size() < 2) {
+            out.println("Error parsing the command line. Missing file to import.");
+            printHelp(out);
+            return null;
+        }
+
+        Options o = new Options();
+        o.file = new File(nonOptions.get(1).toString());
+        if (nonOptions.size() > 2) {
+            o.target = nonOptions.get(2).toString();
+            if (!PathUtils.isAbsolute(o.target) || PathUtils.denotesRoot(o.target)) {
+                out.println("Error parsing the command line. Target must be absolute and not the root.");
+                return null;
+            }
+        }
+        o.batchSize = options.valueOf(batch);
+        if (o.batchSize < 1) {
+            out.println("Error parsing the command line. Batch size must be positive.");
+            return null;
+        }
+
+        String f = options.has(format) ? options.valueOf(format) : o.file.getName().endsWith(".csv") ? "csv" : "jsonl";
+        try {
+            o.format = Format.valueOf(f.toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException e) {
+            out.println("Error parsing the command line. Unknown format: " + f);
+            printHelp(out);
+            return null;
+        }
+
+        return o;
+    }
+
+    private void printHelp(@Nonnull PrintWriter pw) {
+        checkNotNull(pw);
+
+        pw.println("\nUsage: import /path/to/file [/target/path] [option params]\n");
+
+        try {
+            parser.printHelpOn(pw);
+        } catch (IOException e) {
+            LOG.error("Error printing help", e);
+            pw.write("Error while printing help screen.");
+        }
+    }
+
+    @Override
+    public String getDescription() {
+        return "Bulk import nodes from a JSON lines or CSV file";
+    }
+
+    @Override
+    public boolean isExit() {
+        return false;
+    }
+}
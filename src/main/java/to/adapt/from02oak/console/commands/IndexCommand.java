@@ -0,0 +1,204 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.console.commands;
+
+import com.google.common.collect.ImmutableList;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.util.ISO8601;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import to.adapt.from02oak.repository.AsyncIndexer;
+import to.adapt.from02oak.repository.Reindexer;
+import to.adapt.from02oak.repository.Repository;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Calendar;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.ASYNC_PROPERTY_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.REINDEX_PROPERTY_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.TYPE_PROPERTY_NAME;
+
+/**
+ * print the index definitions, whether they are updated synchronously or async, and how far behind the async
+ * indexes are.
+ *
+ * With {@code create} a new property index is defined and built in background on a private async lane, without
+ * holding the commit lock; its progress is reported by the following {@code index} executions.
+ *
+ * Usage:
+ *      index
+ *      index create title [--unique] [--nodetype nt:unstructured] [--name titleIndex]
+ */
+class IndexCommand implements Command {
+    private static final Logger LOG = LoggerFactory.getLogger(IndexCommand.class);
+    static final String CREATE = "create";
+
+    private final OptionParser parser = new OptionParser();
+    private final OptionSpec<Void> unique = parser.accepts("unique", "values must be unique across the repository");
+    private final OptionSpec<String> nodeType = parser.accepts("nodetype", "index only nodes of this type. Repeatable")
+            .withRequiredArg();
+    private final OptionSpec<String> name = parser.accepts("name", "name of the index. Defaults to the property")
+            .withRequiredArg();
+
+    class Options {
+        boolean create;
+        String property;
+        String name;
+        boolean unique;
+        List<String> nodeTypes;
+    }
+
+    @Override
+    public int execute(@Nonnull PrintWriter out, @Nonnull String[] args) {
+        Options o = parseCommandLine(out, args);
+        if (o == null) {
+            return 1;
+        }
+
+        if (!Commands.flushGroup(out)) {
+            return 1;
+        }
+
+        Repository repo = Repository.getRepo();
+        if (o.create) {
+            return create(out, repo.getReindexer(), o);
+        }
+
+        NodeState definitions = repo.getNodeStore().getRoot().getChildNode(INDEX_DEFINITIONS_NAME);
+        out.printf("%-20s %-10s %-8s %s%n", "index", "type", "mode", "reindex");
+        for (ChildNodeEntry e : definitions.getChildNodeEntries()) {
+            NodeState def = e.getNodeState();
+            String async = def.getString(ASYNC_PROPERTY_NAME);
+            out.printf("%-20s %-10s %-8s %s%n", e.getName(), def.getString(TYPE_PROPERTY_NAME),
+                    async == null ? "sync" : async, def.getBoolean(REINDEX_PROPERTY_NAME) ? "pending" : "");
+        }
+
+        Reindexer reindexer = repo.getReindexer();
+        if (reindexer.getIndex() != null) {
+            long elapsed = reindexer.getElapsed();
+            out.printf("%nBuilding '%s': %s. %d nodes in %.1f s (%.0f nodes/s)%n", reindexer.getIndex(),
+                    reindexer.getOutcome(), reindexer.getVisited(), elapsed / 1000d,
+                    elapsed == 0 ? 0 : reindexer.getVisited() * 1000d / elapsed);
+        }
+
+        out.println();
+        AsyncIndexer indexer = repo.getAsyncIndexer();
+        if (indexer == null) {
+            out.println("Async indexing is not running. Start with --async-index or --lucene to enable it.");
+            return 0;
+        }
+
+        Calendar to = indexer.getLastIndexedTo();
+        out.printf("Lane '%s': %s, every %d s%n", AsyncIndexer.LANE, indexer.getStatus(), indexer.getInterval());
+        if (to == null) {
+            out.println("Not indexed yet");
+        } else {
+            out.printf("Indexed up to %s. Lag %.1f s%n", ISO8601.format(to), indexer.getLag() / 1000d);
+        }
+
+        return 0;
+    }
+
+    private static int create(@Nonnull PrintWriter out, @Nonnull Reindexer reindexer, @Nonnull Options o) {
+        try {
+            if (!reindexer.start(o.name, ImmutableList.of(o.property), o.unique, o.nodeTypes)) {
+                out.printf("Error creating index. Still building '%s'.%n", reindexer.getIndex());
+                return 1;
+            }
+        } catch (IllegalArgumentException e) {
+            LOG.error("Error creating index", e);
+            out.println("Error creating index. " + e.getMessage());
+            return 1;
+        }
+        out.printf("Building index '%s' on '%s' in background. Run 'index' for the progress.%n", o.name, o.property);
+        return 0;
+    }
+
+    Options parseCommandLine(@Nonnull PrintWriter out, @Nonnull String[] args) {
+        checkNotNull(out);
+        checkNotNull(args);
+
+        OptionSet options;
+        try {
+            options = parser.parse(args);
+        } catch (Exception e) {
+            LOG.error("Error occured while parsing the command line", e);
+            out.println("Error parsing the command line. " + e.getMessage());
+            printHelp(out);
+            return null;
+        }
+
+        List<?> nonOptions = options.nonOptionArguments();
+        Options o = new Options();
+        // first item is the command itself
+        if (nonOptions.size() == 1 && !options.hasOptions()) {
+            return o;
+        }
+        if (nonOptions.size() != 3 || !CREATE.equals(nonOptions.get(1))) {
+            out.println("Error parsing the command line.");
+            printHelp(out);
+            return null;
+        }
+
+        o.create = true;
+        o.property = nonOptions.get(2).toString();
+        o.name = options.has(name) ? options.valueOf(name) : o.property;
+        o.unique = options.has(unique);
+        o.nodeTypes = options.has(nodeType) ? options.valuesOf(nodeType) : null;
+        if (o.name.isEmpty() || o.name.contains("/")) {
+            out.println("Error parsing the command line. Invalid index name: " + o.name);
+            return null;
+        }
+        return o;
+    }
+
+    private void printHelp(@Nonnull PrintWriter pw) {
+        checkNotNull(pw);
+
+        pw.println("\nUsage: index [create <property> [option params]]\n");
+
+        try {
+            parser.printHelpOn(pw);
+        } catch (IOException e) {
+            LOG.error("Error printing help", e);
+            pw.write("Error while printing help screen.");
+        }
+    }
+
+    @Override
+    public String getDescription() {
+        return "Print or create index definitions and the indexing progress";
+    }
+
+    @Override
+    public boolean isExit() {
+        return false;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.console.commands;
+
+import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+import org.apache.commons.math3.stat.descriptive.SynchronizedDescriptiveStatistics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * latency and error counters for a single command.
+ *
+ * Count, errors, mean and max cover every execution since the last reset; percentiles are computed over a
+ * sliding window of the latest {@link #WINDOW_SIZE} executions to keep the memory constant.
+ */
+public class LatencyStats {
+    static final int WINDOW_SIZE = 10000;
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+    private final SynchronizedDescriptiveStatistics window = new SynchronizedDescriptiveStatistics(WINDOW_SIZE);
+
+    /**
+     * record an execution
+     *
+     * @param nanos how long it took
+     * @param error {@code true} if it failed
+     */
+    void record(long nanos, boolean error) {
+        count.increment();
+        if (error) {
+            errors.increment();
+        }
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+        window.addValue(nanos);
+    }
+
+    public void reset() {
+        count.reset();
+        errors.reset();
+        totalNanos.reset();
+        maxNanos.reset();
+        window.clear();
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    /**
+     * @return the average latency in milliseconds. {@code 0} if never executed.
+     */
+    public double getMean() {
+        long c = count.sum();
+        return c == 0 ? 0 : toMillis(totalNanos.sum() / (double) c);
+    }
+
+    /**
+     * @return the max latency in milliseconds
+     */
+    public double getMax() {
+        return toMillis(maxNanos.get());
+    }
+
+    /**
+     * @param quantiles the percentiles to compute, in the range (0, 100]
+     * @return the requested percentiles in milliseconds over the latest executions. {@code 0} if never executed.
+     */
+    public double[] getPercentiles(double... quantiles) {
+        // working on a copy to avoid holding the lock while sorting
+        DescriptiveStatistics snapshot = window.copy();
+        double[] result = new double[quantiles.length];
+        for (int i = 0; i < quantiles.length; i++) {
+            result[i] = snapshot.getN() == 0 ? 0 : toMillis(snapshot.getPercentile(quantiles[i]));
+        }
+        return result;
+    }
+
+    private static double toMillis(double nanos) {
+        return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
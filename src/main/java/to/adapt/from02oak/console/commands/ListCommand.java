@@ -20,67 +20,136 @@
 
 package to.adapt.from02oak.console.commands;
 
-import com.google.common.collect.Lists;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+import org.apache.jackrabbit.oak.commons.PathUtils;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import to.adapt.from02oak.repository.Repository;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import javax.jcr.Node;
-import javax.jcr.NodeIterator;
-import javax.jcr.RepositoryException;
-import javax.jcr.Session;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.Iterator;
 import java.util.List;
 
 import static com.google.common.base.Preconditions.checkNotNull;
-import static to.adapt.from02oak.repository.Repository.ADMIN;
 
+/**
+ * list the children of a node, one page at a time.
+ *
+ * Children are read straight from the {@code NodeStore} as names only, so skipping to an offset or counting
+ * doesn't load the skipped nodes. As a consequence changes not yet saved (see script groups) are not listed.
+ *
+ * Usage:
+ *      ls /path/to/node [--offset 0] [--limit 1000] [--prefix n0] [--count-only]
+ */
 class ListCommand implements Command {
     private static final Logger LOG = LoggerFactory.getLogger(ListCommand.class);
     final static String ERROR_CMD_LINE_PARSING = "Error parsing the command line.";
+    static final long DEFAULT_LIMIT = 1000;
+    private static final int FLUSH_EVERY = 100;
+
+    private final OptionParser parser = new OptionParser();
+    private final OptionSpec<Long> offset = parser.accepts("offset", "children to skip")
+            .withRequiredArg()
+            .ofType(Long.class)
+            .defaultsTo(0L);
+    private final OptionSpec<Long> limit = parser.accepts("limit", "maximum children to print. 0 for all of them")
+            .withRequiredArg()
+            .ofType(Long.class)
+            .defaultsTo(DEFAULT_LIMIT);
+    private final OptionSpec<String> prefix = parser.accepts("prefix", "only children whose name starts with it")
+            .withRequiredArg()
+            .ofType(String.class);
+    private final OptionSpec<Void> countOnly = parser.accepts("count-only", "print only the amount of children");
+
+    class Options {
+        String path;
+        long offset;
+        long limit;
+        String prefix;
+        boolean countOnly;
+    }
 
     @Override
     public int execute(@Nonnull PrintWriter out, @Nonnull String[] args) throws IOException {
-        List<String> options = analyseCommandLine(out, args);
-        if (options == null) {
+        Options o = parseCommandLine(out, args);
+        if (o == null) {
             out.println(ERROR_CMD_LINE_PARSING);
-            out.println("Usage: ls /path/to/node");
+            out.println("Usage: ls /path/to/node [--offset n] [--limit n] [--prefix p] [--count-only]");
             return 1;
         }
 
-        String p = options.get(0);
-        Repository repo = Repository.getRepo();
-        Session session = null;
+        if (!Commands.flushGroup(out)) {
+            return 1;
+        }
 
-        try {
-            session = repo.login(ADMIN);
-            Node node = session.getNode(p);
-            NodeIterator children = node.getNodes();
-            if (!children.hasNext()) {
-                out.println("-- No children");
-            } else {
-                children.forEachRemaining(o -> {
-                    Node n = (Node)o;
-                    try {
-                        out.println(n.getName());
-                    } catch (RepositoryException e) {
-                        LOG.error("Error printing node. ", e);
-                        out.println("Error printing node");
-                    }
-                });
-            }
-        } catch (RepositoryException e) {
-            LOG.error("Error while listing path. ", e);
-            out.printf("Error while listing path %s - %s%n", p, e.getMessage());
+        NodeState node = Repository.getRepo().getNodeStore().getRoot();
+        for (String name : PathUtils.elements(o.path)) {
+            node = node.getChildNode(name);
+        }
+        if (!node.exists()) {
+            out.printf("Error while listing path %s - not found%n", o.path);
             return 1;
         }
 
+        if (o.countOnly) {
+            // not getChildNodeCount(), which includes the hidden children
+            out.println(count(node.getChildNodeNames().iterator(), o.prefix));
+            return 0;
+        }
+
+        Iterator<String> names = node.getChildNodeNames().iterator();
+        long skipped = 0;
+        while (skipped < o.offset && next(names, o.prefix) != null) {
+            skipped++;
+        }
+
+        long printed = 0;
+        String name;
+        while ((o.limit == 0 || printed < o.limit) && (name = next(names, o.prefix)) != null) {
+            out.println(name);
+            if (++printed % FLUSH_EVERY == 0) {
+                out.flush();
+            }
+        }
+
+        if (printed == 0) {
+            out.println("-- No children");
+        } else if (next(names, o.prefix) != null) {
+            out.printf("-- More children available. Continue with --offset %d%n", o.offset + printed);
+        }
+        LOG.debug("Listed {} children of {} from offset {}", printed, o.path, o.offset);
+
         return 0;
     }
 
+    /**
+     * @return the next visible name matching the prefix. {@code null} if none.
+     */
+    @Nullable
+    private static String next(@Nonnull Iterator<String> names, @Nullable String prefix) {
+        while (names.hasNext()) {
+            String n = names.next();
+            if (!n.startsWith(":") && (prefix == null || n.startsWith(prefix))) {
+                return n;
+            }
+        }
+        return null;
+    }
+
+    private static long count(@Nonnull Iterator<String> names, @Nullable String prefix) {
+        long c = 0;
+        while (next(names, prefix) != null) {
+            c++;
+        }
+        return c;
+    }
+
     @Override
     public String getDescription() {
         return "list the nodes for the provided path";
@@ -97,24 +166,38 @@ class ListCommand implements Command {
      * @param out
      * @param args
      * @return the options or {@code null} in case of errors on the command line
-     * @throws IOException
      */
     @Nullable
-    private List<String> analyseCommandLine(@Nonnull PrintWriter out, @Nonnull String[]  args) throws IOException {
+    Options parseCommandLine(@Nonnull PrintWriter out, @Nonnull String[] args) {
         checkNotNull(out);
         checkNotNull(args);
 
+        OptionSet options;
+        try {
+            options = parser.parse(args);
+        } catch (Exception e) {
+            LOG.error("Error occured while parsing the command line", e);
+            out.println(e.getMessage());
+            return null;
+        }
+
         // we're expecting to have `ls <path to list>`
-        if (args.length < 2) {
+        List<?> nonOptions = options.nonOptionArguments();
+        if (nonOptions.size() < 2 || !PathUtils.isAbsolute(nonOptions.get(1).toString())) {
             return null;
         }
 
-        // removing item at 0 as it's the command itself
-        List<String> l = Lists.newArrayList();
-        for (int i = 1; i < args.length; i++) {
-            l.add(args[i]);
+        Options o = new Options();
+        o.path = nonOptions.get(1).toString();
+        o.offset = options.valueOf(offset);
+        o.limit = options.valueOf(limit);
+        o.prefix = options.valueOf(prefix);
+        o.countOnly = options.has(countOnly);
+        if (o.offset < 0 || o.limit < 0) {
+            out.println("Offset and limit cannot be negative.");
+            return null;
         }
 
-        return l;
+        return o;
     }
-}
\ No newline at end of file
+}
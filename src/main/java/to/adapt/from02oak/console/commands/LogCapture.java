@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.console.commands;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.slf4j.ILoggerFactory;
+import org.slf4j.LoggerFactory;
+import org.slf4j.Marker;
+import org.slf4j.helpers.MessageFormatter;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * temporarily collects the debug messages logged by the current thread on the given loggers and their children.
+ * Used to peek at what Oak does internally, e.g. the cost of each index while planning a query.
+ *
+ * The levels of the loggers are left alone: a {@link TurboFilter} enables debug for the capturing thread only and
+ * takes the messages before the level check, so other threads and the configured appenders see no difference.
+ * The filter is installed by the first open capture and removed by the last one closed.
+ *
+ * Only works with logback as slf4j binding; captures nothing otherwise.
+ */
+class LogCapture implements AutoCloseable {
+    private static final CaptureFilter FILTER = new CaptureFilter();
+
+    private final Thread thread = Thread.currentThread();
+    private final List<String> names;
+    private final List<String> messages = Lists.newArrayList();
+
+    LogCapture(@Nonnull String... names) {
+        this.names = ImmutableList.copyOf(names);
+        FILTER.open(this);
+    }
+
+    /**
+     * @return whether the logger is captured by this instance
+     */
+    private boolean captures(@Nonnull Logger logger) {
+        if (Thread.currentThread() != thread) {
+            return false;
+        }
+        String name = logger.getName();
+        for (String n : names) {
+            if (name.equals(n) || name.startsWith(n + ".")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void add(@Nonnull String message) {
+        synchronized (messages) {
+            messages.add(message);
+        }
+    }
+
+    /**
+     * @return the messages collected so far
+     */
+    List<String> getMessages() {
+        synchronized (messages) {
+            return ImmutableList.copyOf(messages);
+        }
+    }
+
+    @Override
+    public void close() {
+        FILTER.close(this);
+    }
+
+    /**
+     * shared by all the captures, so that overlapping ones don't step on each other.
+     */
+    private static class CaptureFilter extends TurboFilter {
+        private final List<LogCapture> captures = new CopyOnWriteArrayList<>();
+        private LoggerContext installedOn;
+
+        synchronized void open(@Nonnull LogCapture capture) {
+            if (captures.isEmpty()) {
+                ILoggerFactory factory = LoggerFactory.getILoggerFactory();
+                if (!(factory instanceof LoggerContext)) {
+                    return;
+                }
+                installedOn = (LoggerContext) factory;
+                setContext(installedOn);
+                start();
+                installedOn.addTurboFilter(this);
+            }
+            captures.add(capture);
+        }
+
+        synchronized void close(@Nonnull LogCapture capture) {
+            if (captures.remove(capture) && captures.isEmpty()) {
+                installedOn.getTurboFilterList().remove(this);
+                stop();
+                installedOn = null;
+            }
+        }
+
+        @Override
+        public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params,
+                                  Throwable t) {
+            if (captures.isEmpty() || level == null || !level.isGreaterOrEqual(Level.DEBUG)) {
+                return FilterReply.NEUTRAL;
+            }
+            boolean captured = false;
+            for (LogCapture c : captures) {
+                if (c.captures(logger)) {
+                    captured = true;
+                    if (format != null) {
+                        c.add(MessageFormatter.arrayFormat(format, params).getMessage());
+                    }
+                }
+            }
+            if (captured && format == null) {
+                // isDebugEnabled() guards: let the capturing thread build its messages
+                return FilterReply.ACCEPT;
+            }
+            // the actual logging goes on as configured
+            return FilterReply.NEUTRAL;
+        }
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.console.commands;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+import org.apache.jackrabbit.oak.api.Blob;
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.commons.PathUtils;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.util.Text;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import to.adapt.from02oak.repository.Repository;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static to.adapt.from02oak.console.commands.ImportCommand.getOrCreate;
+
+/**
+ * upload local files as binary properties.
+ *
+ * Files are streamed into the blob store by {@code --threads} uploaders in parallel, while the nodes are merged
+ * into the {@code NodeStore} every {@code --batch} files. Given a directory, each file below it becomes a node
+ * at the same relative path under the target one.
+ *
+ * The data store is content addressed: a file already stored is not written again. The report tells apart the
+ * bytes actually stored, the deduplicated ones and the small binaries inlined in the segments. Telling them apart
+ * takes hashing each file before uploading it, so every file is read twice.
+ *
+ * Usage:
+ *      put /path/to/node propertyName /local/file/or/directory [--threads 4] [--batch 100]
+ */
+class PutCommand implements Command {
+    private static final Logger LOG = LoggerFactory.getLogger(PutCommand.class);
+    static final int DEFAULT_BATCH_SIZE = 100;
+
+    private final OptionParser parser = new OptionParser();
+    private final OptionSpec<Integer> threads = parser.accepts("threads", "parallel uploads")
+            .withRequiredArg()
+            .ofType(Integer.class)
+            .defaultsTo(Runtime.getRuntime().availableProcessors());
+    private final OptionSpec<Integer> batch = parser.accepts("batch", "amount of files per commit")
+            .withRequiredArg()
+            .ofType(Integer.class)
+            .defaultsTo(DEFAULT_BATCH_SIZE);
+
+    class Options {
+        String path;
+        String property;
+        File source;
+        int threads;
+        int batchSize;
+    }
+
+    /**
+     * a file uploaded into the blob store, yet to be merged
+     */
+    private static class Upload {
+        final String path;
+        final Blob blob;
+
+        Upload(@Nonnull String path, @Nonnull Blob blob) {
+            this.path = path;
+            this.blob = blob;
+        }
+    }
+
+    /**
+     * bytes uploaded, split by where they ended up
+     */
+    static class Stats {
+        final LongAdder files = new LongAdder();
+        final LongAdder stored = new LongAdder();
+        final LongAdder deduplicated = new LongAdder();
+        final LongAdder inlined = new LongAdder();
+
+        long total() {
+            return stored.sum() + deduplicated.sum() + inlined.sum();
+        }
+    }
+
+    @Override
+    public int execute(@Nonnull PrintWriter out, @Nonnull String[] args) throws IOException {
+        Options o = parseCommandLine(out, args);
+        if (o == null) {
+            return 1;
+        }
+
+        List<Path> files;
+        Path base = o.source.toPath();
+        try (Stream<Path> s = Files.walk(base)) {
+            files = s.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+
+        Repository repo = Repository.getRepo();
+        if (!Commands.flushGroup(out)) {
+            return 1;
+        }
+
+        Stats stats = new Stats();
+        Stopwatch sw = Stopwatch.createStarted();
+        ExecutorService executor = Executors.newFixedThreadPool(o.threads,
+                new ThreadFactoryBuilder().setNameFormat("put-%d").build());
+        // ids stored by this very run. A second copy of a file is deduplicated even if the first one is new.
+        Set<String> seen = Sets.newConcurrentHashSet();
+        try {
+            CompletionService<Upload> uploads = new ExecutorCompletionService<>(executor);
+            for (Path f : files) {
+                String path = o.source.isDirectory() ? PathUtils.concat(o.path, toRelativePath(base, f)) : o.path;
+                uploads.submit(() -> new Upload(path, upload(repo, f, stats, seen)));
+            }
+
+            NodeBuilder root = repo.getNodeStore().getRoot().builder();
+            int pending = 0;
+            for (int i = 0; i < files.size(); i++) {
+                Upload u = uploads.take().get();
+                getOrCreate(root, u.path).setProperty(o.property, u.blob, Type.BINARY);
+                if (++pending >= o.batchSize) {
+                    repo.merge(root);
+                    root = repo.getNodeStore().getRoot().builder();
+                    pending = 0;
+                    out.printf("  %d files uploaded (%.1f MB/s)%n", stats.files.sum(), mbs(stats.total(), sw));
+                    out.flush();
+                }
+            }
+            if (pending > 0) {
+                repo.merge(root);
+            }
+        } catch (ExecutionException | CommitFailedException e) {
+            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            LOG.error("Error while uploading {}", o.source, cause);
+            out.println("Error while uploading. " + cause.getMessage());
+            out.println("Files up to the last reported batch have been persisted.");
+            return 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            out.println("Interrupted. Files up to the last reported batch have been persisted.");
+            return 1;
+        } finally {
+            executor.shutdownNow();
+        }
+
+        out.printf("Uploaded %d files, %d bytes in %s (%.1f MB/s)%n", stats.files.sum(), stats.total(), sw,
+                mbs(stats.total(), sw));
+        out.printf("  stored:       %d bytes%n", stats.stored.sum());
+        out.printf("  deduplicated: %d bytes%n", stats.deduplicated.sum());
+        out.printf("  inlined:      %d bytes%n", stats.inlined.sum());
+        return 0;
+    }
+
+    /**
+     * stream a file into the blob store and account for it
+     */
+    private static Blob upload(@Nonnull Repository repo, @Nonnull Path file, @Nonnull Stats stats,
+                               @Nonnull Set<String> seen) throws IOException {
+        // addRecord touches an existing record, so its presence has to be checked upfront
+        boolean existing;
+        try (HashingInputStream in = new HashingInputStream(Hashing.sha1(), Files.newInputStream(file))) {
+            ByteStreams.exhaust(in);
+            existing = repo.hasRecord(in.hash().toString());
+        }
+        Blob blob;
+        try (InputStream in = Files.newInputStream(file)) {
+            blob = repo.getNodeStore().createBlob(in);
+        }
+
+        long length = blob.length();
+        File record = repo.getBlobFile(blob);
+        if (record == null) {
+            stats.inlined.add(length);
+        } else if (!seen.add(blob.getContentIdentity()) || existing) {
+            // already uploaded by this run or stored before it
+            stats.deduplicated.add(length);
+        } else {
+            stats.stored.add(length);
+        }
+        stats.files.increment();
+        LOG.debug("Uploaded {}, {} bytes", file, length);
+        return blob;
+    }
+
+    /**
+     * @return the path of the file relative to the base directory, with names escaped for the repository
+     */
+    static String toRelativePath(@Nonnull Path base, @Nonnull Path file) {
+        List<String> names = Lists.newArrayList();
+        base.relativize(file).forEach(p -> names.add(Text.escapeIllegalJcrChars(p.toString())));
+        return String.join("/", names);
+    }
+
+    private static double mbs(long bytes, @Nonnull Stopwatch sw) {
+        long ms = Math.max(1, sw.elapsed(TimeUnit.MILLISECONDS));
+        return bytes / (1024d * 1024d) / (ms / 1000d);
+    }
+
+    Options parseCommandLine(@Nonnull PrintWriter out, @Nonnull String[] args) {
+        checkNotNull(out);
+        checkNotNull(args);
+
+        OptionSet options;
+        try {
+            options = parser.parse(args);
+        } catch (Exception e) {
+            LOG.error("Error occured while parsing the command line", e);
+            out.println("Error parsing the command line. " + e.getMessage());
+            printHelp(out);
+            return null;
+        }
+
+        List<?> nonOptions = options.nonOptionArguments();
+        // first item is the command itself
+        if (nonOptions.size() < 4) {
+            out.println("Error parsing the command line. Missing node path, property name or local file.");
+            printHelp(out);
+            return null;
+        }
+
+        Options o = new Options();
+        o.path = nonOptions.get(1).toString();
+        o.property = nonOptions.get(2).toString();
+        o.source = new File(nonOptions.get(3).toString());
+        o.threads = options.valueOf(threads);
+        o.batchSize = options.valueOf(batch);
+        if (!PathUtils.isAbsolute(o.path)) {
+            out.println("Error parsing the command line. Node path must be absolute.");
+            return null;
+        }
+        if (!o.source.exists()) {
+            out.println("Error parsing the command line. Not found: " + o.source);
+            return null;
+        }
+        if (o.threads < 1 || o.batchSize < 1) {
+            out.println("Error parsing the command line. Threads and batch size must be positive.");
+            return null;
+        }
+
+        return o;
+    }
+
+    private void printHelp(@Nonnull PrintWriter pw) {
+        checkNotNull(pw);
+
+        pw.println("\nUsage: put /path/to/node propertyName /local/file/or/directory [option params]\n");
+
+        try {
+            parser.printHelpOn(pw);
+        } catch (IOException e) {
+            LOG.error("Error printing help", e);
+            pw.write("Error while printing help screen.");
+        }
+    }
+
+    @Override
+    public String getDescription() {
+        return "Upload local files as binary properties";
+    }
+
+    @Override
+    public boolean isExit() {
+        return false;
+    }
+}
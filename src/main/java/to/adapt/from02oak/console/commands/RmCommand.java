@@ -20,61 +20,178 @@
 
 package to.adapt.from02oak.console.commands;
 
+import com.google.common.base.Stopwatch;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.commons.PathUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import to.adapt.from02oak.repository.Repository;
+import to.adapt.from02oak.repository.SubtreeRemover;
 
 import javax.annotation.Nonnull;
+import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static to.adapt.from02oak.console.commands.ImportCommand.rate;
 
 /**
  * remove a specific node and subnodes
  *
+ * With {@code --chunked} the subtree is removed bottom-up straight from the {@code NodeStore}, committing every
+ * {@code --batch} nodes, for subtrees too big for a single JCR save. Run it again to resume an interrupted
+ * removal.
+ *
  * usage: rm /path/to/node
+ *        rm --chunked [--batch 10000] [--threads 4] /path/to/node
  */
 class RmCommand implements Command {
     private static final Logger LOG = LoggerFactory.getLogger(RmCommand.class);
+    private static final long PROGRESS_INTERVAL_MS = TimeUnit.SECONDS.toMillis(5);
+
+    private final OptionParser parser = new OptionParser();
+    private final OptionSpec<Void> chunked = parser.accepts("chunked",
+            "remove bottom-up in batches, bypassing the JCR layer");
+    private final OptionSpec<Integer> batch = parser.accepts("batch", "amount of nodes per commit")
+            .availableIf(chunked)
+            .withRequiredArg()
+            .ofType(Integer.class)
+            .defaultsTo(ImportCommand.DEFAULT_BATCH_SIZE);
+    private final OptionSpec<Integer> threads = parser.accepts("threads", "sibling subtrees removed in parallel")
+            .availableIf(chunked)
+            .withRequiredArg()
+            .ofType(Integer.class)
+            .defaultsTo(1);
+
+    class Options {
+        String path;
+        boolean chunked;
+        int batchSize;
+        int threads;
+    }
 
     @Override
     public int execute(@Nonnull PrintWriter out, @Nonnull String[] args) throws IOException {
-        String p = parseCommandLine(out, args);
-        if (p == null) {
+        Options o = parseCommandLine(out, args);
+        if (o == null) {
             return 1;
         }
 
+        if (o.chunked) {
+            return removeChunked(out, o);
+        }
+
+        Repository repo = Repository.getRepo();
         Session s = null;
 
         try {
-            s = Repository.getRepo().login(Repository.ADMIN);
-            s.getNode(p).remove();
-            s.save();
+            s = repo.borrowSession();
+            s.getNode(o.path).remove();
+            repo.save(s);
         } catch (Exception e) {
             LOG.error("Error while deleting node", e);
             out.println("Error while deleting node. " + e.getMessage());
             return 1;
         } finally {
-            if (s != null) {
-                s.logout();
-            }
+            repo.returnSession(s);
         }
 
         return 0;
     }
 
-    String parseCommandLine(@Nonnull PrintWriter out, @Nonnull String[] args) {
+    private static int removeChunked(@Nonnull PrintWriter out, @Nonnull Options o) {
+        Stopwatch sw = Stopwatch.createStarted();
+        LongAdder removed = new LongAdder();
+        AtomicLong lastPrint = new AtomicLong();
+        try {
+            new SubtreeRemover(Repository.getRepo(), o.path, o.batchSize).remove(o.threads, merged -> {
+                removed.add(merged);
+                long now = sw.elapsed(TimeUnit.MILLISECONDS);
+                long last = lastPrint.get();
+                if (now - last >= PROGRESS_INTERVAL_MS && lastPrint.compareAndSet(last, now)) {
+                    long r = removed.sum();
+                    out.printf("  %d nodes removed (%.0f nodes/s)%n", r, rate(r, sw));
+                    out.flush();
+                }
+            });
+        } catch (CommitFailedException | RepositoryException | RuntimeException e) {
+            LOG.error("Error while deleting node", e);
+            out.println("Error while deleting node. " + e.getMessage());
+            out.printf("%d nodes have been removed. Run again to resume.%n", removed.sum());
+            return 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            out.printf("Interrupted. %d nodes have been removed. Run again to resume.%n", removed.sum());
+            return 1;
+        }
+
+        long r = removed.sum();
+        if (r == 0) {
+            out.println("Error while deleting node. Not found: " + o.path);
+            return 1;
+        }
+        out.printf("Removed %d nodes in %s (%.0f nodes/s)%n", r, sw, rate(r, sw));
+        return 0;
+    }
+
+    Options parseCommandLine(@Nonnull PrintWriter out, @Nonnull String[] args) {
         checkNotNull(out);
         checkNotNull(args);
 
-        if (args.length < 2) {
+        OptionSet options;
+        try {
+            options = parser.parse(args);
+        } catch (Exception e) {
+            LOG.error("Error occured while parsing the command line", e);
+            out.println("Error parsing the command line. " + e.getMessage());
+            printHelp(out);
+            return null;
+        }
+
+        List<?> nonOptions = options.nonOptionArguments();
+        // first item is the command itself
+        if (nonOptions.size() < 2) {
             out.println("Error parsing the command line");
-            out.println("Usage: rm /path/to/node");
+            printHelp(out);
+            return null;
+        }
+
+        Options o = new Options();
+        o.path = nonOptions.get(1).toString();
+        o.chunked = options.has(chunked);
+        o.batchSize = options.valueOf(batch);
+        o.threads = options.valueOf(threads);
+        if (o.chunked && (!PathUtils.isAbsolute(o.path) || PathUtils.denotesRoot(o.path))) {
+            out.println("Error parsing the command line. Path must be absolute and not the root.");
             return null;
         }
-        return args[1];
+        if (o.threads < 1 || o.batchSize < 1) {
+            out.println("Error parsing the command line. Threads and batch size must be positive.");
+            return null;
+        }
+        return o;
+    }
+
+    private void printHelp(@Nonnull PrintWriter pw) {
+        checkNotNull(pw);
+
+        pw.println("\nUsage: rm [option params] /path/to/node\n");
+
+        try {
+            parser.printHelpOn(pw);
+        } catch (IOException e) {
+            LOG.error("Error printing help", e);
+            pw.write("Error while printing help screen.");
+        }
     }
 
     @Override
@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.console.commands;
+
+import to.adapt.from02oak.repository.Repository;
+
+import javax.annotation.Nonnull;
+import java.io.PrintWriter;
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static to.adapt.from02oak.console.commands.Commands.LEXICOGRAPHICALLY_ORDER;
+
+/**
+ * print latency statistics for each command executed so far.
+ *
+ * Usage:
+ *      stats [--reset]
+ */
+class StatsCommand implements Command {
+    private static final String RESET = "--reset";
+
+    @Override
+    public int execute(@Nonnull PrintWriter out, @Nonnull String[] args) {
+        checkNotNull(out);
+        checkNotNull(args);
+
+        if (args.length > 1 && !RESET.equals(args[1])) {
+            out.println("Error parsing the command line.");
+            out.println("Usage: stats [--reset]");
+            return 1;
+        }
+
+        out.printf("%-10s %8s %6s %9s %9s %9s %9s %9s%n", "command", "count", "errors", "mean ms", "p50", "p95", "p99", "max");
+        Arrays.stream(Commands.values()).sorted(LEXICOGRAPHICALLY_ORDER).forEach(c -> {
+            LatencyStats s = c.getStats();
+            if (s.getCount() == 0) {
+                return;
+            }
+            double[] p = s.getPercentiles(50, 95, 99);
+            out.printf("%-10s %8d %6d %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    c.getName(), s.getCount(), s.getErrors(), s.getMean(), p[0], p[1], p[2], s.getMax());
+        });
+
+        Repository repo = Repository.getRepo();
+        if (repo != null && repo.getSessionPool() != null) {
+            out.println();
+            out.println(repo.getSessionPool());
+        }
+        if (repo != null && repo.getColourCache() != null) {
+            out.println(repo.getColourCache());
+        }
+
+        if (args.length > 1) {
+            Arrays.stream(Commands.values()).forEach(c -> c.getStats().reset());
+            out.println("Counters reset.");
+        }
+
+        return 0;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Print latency statistics per command";
+    }
+
+    @Override
+    public boolean isExit() {
+        return false;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.console.commands;
+
+import org.apache.jackrabbit.oak.api.jmx.CacheStatsMBean;
+import to.adapt.from02oak.repository.CachingFileDataStore;
+import to.adapt.from02oak.repository.Repository;
+import to.adapt.from02oak.repository.SegmentStoreStats;
+
+import javax.annotation.Nonnull;
+import java.io.PrintWriter;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.apache.jackrabbit.oak.commons.IOUtils.humanReadableByteCount;
+
+/**
+ * print the segment store statistics: size, tar files, write throughput and the hit rate of the read caches,
+ * including the blob cache if enabled.
+ *
+ * The same figures are available over JMX, see {@link SegmentStoreStats}.
+ *
+ * Usage:
+ *      storestats
+ */
+class StoreStatsCommand implements Command {
+
+    @Override
+    public int execute(@Nonnull PrintWriter out, @Nonnull String[] args) {
+        checkNotNull(out);
+        checkNotNull(args);
+
+        if (args.length > 1) {
+            out.println("Error parsing the command line.");
+            out.println("Usage: storestats");
+            return 1;
+        }
+
+        SegmentStoreStats stats = Repository.getRepo().getSegmentStoreStats();
+        if (stats == null) {
+            out.println("Store statistics are available only on the segment store.");
+            return 1;
+        }
+
+        out.printf("size:      %s (on disk %s)%n", humanReadableByteCount(stats.getApproximateSize()),
+                humanReadableByteCount(stats.getOnDiskSize()));
+        out.printf("tar files: %d%n", stats.getTarFileCount());
+        out.printf("written:   %s in %d s (%s/s)%n", humanReadableByteCount(stats.getWritten()),
+                stats.getUptime() / 1000, humanReadableByteCount((long) stats.getWriteThroughput()));
+        out.println();
+
+        out.printf("%-10s %12s %12s %8s %10s %10s %10s%n",
+                "cache", "requests", "misses", "hit rate", "evictions", "elements", "weight");
+        for (Map.Entry<String, CacheStatsMBean> e : stats.getCaches().entrySet()) {
+            CacheStatsMBean c = e.getValue();
+            out.printf("%-10s %12d %12d %7.1f%% %10d %10d %10s%n", e.getKey(), c.getRequestCount(), c.getMissCount(),
+                    c.getHitRate() * 100, c.getEvictionCount(), c.getElementCount(),
+                    humanReadableByteCount(c.estimateCurrentWeight()));
+        }
+
+        CachingFileDataStore blobs = Repository.getRepo().getBlobCache();
+        if (blobs != null) {
+            out.printf("%-10s %12d %12d %7.1f%% %10d %10s %10s  (%d too big)%n", "blob",
+                    blobs.getHits() + blobs.getMisses(), blobs.getMisses(), blobs.getHitRate() * 100,
+                    blobs.getEvictions(), "", humanReadableByteCount(blobs.getCachedBytes()), blobs.getBypassed());
+        }
+
+        return 0;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Print size, tar files, write throughput and cache hit rates of the segment store";
+    }
+
+    @Override
+    public boolean isExit() {
+        return false;
+    }
+}
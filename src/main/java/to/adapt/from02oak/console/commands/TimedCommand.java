@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.console.commands;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * decorates a command recording latency and errors of every execution.
+ *
+ * An execution is an error if it returns a non {@code 0} code or throws.
+ */
+class TimedCommand implements Command {
+    private final Command delegate;
+    private final LatencyStats stats = new LatencyStats();
+
+    TimedCommand(@Nonnull Command delegate) {
+        this.delegate = checkNotNull(delegate);
+    }
+
+    @Override
+    public int execute(@Nonnull PrintWriter out, @Nonnull String[] args) throws IOException {
+        boolean error = true;
+        long start = System.nanoTime();
+        try {
+            int code = delegate.execute(out, args);
+            error = code != 0;
+            return code;
+        } finally {
+            stats.record(System.nanoTime() - start, error);
+        }
+    }
+
+    @Override
+    public String getDescription() {
+        return delegate.getDescription();
+    }
+
+    @Override
+    public boolean isExit() {
+        return delegate.isExit();
+    }
+
+    LatencyStats getStats() {
+        return stats;
+    }
+
+    Command getDelegate() {
+        return delegate;
+    }
+}
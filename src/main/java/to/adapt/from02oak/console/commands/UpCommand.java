@@ -20,6 +20,7 @@
 
 package to.adapt.from02oak.console.commands;
 
+import com.google.common.base.Stopwatch;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import joptsimple.OptionParser;
@@ -38,9 +39,12 @@ import java.io.PrintWriter;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static to.adapt.from02oak.console.commands.ImportCommand.rate;
 
 /**
  * update a node
@@ -52,9 +56,17 @@ import static com.google.common.base.Preconditions.checkNotNull;
  *
  *      // add or modify an existing one
  *      up /path/to/node --edit propertyName value/[multi,value]
+ *
+ *      // the same on every node matching a JCR-SQL2 condition, saving every 1000 nodes from 2 threads
+ *      up --where "[colour] = 'red'" --edit colour blue [--batch 1000] [--threads 2]
+ *      up --where "[colour] = 'red'" --delete colour
+ *
+ * With {@code --where} the changes are committed immediately, in batches, even within a script {@code --group}.
  */
 class UpCommand implements Command {
     private static final Logger LOG = LoggerFactory.getLogger(UpCommand.class);
+    private static final long PROGRESS_INTERVAL_MS = TimeUnit.SECONDS.toMillis(5);
+    static final int DEFAULT_BULK_BATCH_SIZE = 1000;
     private OptionParser parser = new OptionParser();
     private OptionSpec<String> edit = parser.accepts("edit", "add or modify a property")
             .withRequiredArg()
@@ -64,6 +76,21 @@ class UpCommand implements Command {
             .withRequiredArg()
             .describedAs("propertyName")
             .ofType(String.class);
+    private OptionSpec<String> where = parser.accepts("where",
+            "update every node matching the JCR-SQL2 condition instead of a single path")
+            .withRequiredArg()
+            .describedAs("condition on [nt:base]")
+            .ofType(String.class);
+    private OptionSpec<Integer> batch = parser.accepts("batch", "amount of nodes per save")
+            .availableIf(where)
+            .withRequiredArg()
+            .ofType(Integer.class)
+            .defaultsTo(DEFAULT_BULK_BATCH_SIZE);
+    private OptionSpec<Integer> threads = parser.accepts("threads", "sessions updating in parallel")
+            .availableIf(where)
+            .withRequiredArg()
+            .ofType(Integer.class)
+            .defaultsTo(1);
 
     enum Operation {
         DELETE, EDIT
@@ -74,6 +101,9 @@ class UpCommand implements Command {
         String path;
         String propertyName;
         List<String> values;
+        String where;
+        int batchSize;
+        int threads;
     }
 
     @Override
@@ -83,18 +113,23 @@ class UpCommand implements Command {
             return 1;
         }
 
+        Repository repo = Repository.getRepo();
+        if (in.where != null) {
+            return bulkUpdate(out, repo, in);
+        }
+
         Session session = null;
         Node n;
         try {
             switch (in.op) {
                 case DELETE:
-                    session = Repository.getRepo().login(Repository.ADMIN);
+                    session = repo.borrowSession();
                     n = session.getNode(in.path);
                     n.getProperty(in.propertyName).remove();
-                    session.save();
+                    repo.save(session);
                     break;
                 case EDIT:
-                    session = Repository.getRepo().login(Repository.ADMIN);
+                    session = repo.borrowSession();
                     n = session.getNode(in.path);
                     if (in.values.size() == 1) {
                         // single value property
@@ -103,7 +138,7 @@ class UpCommand implements Command {
                         // multi-value property
                         n.setProperty(in.propertyName, in.values.toArray(new String[0]));
                     }
-                    session.save();
+                    repo.save(session);
                     break;
             }
         } catch (RepositoryException e) {
@@ -111,14 +146,50 @@ class UpCommand implements Command {
             out.println("Error updating node. " + e.getMessage());
             return 1;
         } finally {
-            if (session != null) {
-                session.logout();;
-            }
+            repo.returnSession(session);
         }
 
         return 0;
     }
 
+    private int bulkUpdate(@Nonnull PrintWriter out, @Nonnull Repository repo, @Nonnull Instruction in) {
+        // one session is kept by the query results
+        int available = repo.getSessionPool().getSize() - 1;
+        if (in.threads > available) {
+            out.printf("Error updating nodes. At most %d threads with the current session pool.%n", available);
+            return 1;
+        }
+
+        BulkUpdate update = new BulkUpdate(repo, in, in.batchSize, in.threads);
+        Stopwatch sw = Stopwatch.createStarted();
+        AtomicLong lastPrint = new AtomicLong();
+        try {
+            update.run(in.where, saved -> {
+                long now = sw.elapsed(TimeUnit.MILLISECONDS);
+                long last = lastPrint.get();
+                if (now - last >= PROGRESS_INTERVAL_MS && lastPrint.compareAndSet(last, now)) {
+                    long u = update.getUpdated();
+                    out.printf("  %d nodes updated (%.0f nodes/s)%n", u, rate(u, sw));
+                    out.flush();
+                }
+            });
+        } catch (RepositoryException | RuntimeException e) {
+            LOG.error("Error updating nodes", e);
+            out.println("Error updating nodes. " + e.getMessage());
+            out.printf("%d nodes have been updated.%n", update.getUpdated());
+            return 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            out.printf("Interrupted. %d nodes have been updated.%n", update.getUpdated());
+            return 1;
+        }
+
+        long u = update.getUpdated();
+        out.printf("Updated %d of %d matching nodes in %s (%.0f nodes/s). %d skipped, %d failed.%n",
+                u, update.getMatched(), sw, rate(u, sw), update.getSkipped(), update.getFailed());
+        return update.getFailed() == 0 ? 0 : 1;
+    }
+
     /**
      * analise the command line and return the equivalent {@code Instruction}.
      *
@@ -152,15 +223,21 @@ class UpCommand implements Command {
             // first item should always be "up"
             nonOptions.remove(0);
         }
-        if (nonOptions.isEmpty()) {
+        if (options.has(where)) {
+            if (options.valueOf(batch) <= 0 || options.valueOf(threads) <= 0) {
+                out.println("Error parsing the command line. batch and threads must be positive.");
+                printHelp(out);
+                return null;
+            }
+        } else if (nonOptions.isEmpty()) {
             LOG.error("Error parsing the command line. Missing node path.");
             out.println("Error parsing the command line. Missing node path.");
             printHelp(out);
             return null;
         }
 
-        // getting the path
-        String p = nonOptions.remove(0);
+        // getting the path, if any
+        String p = options.has(where) ? null : nonOptions.remove(0);
 
         if (options.has(delete)) {
             instruction = new Instruction();
@@ -188,13 +265,19 @@ class UpCommand implements Command {
             printHelp(out);
         }
 
+        if (instruction != null && options.has(where)) {
+            instruction.where = options.valueOf(where);
+            instruction.batchSize = options.valueOf(batch);
+            instruction.threads = options.valueOf(threads);
+        }
+
         return instruction;
     }
 
     private void printHelp(@Nonnull PrintWriter pw) {
         checkNotNull(pw);
 
-        pw.println("\nUsage: up <option> [option params]\n");
+        pw.println("\nUsage: up <path | --where condition> <option> [option params]\n");
 
         try {
             parser.printHelpOn(pw);
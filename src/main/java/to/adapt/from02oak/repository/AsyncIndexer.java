@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.repository;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.jackrabbit.oak.plugins.index.AsyncIndexUpdate;
+import org.apache.jackrabbit.oak.plugins.index.IndexEditorProvider;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStore;
+import org.apache.jackrabbit.util.ISO8601;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Keeps the asynchronous indexes up to date by running an {@link AsyncIndexUpdate} lane on a background
+ * scheduler.
+ *
+ * Indexes whose definition has {@code async = "async"} are skipped within the commits and updated by each run
+ * with the changes since the previous one, so writers don't pay for the index maintenance. Queries may then
+ * miss the most recent changes: see {@link #getLag()}.
+ */
+public class AsyncIndexer implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncIndexer.class);
+
+    /**
+     * name of the lane, as in the {@code async} property of the index definitions
+     */
+    public static final String LANE = "async";
+
+    /**
+     * hidden node where {@link AsyncIndexUpdate} keeps track of its progress
+     */
+    private static final String ASYNC = ":async";
+
+    private final NodeStore store;
+    private final AsyncIndexUpdate update;
+    private final long interval;
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder()
+                    .setNameFormat("async-index-%d")
+                    .setDaemon(true)
+                    .build());
+
+    /**
+     * @param store the store to index. Cannot be null.
+     * @param provider the editors for the async indexes. Cannot be null.
+     * @param interval seconds between two runs. Must be positive.
+     */
+    AsyncIndexer(@Nonnull NodeStore store, @Nonnull IndexEditorProvider provider, long interval) {
+        checkArgument(interval > 0, "interval must be positive. %s", interval);
+        this.store = checkNotNull(store);
+        this.update = new AsyncIndexUpdate(LANE, store, checkNotNull(provider));
+        this.interval = interval;
+    }
+
+    /**
+     * schedule the background runs
+     */
+    void start() {
+        // runs never overlap: the next one is scheduled once the previous has completed
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                String before = lastIndexedTo();
+                update.run();
+                if (!Objects.equals(before, lastIndexedTo())) {
+                    listeners.forEach(Runnable::run);
+                }
+            } catch (RuntimeException e) {
+                LOG.error("Error while updating the async indexes", e);
+            }
+        }, interval, interval, TimeUnit.SECONDS);
+        LOG.info("Async indexing started, running every {} seconds", interval);
+    }
+
+    /**
+     * call {@code listener} after each run bringing the async indexes forward, e.g. to drop what has been
+     * computed on their previous content. Called from the indexing thread.
+     *
+     * @param listener cannot be null.
+     */
+    public void onProgress(@Nonnull Runnable listener) {
+        listeners.add(checkNotNull(listener));
+    }
+
+    /**
+     * @return the status of the lane as reported by Oak: {@code init}, {@code running} or {@code done}.
+     */
+    public String getStatus() {
+        return update.getIndexStats().getStatus();
+    }
+
+    /**
+     * @return when the repository state the async indexes are up to date with was taken. {@code null} if they
+     * have never been updated.
+     */
+    @CheckForNull
+    public Calendar getLastIndexedTo() {
+        String to = lastIndexedTo();
+        return to == null ? null : ISO8601.parse(to);
+    }
+
+    @CheckForNull
+    private String lastIndexedTo() {
+        return store.getRoot().getChildNode(ASYNC).getString(LANE + "-LastIndexedTo");
+    }
+
+    /**
+     * @return how many milliseconds the async indexes are behind the repository. {@code -1} if they have never
+     * been updated.
+     */
+    public long getLag() {
+        Calendar to = getLastIndexedTo();
+        return to == null ? -1 : Math.max(0, System.currentTimeMillis() - to.getTimeInMillis());
+    }
+
+    /**
+     * @return seconds between two runs
+     */
+    public long getInterval() {
+        return interval;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(1, TimeUnit.MINUTES)) {
+                LOG.warn("Async indexing still running after one minute. Stopping it.");
+                scheduler.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            scheduler.shutdownNow();
+        }
+        update.close();
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.repository;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.jackrabbit.core.data.DataIdentifier;
+import org.apache.jackrabbit.core.data.DataStoreException;
+import org.apache.jackrabbit.core.data.FileDataStore;
+import org.apache.jackrabbit.oak.segment.file.FileStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Mark and sweep garbage collection of the {@link FileDataStore} records no longer referenced by the segment
+ * store.
+ *
+ * Mark collects the binary references the segment store keeps in each tar file, without traversing the content.
+ * References from revisions not yet removed by the revision gc count as well, so a binary is reclaimed only once
+ * both the node and the old revisions are gone.
+ *
+ * Sweep deletes the unreferenced records last modified before the run started and before the safety window, so
+ * that binaries uploaded but not committed yet are kept. While running, the data store refreshes the modification
+ * time of any record it's asked to store again.
+ */
+public class BlobGC {
+    private static final Logger LOG = LoggerFactory.getLogger(BlobGC.class);
+    private static final int SWEEP_BATCH = 1000;
+
+    private final FileStore fileStore;
+    private final FileDataStore dataStore;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    BlobGC(@Nonnull FileStore fileStore, @Nonnull FileDataStore dataStore) {
+        this.fileStore = checkNotNull(fileStore);
+        this.dataStore = checkNotNull(dataStore);
+    }
+
+    /**
+     * mark the referenced binaries and sweep the others.
+     *
+     * @param safetyWindow records modified within this amount of milliseconds are always kept. Cannot be negative.
+     * @param threads parallelism of the sweep. Must be positive.
+     * @param dryRun if {@code true} only report what would be deleted
+     * @return the outcome of the run
+     * @throws IllegalStateException if another run is in progress
+     */
+    public Result run(long safetyWindow, int threads, boolean dryRun) throws IOException {
+        checkArgument(safetyWindow >= 0, "safetyWindow cannot be negative. %s", safetyWindow);
+        checkArgument(threads > 0, "threads must be positive. %s", threads);
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("Blob gc already running");
+        }
+
+        Result result = new Result(dryRun);
+        Stopwatch watch = Stopwatch.createStarted();
+        long start = System.currentTimeMillis();
+        try {
+            // any record added again from now on gets a fresh modification time and survives the sweep
+            dataStore.updateModifiedDateOnAccess(start);
+
+            Set<String> marked = mark();
+            result.marked = marked.size();
+            result.markTime = watch.elapsed(TimeUnit.MILLISECONDS);
+            LOG.info("Blob gc marked {} referenced binaries in {} ms", result.marked, result.markTime);
+
+            sweep(marked, Math.min(start, System.currentTimeMillis() - safetyWindow), threads, dryRun, result);
+        } finally {
+            dataStore.updateModifiedDateOnAccess(0);
+            running.set(false);
+            result.time = watch.elapsed(TimeUnit.MILLISECONDS);
+        }
+        LOG.info("Blob gc {}", result);
+        return result;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    /**
+     * @return the data store identifiers of all the binaries referenced by the segment store
+     */
+    private Set<String> mark() throws IOException {
+        // binaries referenced by segments still in memory are not in the tar files yet
+        fileStore.flush();
+        Set<String> marked = Sets.newHashSet();
+        fileStore.collectBlobReferences((reference, nodeId) -> marked.add(Repository.getRecordId(reference)));
+        return marked;
+    }
+
+    private void sweep(@Nonnull Set<String> marked, long cutoff, int threads, boolean dryRun,
+                       @Nonnull Result result) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+                new ThreadFactoryBuilder().setNameFormat("blob-gc-%d").setDaemon(true).build());
+        LongAdder files = new LongAdder();
+        LongAdder bytes = new LongAdder();
+        LongAdder recent = new LongAdder();
+        LongAdder failed = new LongAdder();
+        try {
+            List<Future<?>> tasks = Lists.newArrayList();
+            List<DataIdentifier> batch = Lists.newArrayListWithCapacity(SWEEP_BATCH);
+            Iterator<DataIdentifier> ids = dataStore.getAllIdentifiers();
+            while (ids.hasNext()) {
+                DataIdentifier id = ids.next();
+                result.records++;
+                if (marked.contains(id.toString())) {
+                    continue;
+                }
+                batch.add(id);
+                if (batch.size() == SWEEP_BATCH) {
+                    List<DataIdentifier> b = batch;
+                    tasks.add(executor.submit(() -> sweep(b, cutoff, dryRun, files, bytes, recent, failed)));
+                    batch = Lists.newArrayListWithCapacity(SWEEP_BATCH);
+                }
+            }
+            if (!batch.isEmpty()) {
+                List<DataIdentifier> b = batch;
+                tasks.add(executor.submit(() -> sweep(b, cutoff, dryRun, files, bytes, recent, failed)));
+            }
+            for (Future<?> t : tasks) {
+                t.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IOException("Error sweeping the data store", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while sweeping the data store", e);
+        } finally {
+            executor.shutdownNow();
+            result.reclaimedFiles = files.sum();
+            result.reclaimedBytes = bytes.sum();
+            result.recent = recent.sum();
+            result.failed = failed.sum();
+        }
+    }
+
+    private void sweep(@Nonnull List<DataIdentifier> ids, long cutoff, boolean dryRun, @Nonnull LongAdder files,
+                       @Nonnull LongAdder bytes, @Nonnull LongAdder recent, @Nonnull LongAdder failed) {
+        for (DataIdentifier id : ids) {
+            // the file is inspected directly: asking the data store for the record would refresh its timestamp
+            File f = Repository.getRecordFile(dataStore, id.toString());
+            if (f == null || !f.isFile()) {
+                continue;
+            }
+            if (f.lastModified() >= cutoff) {
+                recent.increment();
+                continue;
+            }
+            long length = f.length();
+            if (!dryRun) {
+                try {
+                    dataStore.deleteRecord(id);
+                } catch (DataStoreException e) {
+                    LOG.warn("Unable to delete {}. {}", id, e.getMessage());
+                    failed.increment();
+                    continue;
+                }
+            }
+            files.increment();
+            bytes.add(length);
+        }
+    }
+
+    /**
+     * outcome of a run
+     */
+    public static class Result {
+        private final boolean dryRun;
+        private long marked;
+        private long records;
+        private long recent;
+        private long failed;
+        private long reclaimedFiles;
+        private long reclaimedBytes;
+        private long markTime;
+        private long time;
+
+        Result(boolean dryRun) {
+            this.dryRun = dryRun;
+        }
+
+        public boolean isDryRun() {
+            return dryRun;
+        }
+
+        /**
+         * @return referenced binaries found in the segment store
+         */
+        public long getMarked() {
+            return marked;
+        }
+
+        /**
+         * @return records found in the data store
+         */
+        public long getRecords() {
+            return records;
+        }
+
+        /**
+         * @return unreferenced records kept as within the safety window
+         */
+        public long getRecent() {
+            return recent;
+        }
+
+        /**
+         * @return unreferenced records that could not be deleted
+         */
+        public long getFailed() {
+            return failed;
+        }
+
+        /**
+         * @return records deleted, or that would be deleted in a dry run
+         */
+        public long getReclaimedFiles() {
+            return reclaimedFiles;
+        }
+
+        public long getReclaimedBytes() {
+            return reclaimedBytes;
+        }
+
+        /**
+         * @return milliseconds spent marking
+         */
+        public long getMarkTime() {
+            return markTime;
+        }
+
+        /**
+         * @return milliseconds spent overall
+         */
+        public long getTime() {
+            return time;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Result{dryRun=%s, marked=%d, records=%d, reclaimedFiles=%d, reclaimedBytes=%d, "
+                    + "recent=%d, failed=%d, time=%d ms}",
+                    dryRun, marked, records, reclaimedFiles, reclaimedBytes, recent, failed, time);
+        }
+    }
+}
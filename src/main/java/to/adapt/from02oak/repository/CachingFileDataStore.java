@@ -0,0 +1,226 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.repository;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.io.ByteStreams;
+import org.apache.jackrabbit.core.data.AbstractDataRecord;
+import org.apache.jackrabbit.core.data.DataIdentifier;
+import org.apache.jackrabbit.core.data.DataRecord;
+import org.apache.jackrabbit.core.data.DataStoreException;
+import org.apache.jackrabbit.core.data.FileDataStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.apache.jackrabbit.oak.commons.IOUtils.humanReadableByteCount;
+
+/**
+ * {@link FileDataStore} keeping the content of the most recently read small records on heap, so that the hot
+ * binaries are served without opening their files.
+ *
+ * Records bigger than {@code maxRecordSize} are always streamed from disk, where the operating system page cache
+ * already keeps the hot ones; a second copy on the same disk would not read any faster.
+ *
+ * Reads served from the heap don't refresh the record modification time. Garbage collection relies on the
+ * refresh on store only, see {@link BlobGC}.
+ */
+public class CachingFileDataStore extends FileDataStore {
+    private static final Logger LOG = LoggerFactory.getLogger(CachingFileDataStore.class);
+
+    private final long maxSize;
+    private final int maxRecordSize;
+    private final Cache<String, CachedRecord> cache;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder bypassed = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxSize bytes of heap the cached records can take. Must be positive.
+     * @param maxRecordSize records up to this amount of bytes are cached. Must be positive.
+     */
+    public CachingFileDataStore(long maxSize, int maxRecordSize) {
+        checkArgument(maxSize > 0, "maxSize must be positive. %s", maxSize);
+        checkArgument(maxRecordSize > 0, "maxRecordSize must be positive. %s", maxRecordSize);
+        this.maxSize = maxSize;
+        this.maxRecordSize = maxRecordSize;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxSize)
+                .weigher((String id, CachedRecord r) -> r.content.length)
+                .removalListener(n -> {
+                    if (n.getCause() == RemovalCause.SIZE) {
+                        evictions.increment();
+                    }
+                })
+                .build();
+    }
+
+    @CheckForNull
+    @Override
+    public DataRecord getRecordIfStored(DataIdentifier identifier) throws DataStoreException {
+        CachedRecord cached = cache.getIfPresent(identifier.toString());
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+
+        DataRecord record = super.getRecordIfStored(identifier);
+        if (record == null) {
+            return null;
+        }
+        if (record.getLength() > maxRecordSize) {
+            bypassed.increment();
+            return record;
+        }
+
+        try {
+            // concurrent readers of the same record wait for a single load
+            return cache.get(identifier.toString(), () -> load(record));
+        } catch (ExecutionException e) {
+            LOG.warn("Unable to cache {}. Reading from disk.", identifier, e.getCause());
+            return record;
+        }
+    }
+
+    private CachedRecord load(@Nonnull DataRecord record) throws DataStoreException, IOException {
+        misses.increment();
+        try (InputStream in = record.getStream()) {
+            return new CachedRecord(record.getIdentifier(), ByteStreams.toByteArray(in), record.getLastModified());
+        }
+    }
+
+    @Override
+    public void deleteRecord(DataIdentifier identifier) throws DataStoreException {
+        cache.invalidate(identifier.toString());
+        super.deleteRecord(identifier);
+    }
+
+    @Override
+    public int deleteAllOlderThan(long min) {
+        cache.invalidateAll();
+        return super.deleteAllOlderThan(min);
+    }
+
+    /**
+     * @return reads served from the heap
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return reads of cacheable records loaded from disk
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return reads of records too big to be cached
+     */
+    public long getBypassed() {
+        return bypassed.sum();
+    }
+
+    /**
+     * @return records dropped to make room for others
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return hits over reads of cacheable records. {@code 0} if nothing read yet.
+     */
+    public double getHitRate() {
+        long h = getHits();
+        long total = h + getMisses();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /**
+     * @return bytes currently cached
+     */
+    public long getCachedBytes() {
+        return cache.asMap().values().stream().mapToLong(r -> r.content.length).sum();
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public int getMaxRecordSize() {
+        return maxRecordSize;
+    }
+
+    public void resetStats() {
+        hits.reset();
+        misses.reset();
+        bypassed.reset();
+        evictions.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CachingFileDataStore{cached=%s of %s, maxRecordSize=%s, hits=%d, misses=%d, "
+                        + "hitRate=%.1f%%, bypassed=%d, evictions=%d}",
+                humanReadableByteCount(getCachedBytes()), humanReadableByteCount(maxSize),
+                humanReadableByteCount(maxRecordSize), getHits(), getMisses(), getHitRate() * 100, getBypassed(),
+                getEvictions());
+    }
+
+    private class CachedRecord extends AbstractDataRecord {
+        private final byte[] content;
+        private final long lastModified;
+
+        CachedRecord(@Nonnull DataIdentifier identifier, @Nonnull byte[] content, long lastModified) {
+            super(CachingFileDataStore.this, identifier);
+            this.content = content;
+            this.lastModified = lastModified;
+        }
+
+        @Override
+        public long getLength() {
+            return content.length;
+        }
+
+        @Override
+        public InputStream getStream() {
+            return new ByteArrayInputStream(content);
+        }
+
+        @Override
+        public long getLastModified() {
+            return lastModified;
+        }
+    }
+}
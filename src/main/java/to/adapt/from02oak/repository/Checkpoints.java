@@ -0,0 +1,280 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.repository;
+
+import com.google.common.collect.Lists;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.commons.PathUtils;
+import org.apache.jackrabbit.oak.plugins.memory.MemoryNodeStore;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStore;
+import org.apache.jackrabbit.oak.segment.file.FileStore;
+import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateDiff;
+import org.apache.jackrabbit.oak.spi.state.NodeStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * creates, lists and releases checkpoints of the {@code NodeStore} and compares them against the current content.
+ *
+ * The diff relies on {@link NodeState#compareAgainstBaseState(NodeState, NodeStateDiff)}: the segment store skips
+ * the subtrees whose record did not change, so the cost is proportional to the size of the change rather than to
+ * the size of the repository. Added and removed subtrees are reported by their root only. Hidden items, as the
+ * index content, are ignored.
+ */
+public class Checkpoints {
+    private static final Logger LOG = LoggerFactory.getLogger(Checkpoints.class);
+
+    private final NodeStore store;
+    private final FileStore fileStore;
+
+    /**
+     * @param store where to create the checkpoints. Cannot be null.
+     * @param fileStore backing the {@code store}, for listing the checkpoints. {@code null} if not a segment store.
+     */
+    Checkpoints(@Nonnull NodeStore store, @Nullable FileStore fileStore) {
+        this.store = checkNotNull(store);
+        this.fileStore = fileStore;
+    }
+
+    /**
+     * a checkpoint as listed by {@link #list()}
+     */
+    public static class Info {
+        private final String name;
+        private final long created;
+        private final long expires;
+        private final Map<String, String> properties;
+
+        Info(@Nonnull String name, long created, long expires, @Nonnull Map<String, String> properties) {
+            this.name = name;
+            this.created = created;
+            this.expires = expires;
+            this.properties = properties;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return creation time in milliseconds since the epoch. {@code -1} if unknown.
+         */
+        public long getCreated() {
+            return created;
+        }
+
+        /**
+         * @return expiry time in milliseconds since the epoch. {@code -1} if unknown.
+         */
+        public long getExpires() {
+            return expires;
+        }
+
+        public Map<String, String> getProperties() {
+            return properties;
+        }
+    }
+
+    /**
+     * the kind of a reported change
+     */
+    public enum Change {
+        ADDED, REMOVED, CHANGED
+    }
+
+    /**
+     * receives the changes found by {@link #diff(String, String, Listener)}
+     */
+    public interface Listener {
+        /**
+         * @param change what happened
+         * @param path absolute path of the node, or of the property if {@code property} is {@code true}
+         * @param property {@code true} if {@code path} points to a property
+         * @return {@code false} to stop the comparison
+         */
+        boolean changed(@Nonnull Change change, @Nonnull String path, boolean property);
+    }
+
+    /**
+     * @param lifetime milliseconds the checkpoint is valid for. Must be positive.
+     * @param properties stored along the checkpoint. Cannot be null.
+     * @return the name of the new checkpoint
+     */
+    @Nonnull
+    public String create(long lifetime, @Nonnull Map<String, String> properties) {
+        checkArgument(lifetime > 0, "lifetime must be positive. %s", lifetime);
+        String name = store.checkpoint(lifetime, checkNotNull(properties));
+        LOG.debug("Created checkpoint {} valid for {} ms", name, lifetime);
+        return name;
+    }
+
+    /**
+     * @return the existing checkpoints, including the ones of the async indexer. Empty if the store cannot list
+     * them.
+     */
+    @Nonnull
+    public List<Info> list() {
+        List<Info> checkpoints = Lists.newArrayList();
+        if (fileStore != null) {
+            NodeState cps = fileStore.getHead().getChildNode(SegmentNodeStore.CHECKPOINTS);
+            for (ChildNodeEntry e : cps.getChildNodeEntries()) {
+                NodeState cp = e.getNodeState();
+                checkpoints.add(new Info(e.getName(), getLong(cp, "created"), getLong(cp, "timestamp"),
+                        store.checkpointInfo(e.getName())));
+            }
+        } else if (store instanceof MemoryNodeStore) {
+            for (String name : ((MemoryNodeStore) store).listCheckpoints()) {
+                checkpoints.add(new Info(name, -1, -1, store.checkpointInfo(name)));
+            }
+        }
+        return checkpoints;
+    }
+
+    private static long getLong(@Nonnull NodeState n, @Nonnull String name) {
+        PropertyState p = n.getProperty(name);
+        return p == null ? -1 : p.getValue(Type.LONG);
+    }
+
+    /**
+     * @return {@code true} if the checkpoint has been released
+     */
+    public boolean release(@Nonnull String name) {
+        return store.release(checkNotNull(name));
+    }
+
+    /**
+     * report the changes of the subtree at {@code path} from the checkpoint to the current head.
+     *
+     * @param checkpoint name of an existing checkpoint. Cannot be null.
+     * @param path absolute path of the subtree to compare. Cannot be null.
+     * @param listener receives the changes. Cannot be null.
+     * @return the amount of nodes compared, those changed included
+     * @throws IllegalArgumentException if the checkpoint does not exist
+     */
+    public long diff(@Nonnull String checkpoint, @Nonnull String path, @Nonnull Listener listener) {
+        checkArgument(PathUtils.isAbsolute(checkNotNull(path)), "Path must be absolute. %s", path);
+        checkNotNull(listener);
+        NodeState base = store.retrieve(checkNotNull(checkpoint));
+        checkArgument(base != null, "Checkpoint not found: %s", checkpoint);
+
+        NodeState before = getNode(base, path);
+        NodeState after = getNode(store.getRoot(), path);
+        if (!before.exists() && !after.exists()) {
+            return 0;
+        } else if (!before.exists()) {
+            listener.changed(Change.ADDED, path, false);
+            return 1;
+        } else if (!after.exists()) {
+            listener.changed(Change.REMOVED, path, false);
+            return 1;
+        }
+
+        Diff diff = new Diff(path, listener);
+        after.compareAgainstBaseState(before, diff);
+        return diff.compared[0];
+    }
+
+    private static NodeState getNode(@Nonnull NodeState root, @Nonnull String path) {
+        NodeState n = root;
+        for (String name : PathUtils.elements(path)) {
+            n = n.getChildNode(name);
+        }
+        return n;
+    }
+
+    private static class Diff implements NodeStateDiff {
+        private static final Predicate<String> HIDDEN = name -> name.startsWith(":");
+
+        private final String path;
+        private final Listener listener;
+        // shared with the diffs of the descendants
+        private final long[] compared;
+
+        Diff(@Nonnull String path, @Nonnull Listener listener) {
+            this(path, listener, new long[]{1});
+        }
+
+        private Diff(@Nonnull String path, @Nonnull Listener listener, @Nonnull long[] compared) {
+            this.path = path;
+            this.listener = listener;
+            this.compared = compared;
+        }
+
+        @Override
+        public boolean propertyAdded(PropertyState after) {
+            return property(Change.ADDED, after.getName());
+        }
+
+        @Override
+        public boolean propertyChanged(PropertyState before, PropertyState after) {
+            return property(Change.CHANGED, after.getName());
+        }
+
+        @Override
+        public boolean propertyDeleted(PropertyState before) {
+            return property(Change.REMOVED, before.getName());
+        }
+
+        @Override
+        public boolean childNodeAdded(String name, NodeState after) {
+            return node(Change.ADDED, name);
+        }
+
+        @Override
+        public boolean childNodeChanged(String name, NodeState before, NodeState after) {
+            if (HIDDEN.test(name)) {
+                return true;
+            }
+            compared[0]++;
+            return after.compareAgainstBaseState(before,
+                    new Diff(PathUtils.concat(path, name), listener, compared));
+        }
+
+        @Override
+        public boolean childNodeDeleted(String name, NodeState before) {
+            return node(Change.REMOVED, name);
+        }
+
+        private boolean property(@Nonnull Change change, @Nonnull String name) {
+            return HIDDEN.test(name) || listener.changed(change, PathUtils.concat(path, name), true);
+        }
+
+        private boolean node(@Nonnull Change change, @Nonnull String name) {
+            if (HIDDEN.test(name)) {
+                return true;
+            }
+            compared[0]++;
+            return listener.changed(change, PathUtils.concat(path, name), false);
+        }
+    }
+}
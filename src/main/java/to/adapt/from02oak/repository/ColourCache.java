@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.repository;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.jcr.Credentials;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+import javax.jcr.observation.EventListener;
+import javax.jcr.observation.ObservationManager;
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static javax.jcr.observation.Event.NODE_MOVED;
+import static javax.jcr.observation.Event.NODE_REMOVED;
+import static javax.jcr.observation.Event.PROPERTY_ADDED;
+import static javax.jcr.observation.Event.PROPERTY_CHANGED;
+import static javax.jcr.observation.Event.PROPERTY_REMOVED;
+
+/**
+ * Caches the paths of the nodes having a given colour.
+ *
+ * The whole cache is invalidated by an observation listener as soon as a {@code colour} property is added,
+ * changed or removed, or a node is removed or moved. Observation is asynchronous: a change becomes visible
+ * once its event has been delivered, usually within milliseconds.
+ *
+ * With an async colour index a query may still see the previous content after the event, and its result be
+ * cached: the {@link AsyncIndexer} invalidates the cache once more after each run bringing the indexes forward.
+ */
+public class ColourCache implements Closeable, EventListener {
+    private static final Logger LOG = LoggerFactory.getLogger(ColourCache.class);
+
+    /**
+     * results bigger than this are not cached
+     */
+    public static final int MAX_CACHED_PATHS = 10000;
+    private static final String COLOUR_SUFFIX = "/colour";
+
+    private final Cache<String, List<String>> cache = CacheBuilder.newBuilder()
+            .maximumWeight(10 * MAX_CACHED_PATHS)
+            .weigher((String colour, List<String> paths) -> paths.size() + 1)
+            .recordStats()
+            .build();
+
+    /**
+     * bumped at every invalidation, so that results computed while a change happened are not cached
+     */
+    private final AtomicLong generation = new AtomicLong();
+    private final Session session;
+
+    /**
+     * @param repo the repository to observe. Cannot be null.
+     * @param credentials for the observing session. Cannot be null.
+     */
+    ColourCache(@Nonnull javax.jcr.Repository repo, @Nonnull Credentials credentials) throws RepositoryException {
+        session = checkNotNull(repo).login(checkNotNull(credentials));
+        session.getWorkspace().getObservationManager().addEventListener(this,
+                PROPERTY_ADDED | PROPERTY_CHANGED | PROPERTY_REMOVED | NODE_REMOVED | NODE_MOVED,
+                "/", true, null, null, false);
+    }
+
+    /**
+     * @return the cached paths having the colour. {@code null} if not cached.
+     */
+    @CheckForNull
+    public List<String> get(@Nonnull String colour) {
+        return cache.getIfPresent(checkNotNull(colour));
+    }
+
+    /**
+     * @return the token to be passed to {@link #put(String, List, long)} once the result has been computed.
+     * Take it before running the query.
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * cache the result of a query, unless it's too big or something changed since {@code generation} was taken.
+     */
+    public void put(@Nonnull String colour, @Nonnull List<String> paths, long generation) {
+        if (paths.size() > MAX_CACHED_PATHS || generation != this.generation.get()) {
+            return;
+        }
+        cache.put(checkNotNull(colour), ImmutableList.copyOf(paths));
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    @Override
+    public void onEvent(EventIterator events) {
+        while (events.hasNext()) {
+            Event e = events.nextEvent();
+            try {
+                if (e.getType() == NODE_REMOVED || e.getType() == NODE_MOVED || e.getPath().endsWith(COLOUR_SUFFIX)) {
+                    LOG.debug("Invalidating colour cache on {}", e.getPath());
+                    invalidateAll();
+                    return;
+                }
+            } catch (RepositoryException ex) {
+                LOG.error("Error reading event. Invalidating colour cache.", ex);
+                invalidateAll();
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            ObservationManager om = session.getWorkspace().getObservationManager();
+            om.removeEventListener(this);
+        } catch (RepositoryException e) {
+            LOG.error("Error removing the colour cache listener", e);
+        } finally {
+            session.logout();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ColourCache{size=%d, %s}", cache.size(), cache.stats());
+    }
+}
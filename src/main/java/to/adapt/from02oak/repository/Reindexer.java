@@ -0,0 +1,433 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.repository;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.plugins.index.AsyncIndexUpdate;
+import org.apache.jackrabbit.oak.plugins.index.IndexEditorProvider;
+import org.apache.jackrabbit.oak.plugins.index.IndexUpdateCallback;
+import org.apache.jackrabbit.oak.plugins.index.IndexUpdateProvider;
+import org.apache.jackrabbit.oak.plugins.index.IndexUtils;
+import org.apache.jackrabbit.oak.spi.commit.CommitHook;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.CompositeHook;
+import org.apache.jackrabbit.oak.spi.commit.Editor;
+import org.apache.jackrabbit.oak.spi.commit.EditorDiff;
+import org.apache.jackrabbit.oak.spi.commit.EditorHook;
+import org.apache.jackrabbit.oak.spi.commit.VisibleEditor;
+import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.ASYNC_PROPERTY_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.REINDEX_PROPERTY_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.TYPE_PROPERTY_NAME;
+
+/**
+ * Creates property index definitions and builds their content in the background, counting the nodes indexed
+ * so far. Only one index at a time.
+ *
+ * Building an index within a regular commit would hold the commit lock of the {@code NodeStore} for the whole
+ * traversal, stalling every other writer. The new definition goes instead on a private async lane, built by an
+ * {@link AsyncIndexUpdate} on a checkpoint without holding the lock. Once built, a last commit drops the lane
+ * making the index synchronous; the changes made since the checkpoint are indexed by that commit, so the lock is
+ * held only for them.
+ */
+public class Reindexer implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(Reindexer.class);
+
+    /**
+     * the private lane the new indexes are built on. Distinct from {@link AsyncIndexer#LANE}.
+     */
+    static final String LANE = "reindex";
+
+    /**
+     * hidden node where {@link AsyncIndexUpdate} keeps track of its progress
+     */
+    private static final String ASYNC = ":async";
+    private static final int MAX_ATTEMPTS = 10;
+
+    private final NodeStore store;
+    private final IndexEditorProvider provider;
+    private final CommitHook indexHook;
+    private final AtomicLong visited = new AtomicLong();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+            .setNameFormat("reindex-%d")
+            .setDaemon(true)
+            .build());
+
+    private volatile boolean running;
+    private volatile String index;
+    private volatile Stopwatch watch;
+    private volatile String outcome = "never run";
+
+    /**
+     * @param store where to create the indexes. Cannot be null.
+     * @param provider the editors of the synchronous indexes. Cannot be null.
+     */
+    Reindexer(@Nonnull NodeStore store, @Nonnull IndexEditorProvider provider) {
+        this.store = checkNotNull(store);
+        this.provider = new CountingProvider(checkNotNull(provider));
+        this.indexHook = new EditorHook(new IndexUpdateProvider(provider));
+    }
+
+    /**
+     * define a new property index and start building it in background.
+     *
+     * @param name name of the definition under {@code /oak:index}. Cannot be null.
+     * @param properties the properties to index. Cannot be null.
+     * @param unique if {@code true} the values must be unique across the repository
+     * @param nodeTypes restrict the index to these node types. {@code null} for any.
+     * @return {@code false} if a reindex is already running
+     * @throws IllegalArgumentException if an index with the same name already exists
+     */
+    public synchronized boolean start(@Nonnull String name, @Nonnull Collection<String> properties, boolean unique,
+                                      @Nullable Collection<String> nodeTypes) {
+        checkNotNull(name);
+        checkNotNull(properties);
+        if (running) {
+            return false;
+        }
+        if (store.getRoot().getChildNode(INDEX_DEFINITIONS_NAME).hasChildNode(name)) {
+            throw new IllegalArgumentException("Index already exists: " + name);
+        }
+
+        submit(name, root -> IndexUtils.createIndexDefinition(IndexUtils.getOrCreateOakIndex(root), name, true,
+                unique, properties, nodeTypes).setProperty(ASYNC_PROPERTY_NAME, LANE));
+        return true;
+    }
+
+    /**
+     * resume the build of an index left on the private lane by a previous run, e.g. stopped by a shutdown. The
+     * build starts over. Only one index is on the lane at a time: any other leftover is removed.
+     */
+    synchronized void resume() {
+        if (running) {
+            return;
+        }
+        List<String> leftovers = Lists.newArrayList();
+        for (ChildNodeEntry e : store.getRoot().getChildNode(INDEX_DEFINITIONS_NAME).getChildNodeEntries()) {
+            if (LANE.equals(e.getNodeState().getString(ASYNC_PROPERTY_NAME))) {
+                leftovers.add(e.getName());
+            }
+        }
+        if (leftovers.isEmpty()) {
+            return;
+        }
+
+        String name = leftovers.get(0);
+        LOG.info("Resuming the build of index {}", name);
+        submit(name, root -> {
+            NodeBuilder definitions = root.getChildNode(INDEX_DEFINITIONS_NAME);
+            for (String other : leftovers.subList(1, leftovers.size())) {
+                LOG.warn("Removing index {} left unbuilt", other);
+                definitions.getChildNode(other).remove();
+            }
+            definitions.getChildNode(name).setProperty(REINDEX_PROPERTY_NAME, true);
+        });
+    }
+
+    /**
+     * build an index in background
+     *
+     * @param define sets up the definition on the lane, merged before the build
+     */
+    private void submit(@Nonnull String name, @Nonnull Consumer<NodeBuilder> define) {
+        running = true;
+        index = name;
+        visited.set(0);
+        watch = Stopwatch.createStarted();
+        outcome = "running";
+
+        executor.submit(() -> {
+            try {
+                NodeBuilder root = store.getRoot().builder();
+                define.accept(root);
+                // whatever a previous build left on the lane
+                List<String> checkpoints = removeLane(root);
+                store.merge(root, indexHook, CommitInfo.EMPTY);
+                checkpoints.forEach(store::release);
+
+                build(name);
+                makeSynchronous(name);
+                outcome = "completed";
+            } catch (CommitFailedException | RuntimeException e) {
+                LOG.error("Error while building index {}", name, e);
+                outcome = "failed: " + e.getMessage();
+                drop(name);
+            } catch (InterruptedException e) {
+                // shutting down: the definition is kept and the build resumed at the next start
+                Thread.currentThread().interrupt();
+                outcome = "interrupted";
+            } finally {
+                watch.stop();
+                running = false;
+                LOG.info("Index {} {} in {}. {} nodes visited", name, outcome, watch, visited.get());
+            }
+        });
+    }
+
+    /**
+     * run the private lane till the index is built
+     */
+    private void build(@Nonnull String name) throws CommitFailedException, InterruptedException {
+        try (AsyncIndexUpdate update = new AsyncIndexUpdate(LANE, store, provider)) {
+            for (int attempt = 1; ; attempt++) {
+                update.run();
+                NodeState def = store.getRoot().getChildNode(INDEX_DEFINITIONS_NAME).getChildNode(name);
+                if (!def.getBoolean(REINDEX_PROPERTY_NAME)) {
+                    return;
+                }
+                if (update.isFailing() || attempt == MAX_ATTEMPTS) {
+                    throw new CommitFailedException(CommitFailedException.OAK, 1,
+                            "Could not build the index after " + attempt + " attempts. See the logs.");
+                }
+                // another run may hold the lane: try again later
+                Thread.sleep(1000);
+            }
+        }
+    }
+
+    /**
+     * drop the lane from the definition, indexing the changes since the lane checkpoint within the same commit
+     */
+    private void makeSynchronous(@Nonnull String name) throws CommitFailedException {
+        NodeBuilder root = store.getRoot().builder();
+        root.getChildNode(INDEX_DEFINITIONS_NAME).getChildNode(name).removeProperty(ASYNC_PROPERTY_NAME);
+        List<String> checkpoints = removeLane(root);
+        store.merge(root, CompositeHook.compose(ImmutableList.of(new CatchUpHook(name), indexHook)),
+                CommitInfo.EMPTY);
+        checkpoints.forEach(store::release);
+    }
+
+    /**
+     * remove a failed definition with the lane
+     */
+    private void drop(@Nonnull String name) {
+        try {
+            NodeBuilder root = store.getRoot().builder();
+            root.getChildNode(INDEX_DEFINITIONS_NAME).getChildNode(name).remove();
+            List<String> checkpoints = removeLane(root);
+            store.merge(root, indexHook, CommitInfo.EMPTY);
+            checkpoints.forEach(store::release);
+        } catch (CommitFailedException | RuntimeException e) {
+            LOG.error("Error while removing index {}", name, e);
+        }
+    }
+
+    /**
+     * remove the bookkeeping of the lane
+     *
+     * @return the checkpoints of the lane, to be released once merged
+     */
+    private static List<String> removeLane(@Nonnull NodeBuilder root) {
+        List<String> checkpoints = Lists.newArrayList();
+        NodeBuilder async = root.getChildNode(ASYNC);
+        for (PropertyState p : Lists.newArrayList(async.getProperties())) {
+            if (p.getName().equals(LANE) || p.getName().equals(LANE + "-temp")) {
+                Iterables.addAll(checkpoints, p.getValue(Type.STRINGS));
+            }
+            if (p.getName().equals(LANE) || p.getName().startsWith(LANE + "-")) {
+                async.removeProperty(p.getName());
+            }
+        }
+        return checkpoints;
+    }
+
+    /**
+     * indexes with the new definition the changes between the lane checkpoint and the head the commit is based on.
+     * Runs within the commit lock, so no change can slip in between.
+     */
+    private class CatchUpHook implements CommitHook {
+        private final String name;
+
+        CatchUpHook(@Nonnull String name) {
+            this.name = name;
+        }
+
+        @Nonnull
+        @Override
+        public NodeState processCommit(NodeState before, NodeState after, CommitInfo info)
+                throws CommitFailedException {
+            String checkpoint = before.getChildNode(ASYNC).getString(LANE);
+            NodeState indexed = checkpoint == null ? null : store.retrieve(checkpoint);
+            if (indexed == null) {
+                throw new CommitFailedException(CommitFailedException.OAK, 2,
+                        "Checkpoint of the lane not found: " + checkpoint);
+            }
+
+            NodeBuilder builder = after.builder();
+            NodeBuilder def = builder.getChildNode(INDEX_DEFINITIONS_NAME).getChildNode(name);
+            Editor editor = provider.getIndexEditor(def.getString(TYPE_PROPERTY_NAME), def, after, () -> {});
+            if (editor != null) {
+                CommitFailedException e = EditorDiff.process(VisibleEditor.wrap(editor), indexed, before);
+                if (e != null) {
+                    throw e;
+                }
+            }
+            return builder.getNodeState();
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @return the index being built, or the last one. {@code null} if never run.
+     */
+    @CheckForNull
+    public String getIndex() {
+        return index;
+    }
+
+    /**
+     * @return {@code running}, {@code completed}, {@code failed: reason} or {@code never run}
+     */
+    public String getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * @return nodes visited so far by the current or last run
+     */
+    public long getVisited() {
+        return visited.get();
+    }
+
+    /**
+     * @return time spent by the current or last run in milliseconds. {@code -1} if never run.
+     */
+    public long getElapsed() {
+        Stopwatch w = watch;
+        return w == null ? -1 : w.elapsed(TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        // interrupts the wait between two runs of the lane; a run itself is waited for
+        executor.shutdownNow();
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                LOG.warn("Index {} still building after one minute. It will be resumed at the next start.", index);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * wraps the editors to count the nodes they visit
+     */
+    private class CountingProvider implements IndexEditorProvider {
+        private final IndexEditorProvider delegate;
+
+        CountingProvider(@Nonnull IndexEditorProvider delegate) {
+            this.delegate = delegate;
+        }
+
+        @CheckForNull
+        @Override
+        public Editor getIndexEditor(@Nonnull String type, @Nonnull NodeBuilder definition, @Nonnull NodeState root,
+                                     @Nonnull IndexUpdateCallback callback) throws CommitFailedException {
+            Editor e = delegate.getIndexEditor(type, definition, root, callback);
+            return e == null ? null : new CountingEditor(e);
+        }
+    }
+
+    private class CountingEditor implements Editor {
+        private final Editor delegate;
+
+        CountingEditor(@Nonnull Editor delegate) {
+            this.delegate = delegate;
+        }
+
+        @CheckForNull
+        private Editor wrap(@Nullable Editor e) {
+            return e == null ? null : new CountingEditor(e);
+        }
+
+        @Override
+        public void enter(NodeState before, NodeState after) throws CommitFailedException {
+            visited.incrementAndGet();
+            delegate.enter(before, after);
+        }
+
+        @Override
+        public void leave(NodeState before, NodeState after) throws CommitFailedException {
+            delegate.leave(before, after);
+        }
+
+        @Override
+        public void propertyAdded(PropertyState after) throws CommitFailedException {
+            delegate.propertyAdded(after);
+        }
+
+        @Override
+        public void propertyChanged(PropertyState before, PropertyState after) throws CommitFailedException {
+            delegate.propertyChanged(before, after);
+        }
+
+        @Override
+        public void propertyDeleted(PropertyState before) throws CommitFailedException {
+            delegate.propertyDeleted(before);
+        }
+
+        @Override
+        public Editor childNodeAdded(String name, NodeState after) throws CommitFailedException {
+            return wrap(delegate.childNodeAdded(name, after));
+        }
+
+        @Override
+        public Editor childNodeChanged(String name, NodeState before, NodeState after) throws CommitFailedException {
+            return wrap(delegate.childNodeChanged(name, before, after));
+        }
+
+        @Override
+        public Editor childNodeDeleted(String name, NodeState before) throws CommitFailedException {
+            return wrap(delegate.childNodeDeleted(name, before));
+        }
+    }
+}
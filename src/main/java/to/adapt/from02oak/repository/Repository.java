@@ -20,25 +20,46 @@
 package to.adapt.from02oak.repository;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import org.apache.jackrabbit.core.data.FileDataStore;
+import org.apache.jackrabbit.oak.api.Blob;
+import org.apache.jackrabbit.oak.api.CommitFailedException;
 import org.apache.jackrabbit.oak.jcr.Jcr;
 import org.apache.jackrabbit.oak.plugins.blob.datastore.DataStoreBlobStore;
+import org.apache.jackrabbit.oak.plugins.index.CompositeIndexEditorProvider;
 import org.apache.jackrabbit.oak.plugins.index.IndexConstants;
+import org.apache.jackrabbit.oak.plugins.index.IndexUpdateProvider;
+import org.apache.jackrabbit.oak.plugins.index.IndexEditorProvider;
 import org.apache.jackrabbit.oak.plugins.index.IndexUtils;
+import org.apache.jackrabbit.oak.plugins.index.counter.NodeCounterEditorProvider;
+import org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexEditorProvider;
+import org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexProvider;
 import org.apache.jackrabbit.oak.plugins.index.property.PropertyIndexEditorProvider;
 import org.apache.jackrabbit.oak.segment.SegmentNodeStoreBuilders;
+import org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions;
 import org.apache.jackrabbit.oak.segment.file.FileStore;
 import org.apache.jackrabbit.oak.segment.file.FileStoreBuilder;
+import org.apache.jackrabbit.oak.segment.file.FileStoreGCMonitor;
 import org.apache.jackrabbit.oak.segment.file.InvalidFileStoreVersionException;
 import org.apache.jackrabbit.oak.spi.blob.BlobStore;
+import org.apache.jackrabbit.oak.spi.commit.CommitHook;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EditorHook;
+import org.apache.jackrabbit.oak.spi.commit.Observer;
 import org.apache.jackrabbit.oak.spi.lifecycle.RepositoryInitializer;
+import org.apache.jackrabbit.oak.spi.query.QueryIndexProvider;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.apache.jackrabbit.oak.spi.state.NodeStore;
+import org.apache.jackrabbit.oak.stats.Clock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import to.adapt.from02oak.repository.initialisers.BunchOfColours;
+import to.adapt.from02oak.repository.initialisers.LucenePropertyIndex;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.jcr.Credentials;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
@@ -46,13 +67,17 @@ import javax.jcr.SimpleCredentials;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
+import java.util.Set;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.collect.ImmutableList.of;
 import static org.apache.jackrabbit.JcrConstants.JCR_PRIMARYTYPE;
 import static org.apache.jackrabbit.oak.api.Type.NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.ASYNC_PROPERTY_NAME;
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NODE_TYPE;
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.PROPERTY_NAMES;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.REINDEX_PROPERTY_NAME;
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.TYPE_PROPERTY_NAME;
 
 /**
@@ -63,68 +88,140 @@ import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.TYPE_PROPER
 public class Repository implements Closeable {
     private static final Logger LOG = LoggerFactory.getLogger(Repository.class);
     public final static Credentials ADMIN = new SimpleCredentials("admin", "admin".toCharArray());
+    public static final String COLOUR_INDEX = "colour";
 
     /**
-     * path to the repository root on disk
-     */
-    private static final String REPO_PATH = "repository";
-
-    /**
-     * path to the location on disk for the segment store
-     */
-    private static final String SEGMENT_PATH = REPO_PATH + "/segment-tar";
-
-    /**
-     * path for the location on disk for the {@link org.apache.jackrabbit.oak.spi.blob.BlobStore}
+     * static instance of an initialised repository
      */
-    private static final String DS_PATH = REPO_PATH + "/datastore";
+    private static Repository repo;
 
     /**
-     * static instance of an initialised repository
+     * configuration used when lazily initialising {@link #repo}
      */
-    private static Repository repo;
+    private static RepositoryConfig defaultConfig = new RepositoryConfig();
 
+    private final RepositoryConfig config;
     private NodeStore store;
+    private CommitHook commitHook;
     private FileStore fileStore;
+    private FileDataStore dataStore;
+    private RevisionGC revisionGC;
+    private SegmentStoreStats segmentStoreStats;
+    private BlobGC blobGC;
+    private AsyncIndexer asyncIndexer;
+    private LuceneIndexProvider luceneProvider;
     private javax.jcr.Repository jcrRepo;
+    private SessionPool sessionPool;
+    private ColourCache colourCache;
+    private Reindexer reindexer;
+    private Checkpoints checkpoints;
+    private final ThreadLocal<SessionGroup> group = new ThreadLocal<>();
 
-    Repository() throws IOException {
+    Repository(@Nonnull RepositoryConfig config) throws IOException {
+        this.config = checkNotNull(config);
         initialiseRepo(initialiseSegmentStore());
     }
 
     Repository(@Nonnull NodeStore store) {
+        this.config = new RepositoryConfig();
         initialiseRepo(store);
     }
 
     private void initialiseRepo(@Nonnull NodeStore s) {
         this.store = checkNotNull(s);
         LOG.debug("NodeStore initialised. {}", store);
+        checkpoints = new Checkpoints(store, fileStore);
 
         LOG.debug("Initialising Jcr Content Repository");
         Jcr jcr = new Jcr(store);
 
         // initialising property index - http://jackrabbit.apache.org/oak/docs/query/property-index.html
-        jcr.with(new PropertyIndexEditorProvider());
+        PropertyIndexEditorProvider propertyIndex = new PropertyIndexEditorProvider();
+        jcr.with(propertyIndex);
+        commitHook = new EditorHook(new IndexUpdateProvider(propertyIndex));
+        reindexer = new Reindexer(store, propertyIndex);
+        Set<String> asyncIndexes = config.getAsyncIndexes();
         jcr.with(new RepositoryInitializer() {
             @Override
             public void initialize(@Nonnull NodeBuilder builder) {
-                NodeBuilder index = builder.getChildNode("oak:index").getChildNode("colour");
-                if (index.exists()) {
-                    return;
-                }
+                NodeBuilder index = builder.getChildNode("oak:index").getChildNode(COLOUR_INDEX);
+                if (!index.exists()) {
+                    LOG.debug("Property Index not found defining `colour`");
 
-                LOG.debug("Property Index not found defining `colour`");
+                    index = IndexUtils.getOrCreateOakIndex(builder);
+                    IndexUtils.createIndexDefinition(index, COLOUR_INDEX, true, false, of("colour"), null);
+                }
 
-                index = IndexUtils.getOrCreateOakIndex(builder);
-                IndexUtils.createIndexDefinition(index, "colour", true, false, of("colour"), null);
+                configureAsync(builder.getChildNode("oak:index"), asyncIndexes);
             }
         });
 
+        // Lucene property index - http://jackrabbit.apache.org/oak/docs/query/lucene.html
+        Set<String> luceneProperties = config.getLuceneProperties();
+        if (!luceneProperties.isEmpty()) {
+            luceneProvider = new LuceneIndexProvider();
+            jcr.with((QueryIndexProvider) luceneProvider);
+            jcr.with((Observer) luceneProvider);
+            jcr.with(new LucenePropertyIndex(luceneProperties, AsyncIndexer.LANE));
+        }
+
         // initialising a bunch of nodes
         jcr.with(new BunchOfColours());
 
         jcrRepo = jcr.createRepository();
         LOG.debug("Jcr Content Repository initialised. {}", jcrRepo);
+        // an index build stopped by the previous shutdown
+        reindexer.resume();
+
+        sessionPool = new SessionPool(jcrRepo, ADMIN, config.getSessionPoolSize());
+        try {
+            colourCache = new ColourCache(jcrRepo, ADMIN);
+        } catch (RepositoryException e) {
+            LOG.error("Unable to start the colour cache. Queries will not be cached.", e);
+        }
+
+        if (!asyncIndexes.isEmpty() || luceneProvider != null) {
+            // async indexes are skipped by the commit hooks and updated in background
+            List<IndexEditorProvider> editors = Lists.newArrayList(
+                    new PropertyIndexEditorProvider(), new NodeCounterEditorProvider());
+            if (luceneProvider != null) {
+                editors.add(new LuceneIndexEditorProvider());
+            }
+            asyncIndexer = new AsyncIndexer(store, CompositeIndexEditorProvider.compose(editors),
+                    config.getAsyncInterval());
+            if (colourCache != null) {
+                // the colour changes are notified before an async index catches up with them: results cached
+                // meanwhile are stale
+                asyncIndexer.onProgress(colourCache::invalidateAll);
+            }
+            asyncIndexer.start();
+        }
+    }
+
+    /**
+     * flag the listed index definitions as async. The {@code colour} index is turned back to synchronous when
+     * not listed. A reindex is requested whenever the mode of an index changes.
+     */
+    private static void configureAsync(@Nonnull NodeBuilder oakIndex, @Nonnull Set<String> async) {
+        for (String name : async) {
+            NodeBuilder def = oakIndex.getChildNode(name);
+            if (!def.exists()) {
+                LOG.warn("Index definition `{}` not found. Cannot make it async.", name);
+                continue;
+            }
+            if (!AsyncIndexer.LANE.equals(def.getString(ASYNC_PROPERTY_NAME))) {
+                LOG.info("Switching index `{}` to async", name);
+                def.setProperty(ASYNC_PROPERTY_NAME, AsyncIndexer.LANE);
+                def.setProperty(REINDEX_PROPERTY_NAME, true);
+            }
+        }
+
+        NodeBuilder colour = oakIndex.getChildNode(COLOUR_INDEX);
+        if (!async.contains(COLOUR_INDEX) && colour.hasProperty(ASYNC_PROPERTY_NAME)) {
+            LOG.info("Switching index `{}` to synchronous", COLOUR_INDEX);
+            colour.removeProperty(ASYNC_PROPERTY_NAME);
+            colour.setProperty(REINDEX_PROPERTY_NAME, true);
+        }
     }
 
     /**
@@ -135,30 +232,66 @@ public class Repository implements Closeable {
      */
     private NodeStore initialiseSegmentStore() throws IOException {
         // initialising repo root on FS
-        File f = new File(REPO_PATH);
+        File f = new File(config.getRepositoryPath());
         if (!f.exists()) {
             f.mkdir();
         }
 
         // initialising datastore on FS
         BlobStore blob;
-        File blobDir = new File(DS_PATH);
+        File blobDir = new File(config.getDataStorePath());
         if (!blobDir.exists()) {
             blobDir.mkdir();
         }
-        FileDataStore fileDataStore = new FileDataStore();
-        fileDataStore.setPath(blobDir.getAbsolutePath());
-        fileDataStore.init(null);
-        blob = new DataStoreBlobStore(fileDataStore);
+        if (config.getBlobCacheSize() != null) {
+            dataStore = new CachingFileDataStore(config.getBlobCacheSize() * 1024L * 1024,
+                    config.getBlobCacheMaxRecord() * 1024);
+        } else {
+            dataStore = new FileDataStore();
+        }
+        dataStore.setPath(blobDir.getAbsolutePath());
+        dataStore.init(null);
+        blob = new DataStoreBlobStore(dataStore);
 
         LOG.debug("Initalsing the NodeStore");
-        FileStoreBuilder fileBuilder = FileStoreBuilder.fileStoreBuilder(new File(SEGMENT_PATH)).withBlobStore(blob);
+        FileStoreBuilder fileBuilder = FileStoreBuilder.fileStoreBuilder(new File(config.getSegmentPath())).withBlobStore(blob);
+        if (config.getSegmentCacheSize() != null) {
+            fileBuilder.withSegmentCacheSize(config.getSegmentCacheSize());
+        }
+        if (config.getStringCacheSize() != null) {
+            fileBuilder.withStringCacheSize(config.getStringCacheSize());
+        }
+        if (config.getTemplateCacheSize() != null) {
+            fileBuilder.withTemplateCacheSize(config.getTemplateCacheSize());
+        }
+        if (config.getMaxTarSize() != null) {
+            fileBuilder.withMaxFileSize(config.getMaxTarSize());
+        }
+        if (config.getMemoryMapping() != null) {
+            fileBuilder.withMemoryMapping(config.getMemoryMapping());
+        } else {
+            fileBuilder.withDefaultMemoryMapping();
+        }
+        // compaction must not block the writers by default. See RevisionGC
+        SegmentGCOptions gcOptions = SegmentGCOptions.defaultGCOptions().setForceAfterFail(false);
+        FileStoreGCMonitor gcMonitor = new FileStoreGCMonitor(Clock.SIMPLE);
+        fileBuilder.withGCOptions(gcOptions).withGCMonitor(gcMonitor);
+        segmentStoreStats = new SegmentStoreStats(new File(config.getSegmentPath()));
+        fileBuilder.withStatisticsProvider(segmentStoreStats.getStatisticsProvider());
+
+        LOG.info("Starting the repository with {}", config);
+        LOG.info("Effective segment store configuration {}", fileBuilder);
+
         try {
             fileStore = fileBuilder.build();
         } catch (InvalidFileStoreVersionException e) {
+            segmentStoreStats.close();
             LOG.error("Error initialising the repository", e);
             throw new IOException(e);
         }
+        segmentStoreStats.start(fileStore);
+        revisionGC = new RevisionGC(fileStore, gcOptions, gcMonitor);
+        blobGC = new BlobGC(fileStore, dataStore);
         return SegmentNodeStoreBuilders.builder(fileStore).build();
     }
 
@@ -172,7 +305,7 @@ public class Repository implements Closeable {
     public static synchronized Repository getRepo() {
         if (repo == null) {
             try {
-                repo = new Repository();
+                repo = new Repository(defaultConfig);
             } catch (IOException e) {
                 LOG.error("Unable to instantiate the repository.", e);
             }
@@ -180,6 +313,27 @@ public class Repository implements Closeable {
         return repo;
     }
 
+    /**
+     * set the configuration used for initialising the repository. Has to be called before the first
+     * {@link #getRepo()}.
+     *
+     * @param config the configuration. Cannot be null.
+     * @throws IllegalStateException if the repository has already been initialised
+     */
+    public static synchronized void configure(@Nonnull RepositoryConfig config) {
+        if (repo != null) {
+            throw new IllegalStateException("Repository already initialised. Configure it before first use.");
+        }
+        defaultConfig = checkNotNull(config);
+    }
+
+    /**
+     * @return the configuration this repository has been started with
+     */
+    public RepositoryConfig getConfig() {
+        return config;
+    }
+
     /**
      * used for testing only. Avoid production usage
      * @param r
@@ -190,6 +344,28 @@ public class Repository implements Closeable {
 
     @Override
     public void close() throws IOException {
+        if (colourCache != null) {
+            colourCache.close();
+        }
+        if (sessionPool != null) {
+            LOG.debug("Closing down the session pool. {}", sessionPool);
+            sessionPool.close();
+        }
+        if (reindexer != null) {
+            reindexer.close();
+        }
+        if (asyncIndexer != null) {
+            asyncIndexer.close();
+        }
+        if (luceneProvider != null) {
+            luceneProvider.close();
+        }
+        if (revisionGC != null) {
+            revisionGC.close();
+        }
+        if (segmentStoreStats != null) {
+            segmentStoreStats.close();
+        }
         if (fileStore != null) {
             LOG.debug("Closing down underlying FileStore. {}", fileStore);
             fileStore.close();
@@ -203,4 +379,267 @@ public class Repository implements Closeable {
     public Session login(@Nonnull Credentials credentials) throws RepositoryException {
         return jcrRepo.login(credentials);
     }
+
+    /**
+     * @return the underlying {@link NodeStore} for bulk operations bypassing the JCR layer.
+     */
+    public NodeStore getNodeStore() {
+        return store;
+    }
+
+    /**
+     * @return the online revision garbage collector. {@code null} if the repository is not backed by a segment
+     * store.
+     */
+    @CheckForNull
+    public RevisionGC getRevisionGC() {
+        return revisionGC;
+    }
+
+    /**
+     * @return the garbage collector of the data store binaries. {@code null} if the repository is not backed by a
+     * segment store.
+     */
+    @CheckForNull
+    public BlobGC getBlobGC() {
+        return blobGC;
+    }
+
+    /**
+     * @return the heap cache of the small binaries. {@code null} if not configured.
+     */
+    @CheckForNull
+    public CachingFileDataStore getBlobCache() {
+        return dataStore instanceof CachingFileDataStore ? (CachingFileDataStore) dataStore : null;
+    }
+
+    /**
+     * @return size, cache and write statistics of the segment store. {@code null} if the repository is not
+     * backed by a segment store.
+     */
+    @CheckForNull
+    public SegmentStoreStats getSegmentStoreStats() {
+        return segmentStoreStats;
+    }
+
+    /**
+     * @return the background updater of the async indexes. {@code null} if no index is configured as async.
+     */
+    @CheckForNull
+    public AsyncIndexer getAsyncIndexer() {
+        return asyncIndexer;
+    }
+
+    /**
+     * locate the file backing a blob, for reading it without going through the blob store streams.
+     *
+     * @param blob the blob to look up. Cannot be null.
+     * @return the file in the {@link FileDataStore}. {@code null} if the blob is inlined in the segments or in
+     * its id, or if the repository has no file data store.
+     */
+    @CheckForNull
+    public File getBlobFile(@Nonnull Blob blob) {
+        String id = checkNotNull(blob).getContentIdentity();
+        if (dataStore == null || id == null) {
+            return null;
+        }
+        File f = getRecordFile(dataStore, getRecordId(id));
+        return f != null && f.isFile() ? f : null;
+    }
+
+    /**
+     * @param recordId the SHA-1 of the content, in hex, as used by the {@link FileDataStore}
+     * @return {@code true} if the data store already holds a record with the provided id
+     */
+    public boolean hasRecord(@Nonnull String recordId) {
+        if (dataStore == null) {
+            return false;
+        }
+        File f = getRecordFile(dataStore, checkNotNull(recordId));
+        return f != null && f.isFile();
+    }
+
+    /**
+     * @return the data store record identifier of a blob id. The DataStoreBlobStore appends the length to it.
+     */
+    static String getRecordId(@Nonnull String blobId) {
+        int hash = blobId.indexOf('#');
+        return hash < 0 ? blobId : blobId.substring(0, hash);
+    }
+
+    /**
+     * @return where the {@link FileDataStore} keeps a record, whether it exists or not. {@code null} if the
+     * identifier is not a valid one.
+     */
+    @CheckForNull
+    static File getRecordFile(@Nonnull FileDataStore dataStore, @Nonnull String recordId) {
+        if (recordId.length() < 6) {
+            return null;
+        }
+        // same layout as FileDataStore: three levels of two characters each
+        return new File(dataStore.getPath(), recordId.substring(0, 2) + "/" + recordId.substring(2, 4) + "/"
+                + recordId.substring(4, 6) + "/" + recordId);
+    }
+
+    /**
+     * write the pending segments to the tar files, for example before measuring the size on disk. No-op if the
+     * repository is not backed by a segment store.
+     */
+    public void flush() throws IOException {
+        if (fileStore != null) {
+            fileStore.flush();
+        }
+    }
+
+    /**
+     * merge the changes directly into the {@link NodeStore}, keeping the synchronous indexes up to date. The
+     * async ones are updated later by the {@link AsyncIndexer}.
+     *
+     * No JCR validation (node types, access control, versioning) is performed. It's up to the caller to
+     * provide consistent content.
+     *
+     * @param builder a builder obtained from {@code getNodeStore().getRoot().builder()}. Cannot be null.
+     * @return the new root state
+     * @throws CommitFailedException in case of conflicts or index violations
+     */
+    public NodeState merge(@Nonnull NodeBuilder builder) throws CommitFailedException {
+        return store.merge(checkNotNull(builder), commitHook, CommitInfo.EMPTY);
+    }
+
+    /**
+     * borrow an admin session from the pool. Cheaper than {@link #login(Credentials)} as the session is
+     * reused across calls.
+     *
+     * <strong>Remember to {@link #returnSession(Session)} once done</strong>
+     *
+     * @return a refreshed admin session. Within a group, refreshed keeping its pending operations.
+     * @throws RepositoryException in case no session could be provided
+     */
+    @Nonnull
+    public Session borrowSession() throws RepositoryException {
+        SessionGroup g = group.get();
+        if (g != null) {
+            // keeping the pending operations, see what has been merged straight on the NodeStore meanwhile
+            g.getSession().refresh(true);
+            return g.getSession();
+        }
+        return sessionPool.borrow();
+    }
+
+    /**
+     * return a session previously obtained with {@link #borrowSession()}. Pending changes are discarded,
+     * unless the session belongs to a group. See {@link #beginGroup(int)}.
+     *
+     * @param session the session to return. {@code null} is ignored.
+     */
+    public void returnSession(@Nullable Session session) {
+        SessionGroup g = group.get();
+        if (g != null && g.getSession() == session) {
+            return;
+        }
+        sessionPool.giveBack(session);
+    }
+
+    /**
+     * persist the changes made with a borrowed session. Within a group the save is deferred till the group is
+     * full. See {@link #beginGroup(int)}.
+     *
+     * @param session the session to save. Cannot be null.
+     * @throws RepositoryException in case of errors while saving
+     */
+    public void save(@Nonnull Session session) throws RepositoryException {
+        checkNotNull(session);
+        SessionGroup g = group.get();
+        if (g != null && g.getSession() == session) {
+            g.operation();
+        } else {
+            session.save();
+        }
+    }
+
+    /**
+     * start grouping operations on the current thread: till {@link #endGroup()} every {@link #borrowSession()}
+     * returns the same session and {@link #save(Session)} persists only every {@code saveEvery} calls.
+     *
+     * If a grouped save fails, all the operations since the previous save are lost.
+     *
+     * @param saveEvery how many operations to save in one go. Must be positive.
+     * @throws RepositoryException if no session could be borrowed
+     * @throws IllegalStateException if a group is already open on the current thread
+     */
+    public void beginGroup(int saveEvery) throws RepositoryException {
+        if (group.get() != null) {
+            throw new IllegalStateException("A group is already open on the current thread");
+        }
+        Session s = sessionPool.borrow();
+        try {
+            group.set(new SessionGroup(s, saveEvery));
+        } catch (IllegalArgumentException e) {
+            sessionPool.giveBack(s);
+            throw e;
+        }
+    }
+
+    /**
+     * save any pending operation and close the group opened with {@link #beginGroup(int)}. No-op if no group is
+     * open on the current thread.
+     *
+     * @return the amount of operations persisted by the group
+     * @throws RepositoryException if the final save failed
+     */
+    public long endGroup() throws RepositoryException {
+        SessionGroup g = group.get();
+        if (g == null) {
+            return 0;
+        }
+        group.remove();
+        try {
+            g.flush();
+            return g.getSaved();
+        } finally {
+            sessionPool.giveBack(g.getSession());
+        }
+    }
+
+    /**
+     * save the pending operations of the group open on the current thread, keeping it open. No-op if no group
+     * is open. For operations bypassing the group, which would not see its unsaved changes otherwise.
+     *
+     * @throws RepositoryException if the save failed
+     */
+    public void flushGroup() throws RepositoryException {
+        SessionGroup g = group.get();
+        if (g != null) {
+            g.flush();
+        }
+    }
+
+    /**
+     * @return the builder of new property indexes
+     */
+    public Reindexer getReindexer() {
+        return reindexer;
+    }
+
+    /**
+     * @return checkpoints of the {@code NodeStore} and diff against them
+     */
+    public Checkpoints getCheckpoints() {
+        return checkpoints;
+    }
+
+    /**
+     * @return the cache of the colour query results. {@code null} if it could not be started.
+     */
+    @CheckForNull
+    public ColourCache getColourCache() {
+        return colourCache;
+    }
+
+    /**
+     * @return the pool backing {@link #borrowSession()}. Mostly for metrics.
+     */
+    public SessionPool getSessionPool() {
+        return sessionPool;
+    }
 }
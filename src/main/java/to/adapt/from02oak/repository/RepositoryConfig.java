@@ -0,0 +1,321 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.repository;
+
+import com.google.common.base.Splitter;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.ImmutableSet.copyOf;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Startup configuration of the {@link Repository}: where it lives on disk and how the segment store is tuned.
+ *
+ * Sizes are in MB. A {@code null} value means "use the segment store default".
+ */
+public class RepositoryConfig {
+    public static final String REPOSITORY_PATH = "repository.path";
+    public static final String SEGMENT_CACHE_SIZE = "segment.cache.size";
+    public static final String STRING_CACHE_SIZE = "string.cache.size";
+    public static final String TEMPLATE_CACHE_SIZE = "template.cache.size";
+    public static final String MEMORY_MAPPING = "memory.mapping";
+    public static final String MAX_TAR_SIZE = "tar.max.size";
+    public static final String SESSION_POOL_SIZE = "session.pool.size";
+    public static final String ASYNC_INDEXES = "async.indexes";
+    public static final String ASYNC_INTERVAL = "async.interval";
+    public static final String LUCENE_PROPERTIES = "lucene.properties";
+    public static final String BLOB_CACHE_SIZE = "blob.cache.size";
+    public static final String BLOB_CACHE_MAX_RECORD = "blob.cache.max.record";
+
+    private String repositoryPath = "repository";
+    private Integer segmentCacheSize;
+    private Integer stringCacheSize;
+    private Integer templateCacheSize;
+    private Boolean memoryMapping;
+    private Integer maxTarSize;
+    private int sessionPoolSize = 8;
+    private Set<String> asyncIndexes = Collections.emptySet();
+    private int asyncInterval = 5;
+    private Set<String> luceneProperties = Collections.emptySet();
+    private Integer blobCacheSize;
+    private int blobCacheMaxRecord = 256;
+
+    /**
+     * load the configuration from a properties file. Missing keys keep their defaults.
+     *
+     * @param file the properties file. Cannot be null.
+     * @return the loaded configuration
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException in case of non valid values
+     */
+    public static RepositoryConfig load(@Nonnull File file) throws IOException {
+        Properties p = new Properties();
+        try (InputStream in = Files.newInputStream(checkNotNull(file).toPath())) {
+            p.load(in);
+        }
+        return fromProperties(p);
+    }
+
+    /**
+     * @param p the properties to read from. Cannot be null.
+     * @return the configuration. Missing keys keep their defaults.
+     * @throws IllegalArgumentException in case of non valid values
+     */
+    public static RepositoryConfig fromProperties(@Nonnull Properties p) {
+        checkNotNull(p);
+        RepositoryConfig c = new RepositoryConfig();
+        if (p.containsKey(REPOSITORY_PATH)) {
+            c.setRepositoryPath(p.getProperty(REPOSITORY_PATH).trim());
+        }
+        c.setSegmentCacheSize(integer(p, SEGMENT_CACHE_SIZE));
+        c.setStringCacheSize(integer(p, STRING_CACHE_SIZE));
+        c.setTemplateCacheSize(integer(p, TEMPLATE_CACHE_SIZE));
+        c.setMaxTarSize(integer(p, MAX_TAR_SIZE));
+        if (p.containsKey(MEMORY_MAPPING)) {
+            c.setMemoryMapping(Boolean.valueOf(p.getProperty(MEMORY_MAPPING).trim()));
+        }
+        Integer poolSize = integer(p, SESSION_POOL_SIZE);
+        if (poolSize != null) {
+            c.setSessionPoolSize(poolSize);
+        }
+        if (p.containsKey(ASYNC_INDEXES)) {
+            c.setAsyncIndexes(Splitter.on(',').trimResults().omitEmptyStrings().split(p.getProperty(ASYNC_INDEXES)));
+        }
+        if (p.containsKey(LUCENE_PROPERTIES)) {
+            c.setLuceneProperties(Splitter.on(',').trimResults().omitEmptyStrings().split(p.getProperty(LUCENE_PROPERTIES)));
+        }
+        Integer interval = integer(p, ASYNC_INTERVAL);
+        if (interval != null) {
+            c.setAsyncInterval(interval);
+        }
+        c.setBlobCacheSize(integer(p, BLOB_CACHE_SIZE));
+        Integer maxRecord = integer(p, BLOB_CACHE_MAX_RECORD);
+        if (maxRecord != null) {
+            c.setBlobCacheMaxRecord(maxRecord);
+        }
+        return c;
+    }
+
+    @CheckForNull
+    private static Integer integer(@Nonnull Properties p, @Nonnull String key) {
+        String v = p.getProperty(key);
+        if (v == null) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(v.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("Non valid value for %s: %s", key, v), e);
+        }
+    }
+
+    /**
+     * @return the root of the repository on disk
+     */
+    public String getRepositoryPath() {
+        return repositoryPath;
+    }
+
+    public RepositoryConfig setRepositoryPath(@Nonnull String repositoryPath) {
+        this.repositoryPath = checkNotNull(repositoryPath);
+        return this;
+    }
+
+    /**
+     * @return the location on disk of the segment store
+     */
+    public String getSegmentPath() {
+        return repositoryPath + "/segment-tar";
+    }
+
+    /**
+     * @return the location on disk of the {@link org.apache.jackrabbit.oak.spi.blob.BlobStore}
+     */
+    public String getDataStorePath() {
+        return repositoryPath + "/datastore";
+    }
+
+    @CheckForNull
+    public Integer getSegmentCacheSize() {
+        return segmentCacheSize;
+    }
+
+    public RepositoryConfig setSegmentCacheSize(@Nullable Integer segmentCacheSize) {
+        this.segmentCacheSize = positive(SEGMENT_CACHE_SIZE, segmentCacheSize);
+        return this;
+    }
+
+    @CheckForNull
+    public Integer getStringCacheSize() {
+        return stringCacheSize;
+    }
+
+    public RepositoryConfig setStringCacheSize(@Nullable Integer stringCacheSize) {
+        this.stringCacheSize = positive(STRING_CACHE_SIZE, stringCacheSize);
+        return this;
+    }
+
+    @CheckForNull
+    public Integer getTemplateCacheSize() {
+        return templateCacheSize;
+    }
+
+    public RepositoryConfig setTemplateCacheSize(@Nullable Integer templateCacheSize) {
+        this.templateCacheSize = positive(TEMPLATE_CACHE_SIZE, templateCacheSize);
+        return this;
+    }
+
+    /**
+     * @return {@code true} for memory mapped tar files, {@code false} for heap buffers, {@code null} to let the
+     * segment store decide based on the JVM architecture.
+     */
+    @CheckForNull
+    public Boolean getMemoryMapping() {
+        return memoryMapping;
+    }
+
+    public RepositoryConfig setMemoryMapping(@Nullable Boolean memoryMapping) {
+        this.memoryMapping = memoryMapping;
+        return this;
+    }
+
+    @CheckForNull
+    public Integer getMaxTarSize() {
+        return maxTarSize;
+    }
+
+    public RepositoryConfig setMaxTarSize(@Nullable Integer maxTarSize) {
+        this.maxTarSize = positive(MAX_TAR_SIZE, maxTarSize);
+        return this;
+    }
+
+    public int getSessionPoolSize() {
+        return sessionPoolSize;
+    }
+
+    public RepositoryConfig setSessionPoolSize(int sessionPoolSize) {
+        checkArgument(sessionPoolSize > 0, "%s must be positive. %s", SESSION_POOL_SIZE, sessionPoolSize);
+        this.sessionPoolSize = sessionPoolSize;
+        return this;
+    }
+
+    /**
+     * @return the names of the indexes under {@code /oak:index} to be updated asynchronously, in background,
+     * rather than within each commit.
+     */
+    public Set<String> getAsyncIndexes() {
+        return asyncIndexes;
+    }
+
+    public RepositoryConfig setAsyncIndexes(@Nonnull Iterable<String> asyncIndexes) {
+        this.asyncIndexes = copyOf(checkNotNull(asyncIndexes));
+        return this;
+    }
+
+    /**
+     * @return seconds between two runs of the async indexer
+     */
+    public int getAsyncInterval() {
+        return asyncInterval;
+    }
+
+    public RepositoryConfig setAsyncInterval(int asyncInterval) {
+        checkArgument(asyncInterval > 0, "%s must be positive. %s", ASYNC_INTERVAL, asyncInterval);
+        this.asyncInterval = asyncInterval;
+        return this;
+    }
+
+    /**
+     * @return the properties indexed by the Lucene property index. Lucene is not used if empty.
+     */
+    public Set<String> getLuceneProperties() {
+        return luceneProperties;
+    }
+
+    public RepositoryConfig setLuceneProperties(@Nonnull Iterable<String> luceneProperties) {
+        this.luceneProperties = copyOf(checkNotNull(luceneProperties));
+        return this;
+    }
+
+    /**
+     * @return MB of heap for caching the small binaries read from the data store. {@code null} for no cache.
+     */
+    @CheckForNull
+    public Integer getBlobCacheSize() {
+        return blobCacheSize;
+    }
+
+    public RepositoryConfig setBlobCacheSize(@Nullable Integer blobCacheSize) {
+        this.blobCacheSize = positive(BLOB_CACHE_SIZE, blobCacheSize);
+        return this;
+    }
+
+    /**
+     * @return KB of the biggest binary the blob cache keeps
+     */
+    public int getBlobCacheMaxRecord() {
+        return blobCacheMaxRecord;
+    }
+
+    public RepositoryConfig setBlobCacheMaxRecord(int blobCacheMaxRecord) {
+        checkArgument(blobCacheMaxRecord > 0, "%s must be positive. %s", BLOB_CACHE_MAX_RECORD, blobCacheMaxRecord);
+        this.blobCacheMaxRecord = blobCacheMaxRecord;
+        return this;
+    }
+
+    @CheckForNull
+    private static Integer positive(@Nonnull String key, @Nullable Integer value) {
+        checkArgument(value == null || value > 0, "%s must be positive. %s", key, value);
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RepositoryConfig{%s=%s, %s=%s, %s=%s, %s=%s, %s=%s, %s=%s, %s=%d, %s=%s, %s=%d, %s=%s, %s=%s, %s=%d}",
+                REPOSITORY_PATH, repositoryPath,
+                SEGMENT_CACHE_SIZE, orDefault(segmentCacheSize),
+                STRING_CACHE_SIZE, orDefault(stringCacheSize),
+                TEMPLATE_CACHE_SIZE, orDefault(templateCacheSize),
+                MEMORY_MAPPING, orDefault(memoryMapping),
+                MAX_TAR_SIZE, orDefault(maxTarSize),
+                SESSION_POOL_SIZE, sessionPoolSize,
+                ASYNC_INDEXES, asyncIndexes,
+                ASYNC_INTERVAL, asyncInterval,
+                LUCENE_PROPERTIES, luceneProperties,
+                BLOB_CACHE_SIZE, blobCacheSize == null ? "disabled" : blobCacheSize,
+                BLOB_CACHE_MAX_RECORD, blobCacheMaxRecord);
+    }
+
+    private static String orDefault(@Nullable Object o) {
+        return o == null ? "default" : o.toString();
+    }
+}
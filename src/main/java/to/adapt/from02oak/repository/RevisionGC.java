@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.repository;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions;
+import org.apache.jackrabbit.oak.segment.file.FileStore;
+import org.apache.jackrabbit.oak.segment.file.FileStoreGCMonitor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Runs online revision garbage collection (estimation, compaction and cleanup) of the {@link FileStore} in the
+ * background.
+ *
+ * Only one run at a time is allowed. The run happens on a low priority thread and compaction never forces its
+ * way by blocking the writers, unless asked to, so that foreground commands keep working.
+ */
+public class RevisionGC implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(RevisionGC.class);
+
+    private final FileStore fileStore;
+    private final SegmentGCOptions options;
+    private final FileStoreGCMonitor monitor;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+            .setNameFormat("revision-gc-%d")
+            .setDaemon(true)
+            .setPriority(Thread.MIN_PRIORITY)
+            .build());
+
+    private volatile boolean running;
+    private volatile boolean cancelled;
+    private volatile Stopwatch watch;
+    private volatile long sizeBefore = -1;
+    private volatile long sizeAfter = -1;
+    private volatile String outcome = "never run";
+
+    RevisionGC(@Nonnull FileStore fileStore, @Nonnull SegmentGCOptions options, @Nonnull FileStoreGCMonitor monitor) {
+        this.fileStore = checkNotNull(fileStore);
+        this.options = checkNotNull(options);
+        this.monitor = checkNotNull(monitor);
+    }
+
+    /**
+     * start a new run in the background.
+     *
+     * @param force if {@code true} skip the estimation and always compact and cleanup.
+     * @return {@code false} if a run is already in progress.
+     */
+    public synchronized boolean start(boolean force) {
+        if (running) {
+            return false;
+        }
+
+        running = true;
+        cancelled = false;
+        options.setPaused(false);
+        sizeBefore = fileStore.getStats().getApproximateSize();
+        sizeAfter = -1;
+        watch = Stopwatch.createStarted();
+        outcome = "running";
+
+        executor.submit(() -> {
+            try {
+                if (force) {
+                    // compact() doesn't look at the paused flag: a cancellation can only skip the cleanup
+                    if (fileStore.compact() && !cancelled) {
+                        List<File> pending = fileStore.cleanup();
+                        LOG.debug("{} tar files pending removal", pending.size());
+                        outcome = "completed";
+                    } else {
+                        outcome = cancelled ? "cancelled before cleanup" : "completed";
+                    }
+                } else {
+                    // estimation, compaction and cleanup. The paused flag is only checked before the
+                    // estimation and before the compaction, a compaction under way always runs to the end
+                    fileStore.maybeCompact(true);
+                    outcome = cancelled ? "completed, cancellation requested" : "completed";
+                }
+            } catch (IOException | RuntimeException e) {
+                LOG.error("Error while running revision gc", e);
+                outcome = "failed: " + e.getMessage();
+            } finally {
+                watch.stop();
+                sizeAfter = fileStore.getStats().getApproximateSize();
+                options.setPaused(false);
+                running = false;
+                LOG.info("Revision gc {} in {}. Size before {} bytes, after {} bytes", outcome, watch, sizeBefore, sizeAfter);
+            }
+        });
+
+        return true;
+    }
+
+    /**
+     * request the cancellation of the current run. Best effort: the segment store only checks it between the
+     * gc phases, so a compaction already under way still runs to the end.
+     *
+     * @return {@code false} if nothing is running
+     */
+    public boolean cancel() {
+        if (!running) {
+            return false;
+        }
+        cancelled = true;
+        options.setPaused(true);
+        return true;
+    }
+
+    /**
+     * @param seconds how long compaction may block writers when committing the compacted head
+     */
+    public void setLockWaitTime(int seconds) {
+        options.setLockWaitTime(seconds);
+    }
+
+    /**
+     * @param retries how many times compaction retries to catch up with concurrent commits
+     */
+    public void setRetryCount(int retries) {
+        options.setRetryCount(retries);
+    }
+
+    /**
+     * @param force if {@code true} after the retries compaction will block writers to complete
+     */
+    public void setForceAfterFail(boolean force) {
+        options.setForceAfterFail(force);
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @return {@code running}, {@code completed}, {@code completed, cancellation requested},
+     *         {@code cancelled before cleanup}, {@code failed: reason} or {@code never run}
+     */
+    public String getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * @return the last message reported by the segment store for the current or last run
+     */
+    public String getProgress() {
+        return monitor.getStatus();
+    }
+
+    /**
+     * @return time spent by the current or last run in milliseconds. {@code -1} if never run.
+     */
+    public long getElapsed() {
+        Stopwatch w = watch;
+        return w == null ? -1 : w.elapsed(TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return approximate repository size in bytes when the current or last run started. {@code -1} if never run.
+     */
+    public long getSizeBefore() {
+        return sizeBefore;
+    }
+
+    /**
+     * @return approximate repository size in bytes once the last run completed. {@code -1} if not available yet.
+     */
+    public long getSizeAfter() {
+        return sizeAfter;
+    }
+
+    /**
+     * @return the current approximate repository size in bytes
+     */
+    public long getCurrentSize() {
+        return fileStore.getStats().getApproximateSize();
+    }
+
+    /**
+     * @return bytes reclaimed by the last cleanup as reported by the segment store
+     */
+    public long getLastReclaimed() {
+        return monitor.getLastReclaimedSize();
+    }
+
+    public SegmentGCOptions getOptions() {
+        return options;
+    }
+
+    @Override
+    public void close() {
+        cancel();
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                LOG.warn("Revision gc did not stop in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
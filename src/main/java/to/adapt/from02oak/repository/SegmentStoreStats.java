@@ -0,0 +1,265 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.repository;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.jackrabbit.api.stats.RepositoryStatistics;
+import org.apache.jackrabbit.oak.api.jmx.CacheStatsMBean;
+import org.apache.jackrabbit.oak.segment.file.FileStore;
+import org.apache.jackrabbit.oak.segment.file.FileStoreStats;
+import org.apache.jackrabbit.oak.segment.file.FileStoreStatsMBean;
+import org.apache.jackrabbit.oak.stats.CounterStats;
+import org.apache.jackrabbit.oak.stats.DefaultStatisticsProvider;
+import org.apache.jackrabbit.oak.stats.HistogramStats;
+import org.apache.jackrabbit.oak.stats.MeterStats;
+import org.apache.jackrabbit.oak.stats.StatisticsProvider;
+import org.apache.jackrabbit.oak.stats.StatsOptions;
+import org.apache.jackrabbit.oak.stats.TimerStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.io.Closeable;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static org.apache.jackrabbit.oak.commons.IOUtils.humanReadableByteCount;
+
+/**
+ * statistics of the segment store: size, tar files, cache hit rates and write throughput since start.
+ *
+ * The same figures are registered in the platform MBean server under {@link #DOMAIN}, for looking at them with
+ * JConsole or any JMX client.
+ *
+ * The segment store only feeds its counters to the {@link StatisticsProvider} it's built with, so this has to be
+ * created before the {@link FileStore}.
+ */
+public class SegmentStoreStats implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(SegmentStoreStats.class);
+    public static final String DOMAIN = "to.adapt.from02oak";
+
+    private final File directory;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("segment-stats-%d").setDaemon(true).build());
+    private final StatisticsProvider provider;
+    private final LongAdder written = new LongAdder();
+    private final List<ObjectName> registered = Lists.newArrayList();
+    private final long started = System.currentTimeMillis();
+    private FileStore fileStore;
+
+    /**
+     * @param directory where the tar files are. Cannot be null.
+     */
+    SegmentStoreStats(@Nonnull File directory) {
+        this.directory = checkNotNull(directory);
+        this.provider = new WriteCountingProvider(new DefaultStatisticsProvider(executor));
+    }
+
+    /**
+     * @return the provider to build the {@link FileStore} with
+     */
+    StatisticsProvider getStatisticsProvider() {
+        return provider;
+    }
+
+    /**
+     * start tracking the provided store and register the MBeans.
+     */
+    synchronized void start(@Nonnull FileStore fileStore) {
+        checkState(this.fileStore == null, "Already started");
+        this.fileStore = checkNotNull(fileStore);
+
+        register(FileStoreStatsMBean.TYPE, "FileStore statistics",
+                new StandardMBean(fileStore.getStats(), FileStoreStatsMBean.class, false));
+        getCaches().forEach((name, cache) -> register(CacheStatsMBean.TYPE, name + " cache", cache));
+    }
+
+    private void register(@Nonnull String type, @Nonnull String name, @Nonnull Object bean) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName on = new ObjectName(DOMAIN + ":type=" + ObjectName.quote(type)
+                    + ",name=" + ObjectName.quote(name));
+            server.registerMBean(bean, on);
+            registered.add(on);
+        } catch (JMException e) {
+            // most likely another repository in the same JVM. Statistics are still available in the console.
+            LOG.warn("Unable to register the MBean {}. {}", name, e.getMessage());
+        }
+    }
+
+    /**
+     * @return the size of the segment store as tracked by the store itself
+     */
+    public long getApproximateSize() {
+        return getFileStoreStats().getApproximateSize();
+    }
+
+    public int getTarFileCount() {
+        return getFileStoreStats().getTarFileCount();
+    }
+
+    /**
+     * @return the actual size of the tar files on disk, including the ones waiting for cleanup
+     */
+    public long getOnDiskSize() {
+        File[] tars = directory.listFiles((dir, name) -> name.endsWith(".tar"));
+        long size = 0;
+        if (tars != null) {
+            for (File f : tars) {
+                size += f.length();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return bytes of segments written since start
+     */
+    public long getWritten() {
+        return written.sum();
+    }
+
+    /**
+     * @return average bytes per second written since start
+     */
+    public double getWriteThroughput() {
+        long elapsed = Math.max(1, getUptime());
+        return getWritten() * 1000d / elapsed;
+    }
+
+    /**
+     * @return milliseconds since start
+     */
+    public long getUptime() {
+        return System.currentTimeMillis() - started;
+    }
+
+    /**
+     * @return the read caches of the segment store by name
+     */
+    public Map<String, CacheStatsMBean> getCaches() {
+        FileStore fs = getFileStore();
+        return ImmutableMap.of(
+                "segment", fs.getSegmentCacheStats(),
+                "string", fs.getStringCacheStats(),
+                "template", fs.getTemplateCacheStats());
+    }
+
+    private synchronized FileStore getFileStore() {
+        checkState(fileStore != null, "Not started");
+        return fileStore;
+    }
+
+    private FileStoreStats getFileStoreStats() {
+        return getFileStore().getStats();
+    }
+
+    @Override
+    public synchronized void close() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName on : registered) {
+            try {
+                server.unregisterMBean(on);
+            } catch (JMException e) {
+                LOG.debug("Unable to unregister the MBean {}", on, e);
+            }
+        }
+        registered.clear();
+        executor.shutdownNow();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SegmentStoreStats{size=%s, onDisk=%s, tarFiles=%d, written=%s}",
+                humanReadableByteCount(getApproximateSize()), humanReadableByteCount(getOnDiskSize()),
+                getTarFileCount(), humanReadableByteCount(getWritten()));
+    }
+
+    /**
+     * the meters of the default provider restart every second to build the time series. Keeps a running total of
+     * the segment writes besides.
+     */
+    private class WriteCountingProvider implements StatisticsProvider {
+        private final StatisticsProvider delegate;
+
+        WriteCountingProvider(@Nonnull StatisticsProvider delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public RepositoryStatistics getStats() {
+            return delegate.getStats();
+        }
+
+        @Override
+        public MeterStats getMeter(String name, StatsOptions options) {
+            MeterStats meter = delegate.getMeter(name, options);
+            if (!FileStoreStats.SEGMENT_WRITES.equals(name)) {
+                return meter;
+            }
+            return new MeterStats() {
+                @Override
+                public void mark() {
+                    meter.mark();
+                }
+
+                @Override
+                public void mark(long n) {
+                    written.add(n);
+                    meter.mark(n);
+                }
+
+                @Override
+                public long getCount() {
+                    return meter.getCount();
+                }
+            };
+        }
+
+        @Override
+        public CounterStats getCounterStats(String name, StatsOptions options) {
+            return delegate.getCounterStats(name, options);
+        }
+
+        @Override
+        public TimerStats getTimer(String name, StatsOptions options) {
+            return delegate.getTimer(name, options);
+        }
+
+        @Override
+        public HistogramStats getHistogram(String name, StatsOptions options) {
+            return delegate.getHistogram(name, options);
+        }
+    }
+}
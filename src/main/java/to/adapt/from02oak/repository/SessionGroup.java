@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.repository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * a single session shared by consecutive operations, saved every {@code saveEvery} operations rather than
+ * after each one.
+ *
+ * If a save fails all the operations since the previous save are discarded.
+ */
+class SessionGroup {
+    private static final Logger LOG = LoggerFactory.getLogger(SessionGroup.class);
+
+    private final Session session;
+    private final int saveEvery;
+    private int pending;
+    private long saved;
+
+    SessionGroup(@Nonnull Session session, int saveEvery) {
+        checkArgument(saveEvery > 0, "saveEvery must be positive. %s", saveEvery);
+        this.session = checkNotNull(session);
+        this.saveEvery = saveEvery;
+    }
+
+    Session getSession() {
+        return session;
+    }
+
+    /**
+     * record an operation, saving the session if the group is full.
+     */
+    void operation() throws RepositoryException {
+        pending++;
+        if (pending >= saveEvery) {
+            flush();
+        }
+    }
+
+    /**
+     * save any pending operation.
+     */
+    void flush() throws RepositoryException {
+        if (pending == 0) {
+            return;
+        }
+        try {
+            session.save();
+            saved += pending;
+            LOG.debug("Saved a group of {} operations", pending);
+        } catch (RepositoryException e) {
+            LOG.error("Error saving a group of {} operations. Discarding them.", pending);
+            session.refresh(false);
+            throw e;
+        } finally {
+            pending = 0;
+        }
+    }
+
+    /**
+     * @return operations persisted so far
+     */
+    long getSaved() {
+        return saved;
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.repository;
+
+import com.google.common.collect.Maps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.jcr.Credentials;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import java.io.Closeable;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A bounded pool of long-lived sessions, all logged in with the same credentials.
+ *
+ * Sessions are {@code refresh()}ed on borrow so that they always see the latest persisted state. Once done
+ * the session <strong>has</strong> to be handed back with {@link #giveBack(Session)}, usually in a
+ * {@code finally} block.
+ */
+public class SessionPool implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(SessionPool.class);
+
+    /**
+     * how long a borrower will wait for a free session before giving up
+     */
+    private static final long BORROW_TIMEOUT_SECONDS = 30;
+
+    /**
+     * a session borrowed for longer than this is reported as leaked
+     */
+    private static final long LEAK_THRESHOLD_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final javax.jcr.Repository jcrRepo;
+    private final Credentials credentials;
+    private final int size;
+    private final Semaphore permits;
+    private final BlockingQueue<Session> idle;
+    private final Map<Session, Long> borrowed = Maps.newConcurrentMap();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong waits = new AtomicLong();
+    private final AtomicLong leaks = new AtomicLong();
+
+    private volatile boolean closed;
+
+    /**
+     * @param jcrRepo the repository to log into. Cannot be null.
+     * @param credentials used for every session in the pool. Cannot be null.
+     * @param size maximum amount of sessions handed out at the same time. Must be positive.
+     */
+    SessionPool(@Nonnull javax.jcr.Repository jcrRepo, @Nonnull Credentials credentials, int size) {
+        checkArgument(size > 0, "The pool size must be positive. %s", size);
+        this.jcrRepo = checkNotNull(jcrRepo);
+        this.credentials = checkNotNull(credentials);
+        this.size = size;
+        this.permits = new Semaphore(size, true);
+        this.idle = new LinkedBlockingQueue<>(size);
+    }
+
+    /**
+     * borrow a session from the pool, logging in a new one if none is idle. Blocks if all the sessions are in use.
+     *
+     * @return a live and refreshed session
+     * @throws RepositoryException if the pool is closed, no session got free in time or the login failed.
+     */
+    @Nonnull
+    public Session borrow() throws RepositoryException {
+        if (closed) {
+            throw new RepositoryException("Session pool already closed");
+        }
+
+        try {
+            if (!permits.tryAcquire()) {
+                waits.incrementAndGet();
+                LOG.debug("No session available. Waiting.");
+                if (!permits.tryAcquire(BORROW_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    throw new RepositoryException("Timed out waiting for a session from the pool");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RepositoryException("Interrupted while waiting for a session", e);
+        }
+
+        Session s = null;
+        try {
+            s = idle.poll();
+            while (s != null && !s.isLive()) {
+                s = idle.poll();
+            }
+
+            if (s == null) {
+                misses.incrementAndGet();
+                s = jcrRepo.login(credentials);
+                LOG.debug("Logged in new pooled session {}", s);
+            } else {
+                hits.incrementAndGet();
+                s.refresh(false);
+            }
+
+            borrowed.put(s, System.currentTimeMillis());
+            return s;
+        } catch (RepositoryException | RuntimeException e) {
+            if (s != null) {
+                s.logout();
+            }
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * return a session to the pool. Any pending change is discarded.
+     *
+     * @param s the session to return. {@code null} is silently ignored to ease {@code finally} blocks.
+     */
+    public void giveBack(@Nullable Session s) {
+        if (s == null) {
+            return;
+        }
+        if (borrowed.remove(s) == null) {
+            LOG.warn("Returned a session not borrowed from the pool. {}", s);
+            return;
+        }
+
+        try {
+            if (closed || !s.isLive()) {
+                s.logout();
+                return;
+            }
+
+            if (s.hasPendingChanges()) {
+                LOG.warn("Session returned with pending changes. Discarding them.");
+                s.refresh(false);
+            }
+
+            if (!idle.offer(s)) {
+                s.logout();
+            }
+        } catch (RepositoryException e) {
+            LOG.error("Error while returning the session to the pool. Logging out.", e);
+            s.logout();
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * @return how many borrows have been served by an idle session
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return how many borrows required a new login
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return how many borrows had to wait for a session to be returned
+     */
+    public long getWaits() {
+        return waits.get();
+    }
+
+    /**
+     * @return the number of sessions currently out for longer than the leak threshold, plus the ones never
+     * returned before closing the pool.
+     */
+    public long getLeaks() {
+        long now = System.currentTimeMillis();
+        long current = borrowed.values().stream().filter(since -> now - since > LEAK_THRESHOLD_MILLIS).count();
+        return leaks.get() + current;
+    }
+
+    /**
+     * @return the number of sessions currently borrowed
+     */
+    public int getActive() {
+        return borrowed.size();
+    }
+
+    /**
+     * @return the number of sessions ready to be borrowed
+     */
+    public int getIdle() {
+        return idle.size();
+    }
+
+    /**
+     * @return the maximum number of sessions the pool will hand out
+     */
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+
+        Session s;
+        while ((s = idle.poll()) != null) {
+            s.logout();
+        }
+
+        if (!borrowed.isEmpty()) {
+            LOG.warn("{} sessions have not been returned to the pool. Logging them out.", borrowed.size());
+            leaks.addAndGet(borrowed.size());
+            borrowed.keySet().forEach(Session::logout);
+            borrowed.clear();
+        }
+
+        LOG.debug("Session pool closed. {}", this);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SessionPool{size=%d, active=%d, idle=%d, hits=%d, misses=%d, waits=%d, leaks=%d}",
+                size, getActive(), getIdle(), getHits(), getMisses(), getWaits(), getLeaks());
+    }
+}
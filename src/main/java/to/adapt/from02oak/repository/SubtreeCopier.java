@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.repository;
+
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.commons.PathUtils;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.jcr.RepositoryException;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * copies and moves subtrees straight on the {@code NodeStore}, in a single commit.
+ *
+ * The copy sets the existing {@code NodeState} as the new child: the segment store records a reference to the
+ * existing records rather than duplicating them, so neither the time nor the disk space depend on the size of the
+ * subtree. The move is a copy plus the removal of the source in the same commit.
+ *
+ * The commit hooks still see every copied node as added: properties covered by synchronous indexes make the
+ * commit proportional to the subtree again, while async indexes catch up in background. Copying
+ * {@code mix:referenceable} nodes fails on the unique {@code jcr:uuid} index.
+ */
+public final class SubtreeCopier {
+    private static final Logger LOG = LoggerFactory.getLogger(SubtreeCopier.class);
+
+    private SubtreeCopier() {
+    }
+
+    /**
+     * copy {@code source} as {@code target}.
+     *
+     * @param repo where to copy. Cannot be null.
+     * @param source absolute path of an existing node. Cannot be the root.
+     * @param target absolute path of the copy. Its parent must exist, the node itself must not.
+     */
+    public static void copy(@Nonnull Repository repo, @Nonnull String source, @Nonnull String target)
+            throws CommitFailedException, RepositoryException {
+        transfer(repo, source, target, false);
+    }
+
+    /**
+     * move {@code source} to {@code target}. Same constraints as {@link #copy(Repository, String, String)}.
+     */
+    public static void move(@Nonnull Repository repo, @Nonnull String source, @Nonnull String target)
+            throws CommitFailedException, RepositoryException {
+        transfer(repo, source, target, true);
+    }
+
+    private static void transfer(@Nonnull Repository repo, @Nonnull String source, @Nonnull String target,
+                                 boolean move) throws CommitFailedException, RepositoryException {
+        checkNotNull(repo);
+        checkArgument(PathUtils.isAbsolute(checkNotNull(source)), "Path must be absolute. %s", source);
+        checkArgument(PathUtils.isAbsolute(checkNotNull(target)), "Path must be absolute. %s", target);
+        checkArgument(!PathUtils.denotesRoot(source) && !PathUtils.denotesRoot(target),
+                "Cannot copy or move the root node");
+        checkArgument(!source.equals(target) && !PathUtils.isAncestor(source, target),
+                "Cannot copy or move a node below itself. %s -> %s", source, target);
+
+        // the source may have been added or changed earlier in the group of the current thread
+        repo.flushGroup();
+        NodeState root = repo.getNodeStore().getRoot();
+        NodeState from = getNode(root, source);
+        checkArgument(from.exists(), "Not found: %s", source);
+        String parentPath = PathUtils.getParentPath(target);
+        checkArgument(getNode(root, parentPath).exists(), "Target parent not found: %s", parentPath);
+        String name = PathUtils.getName(target);
+        checkArgument(!getNode(root, parentPath).hasChildNode(name), "Target already exists: %s", target);
+
+        NodeBuilder builder = root.builder();
+        NodeBuilder parent = getBuilder(builder, parentPath);
+        parent.setChildNode(name, from);
+        if (move) {
+            getBuilder(builder, source).remove();
+        }
+        repo.merge(builder);
+        LOG.debug("{} {} to {}", move ? "Moved" : "Copied", source, target);
+    }
+
+    private static NodeState getNode(@Nonnull NodeState root, @Nonnull String path) {
+        NodeState n = root;
+        for (String name : PathUtils.elements(path)) {
+            n = n.getChildNode(name);
+        }
+        return n;
+    }
+
+    private static NodeBuilder getBuilder(@Nonnull NodeBuilder root, @Nonnull String path) {
+        NodeBuilder b = root;
+        for (String name : PathUtils.elements(path)) {
+            b = b.getChildNode(name);
+        }
+        return b;
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.repository;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.commons.PathUtils;
+import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.jcr.RepositoryException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.LongConsumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Removes a subtree of any size bottom-up, straight from the {@code NodeStore}, merging every {@code batchSize}
+ * removed nodes so that neither the heap nor a single commit grow with the subtree. A commit may exceed the batch
+ * size by the depth of the subtree, as a node goes together with its last descendant.
+ *
+ * Each commit removes only nodes whose descendants are already gone, so the content is consistent after any of
+ * them. An interrupted removal is resumed by running it again on the same path.
+ *
+ * The children of the subtree root are shared among the threads; a thread works on one child subtree at a time.
+ */
+public class SubtreeRemover {
+    private static final Logger LOG = LoggerFactory.getLogger(SubtreeRemover.class);
+
+    private final Repository repo;
+    private final String path;
+    private final int batchSize;
+
+    /**
+     * @param repo where to remove from. Cannot be null.
+     * @param path absolute path of the subtree root. Cannot be the root node.
+     * @param batchSize nodes removed per commit. Must be positive.
+     */
+    public SubtreeRemover(@Nonnull Repository repo, @Nonnull String path, int batchSize) {
+        checkArgument(PathUtils.isAbsolute(checkNotNull(path)), "Path must be absolute. %s", path);
+        checkArgument(!PathUtils.denotesRoot(path), "Cannot remove the root node");
+        checkArgument(batchSize > 0, "batchSize must be positive. %s", batchSize);
+        this.repo = checkNotNull(repo);
+        this.path = path;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * remove the subtree.
+     *
+     * @param threads parallelism. Must be positive.
+     * @param onCommit called after each merge with the amount of nodes removed by it. Called concurrently.
+     * @return the number of nodes removed. {@code 0} if the subtree doesn't exist.
+     */
+    public long remove(int threads, @Nonnull LongConsumer onCommit) throws CommitFailedException,
+            RepositoryException, InterruptedException {
+        checkArgument(threads > 0, "threads must be positive. %s", threads);
+        checkNotNull(onCommit);
+
+        // nodes added to the subtree earlier in the group of the current thread would survive, and the group's
+        // next save conflict with the removal
+        repo.flushGroup();
+        NodeState subtree = getState(repo.getNodeStore().getRoot());
+        if (subtree == null) {
+            return 0;
+        }
+
+        // a snapshot of the children names is enough: nobody is expected to add nodes to a subtree being removed
+        Iterator<? extends ChildNodeEntry> children = subtree.getChildNodeEntries().iterator();
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+                new ThreadFactoryBuilder().setNameFormat("subtree-remover-%d").build());
+        long removed = 0;
+        try {
+            List<Future<Long>> tasks = Lists.newArrayList();
+            for (int i = 0; i < threads; i++) {
+                tasks.add(executor.submit(() -> removeChildren(children, onCommit)));
+            }
+            for (Future<Long> t : tasks) {
+                removed += t.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CommitFailedException) {
+                throw (CommitFailedException) e.getCause();
+            }
+            throw new IllegalStateException("Error removing " + path, e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // all the descendants are gone
+        NodeBuilder root = repo.getNodeStore().getRoot().builder();
+        NodeBuilder builder = getBuilder(root);
+        if (builder != null) {
+            builder.remove();
+            repo.merge(root);
+            onCommit.accept(1);
+            removed++;
+        }
+        return removed;
+    }
+
+    private long removeChildren(@Nonnull Iterator<? extends ChildNodeEntry> children,
+                                @Nonnull LongConsumer onCommit) throws CommitFailedException {
+        long removed = 0;
+        String current = null;
+        while (true) {
+            if (Thread.currentThread().isInterrupted()) {
+                LOG.debug("Interrupted after removing {} nodes", removed);
+                return removed;
+            }
+
+            NodeBuilder root = repo.getNodeStore().getRoot().builder();
+            NodeBuilder parent = getBuilder(root);
+            if (parent == null) {
+                return removed;
+            }
+            Batch batch = new Batch();
+            while (batch.hasRoom()) {
+                if (current == null) {
+                    current = next(children);
+                    if (current == null) {
+                        break;
+                    }
+                }
+                NodeBuilder child = parent.getChildNode(current);
+                if (!child.exists()) {
+                    current = null;
+                } else if (batch.empty(child, parent.getBaseState().getChildNode(current))) {
+                    child.remove();
+                    batch.removed++;
+                    current = null;
+                }
+            }
+
+            if (batch.removed == 0) {
+                return removed;
+            }
+            repo.merge(root);
+            removed += batch.removed;
+            onCommit.accept(batch.removed);
+        }
+    }
+
+    @CheckForNull
+    private static synchronized String next(@Nonnull Iterator<? extends ChildNodeEntry> children) {
+        return children.hasNext() ? children.next().getName() : null;
+    }
+
+    @CheckForNull
+    private NodeState getState(@Nonnull NodeState root) {
+        NodeState s = root;
+        for (String name : PathUtils.elements(path)) {
+            s = s.getChildNode(name);
+        }
+        return s.exists() ? s : null;
+    }
+
+    @CheckForNull
+    private NodeBuilder getBuilder(@Nonnull NodeBuilder root) {
+        NodeBuilder b = root;
+        for (String name : PathUtils.elements(path)) {
+            b = b.getChildNode(name);
+        }
+        return b.exists() ? b : null;
+    }
+
+    /**
+     * nodes removed within a single commit
+     */
+    private class Batch {
+        private int removed;
+
+        boolean hasRoom() {
+            return removed < batchSize;
+        }
+
+        /**
+         * remove the descendants of a node, deepest first, till the batch is full.
+         *
+         * @return {@code true} if all the descendants have been removed
+         */
+        boolean empty(@Nonnull NodeBuilder builder, @Nonnull NodeState state) {
+            for (ChildNodeEntry e : state.getChildNodeEntries()) {
+                if (!hasRoom()) {
+                    return false;
+                }
+                NodeBuilder child = builder.getChildNode(e.getName());
+                if (!empty(child, e.getNodeState())) {
+                    return false;
+                }
+                child.remove();
+                removed++;
+            }
+            return true;
+        }
+    }
+}
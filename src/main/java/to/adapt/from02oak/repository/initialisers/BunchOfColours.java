@@ -20,27 +20,34 @@
 
 package to.adapt.from02oak.repository.initialisers;
 
+import org.apache.jackrabbit.oak.api.Type;
 import org.apache.jackrabbit.oak.spi.lifecycle.RepositoryInitializer;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 
 import javax.annotation.Nonnull;
 import java.util.Random;
 
+import static com.google.common.base.Preconditions.checkNotNull;
 import static org.apache.jackrabbit.JcrConstants.JCR_PRIMARYTYPE;
 import static org.apache.jackrabbit.oak.plugins.nodetype.NodeTypeConstants.NT_OAK_UNSTRUCTURED;
 
+/**
+ * creates some coloured nodes under {@code /unitedcolours} when the repository is first initialised.
+ *
+ * Everything is done within the initial commit, so keep it small. Use {@link ContentGenerator} for large amounts.
+ */
 public class BunchOfColours implements RepositoryInitializer {
     private static final String UNITED_COLOURS = "unitedcolours";
+    private static final int DEFAULT_NODES = 100;
 
-    private enum COLOURS {
-        RED, GREEN, BLUE;
+    private final ContentGenerator generator;
 
-        static Random r = new Random();
-        static COLOURS[] cc = COLOURS.values();
+    public BunchOfColours() {
+        this(new ContentGenerator(DEFAULT_NODES, ContentGenerator.DEFAULT_FAN_OUT, 0, new Random().nextLong()));
+    }
 
-        static String getRandomColour() {
-            return cc[r.nextInt(cc.length)].toString().toLowerCase();
-        }
+    public BunchOfColours(@Nonnull ContentGenerator generator) {
+        this.generator = checkNotNull(generator);
     }
 
     @Override
@@ -49,11 +56,8 @@ public class BunchOfColours implements RepositoryInitializer {
             // nodes are already there.
             return;
         }
-        NodeBuilder unitedColours = builder.child(UNITED_COLOURS);
-        for (int i = 0; i<100; i++) {
-            unitedColours.child(String.format("n%03d", i))
-                    .setProperty(JCR_PRIMARYTYPE, NT_OAK_UNSTRUCTURED)
-                    .setProperty("colour", COLOURS.getRandomColour());
-        }
+        NodeBuilder unitedColours = builder.child(UNITED_COLOURS)
+                .setProperty(JCR_PRIMARYTYPE, NT_OAK_UNSTRUCTURED, Type.NAME);
+        generator.generate(unitedColours);
     }
 }
@@ -0,0 +1,322 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.repository.initialisers;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.commons.PathUtils;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import to.adapt.from02oak.repository.Repository;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.LongConsumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.apache.jackrabbit.JcrConstants.JCR_PRIMARYTYPE;
+import static org.apache.jackrabbit.oak.plugins.nodetype.NodeTypeConstants.NT_OAK_UNSTRUCTURED;
+
+/**
+ * Generates random coloured content laid out in buckets, so that no node has more than {@code fanOut} children.
+ *
+ * Node {@code i} lives at {@code bXX/.../nIII}, with as many bucket levels as needed to hold all the nodes.
+ * The content is split by top level bucket; each range has its own random generator seeded from the
+ * configured seed, so the same configuration always generates the same content regardless of the parallelism.
+ */
+public class ContentGenerator {
+    private static final Logger LOG = LoggerFactory.getLogger(ContentGenerator.class);
+    public static final String COLOUR = "colour";
+    public static final int DEFAULT_FAN_OUT = 1000;
+
+    private enum COLOURS {
+        RED, GREEN, BLUE;
+
+        static COLOURS[] cc = COLOURS.values();
+
+        static String getRandomColour(@Nonnull Random r) {
+            return cc[r.nextInt(cc.length)].toString().toLowerCase();
+        }
+    }
+
+    private final long count;
+    private final int fanOut;
+    private final int levels;
+    private final int properties;
+    private final long seed;
+    private final String bucketFormat;
+    private final String leafFormat;
+
+    /**
+     * @param count how many nodes to generate. Must be positive.
+     * @param fanOut maximum number of children per node. Must be greater than 1.
+     * @param properties how many random properties besides {@code colour} each node will have
+     * @param seed seed for the random content
+     */
+    public ContentGenerator(long count, int fanOut, int properties, long seed) {
+        checkArgument(count > 0, "count must be positive. %s", count);
+        checkArgument(fanOut > 1, "fanOut must be greater than 1. %s", fanOut);
+        checkArgument(properties >= 0, "properties cannot be negative. %s", properties);
+        this.count = count;
+        this.fanOut = fanOut;
+        this.properties = properties;
+        this.seed = seed;
+        this.levels = levels(count, fanOut);
+        this.bucketFormat = "b%0" + Math.max(2, digits(fanOut - 1)) + "d";
+        this.leafFormat = "n%0" + Math.max(3, digits(count - 1)) + "d";
+    }
+
+    /**
+     * build a generator with a fixed amount of bucket levels, computing the needed fan out.
+     *
+     * @param depth the levels of the hierarchy, leaves included. Must be positive.
+     */
+    public static ContentGenerator withDepth(long count, int depth, int properties, long seed) {
+        checkArgument(depth > 0, "depth must be positive. %s", depth);
+        int fanOut = Math.max(2, (int) Math.ceil(Math.pow(count, 1d / depth)));
+        while (levels(count, fanOut) > depth) {
+            fanOut++;
+        }
+        return new ContentGenerator(count, fanOut, properties, seed);
+    }
+
+    /**
+     * @return how many levels, leaves included, are needed to hold {@code count} nodes
+     */
+    static int levels(long count, int fanOut) {
+        int l = 1;
+        long capacity = fanOut;
+        while (capacity < count) {
+            capacity = capacity > Long.MAX_VALUE / fanOut ? Long.MAX_VALUE : capacity * fanOut;
+            l++;
+        }
+        return l;
+    }
+
+    private static int digits(long n) {
+        return Long.toString(Math.max(0, n)).length();
+    }
+
+    /**
+     * @return the nodes held by each top level bucket. The whole content if there are no buckets.
+     */
+    private long span() {
+        long s = 1;
+        for (int i = 1; i < levels; i++) {
+            s *= fanOut;
+        }
+        return levels == 1 ? count : s;
+    }
+
+    /**
+     * @return the path, relative to the generation root, of the i-th node
+     */
+    String relativePath(long i) {
+        StringBuilder sb = new StringBuilder();
+        long span = span();
+        long rem = i;
+        for (int l = 1; l < levels; l++) {
+            sb.append(String.format(bucketFormat, rem / span)).append('/');
+            rem %= span;
+            span /= fanOut;
+        }
+        return sb.append(String.format(leafFormat, i)).toString();
+    }
+
+    /**
+     * generate all the nodes in one go under the provided builder. Fine for small amounts, use
+     * {@link #generate(Repository, String, int, int, LongConsumer)} otherwise.
+     */
+    public void generate(@Nonnull NodeBuilder parent) {
+        checkNotNull(parent);
+        long span = span();
+        for (long from = 0, r = 0; from < count; from += span, r++) {
+            Range range = new Range(parent, from, Math.min(count, from + span), r);
+            while (range.hasNext()) {
+                range.next();
+            }
+        }
+    }
+
+    /**
+     * generate the content below {@code path} in parallel, one task per top level bucket, merging every
+     * {@code batchSize} nodes so that memory stays bounded.
+     *
+     * @param repo where to write. Cannot be null.
+     * @param path absolute path of the generation root. Created if missing.
+     * @param threads parallelism. Must be positive.
+     * @param batchSize nodes per commit. Must be positive.
+     * @param onCommit called after each merge with the amount of nodes merged. Called concurrently.
+     * @return the number of nodes generated
+     */
+    public long generate(@Nonnull Repository repo, @Nonnull String path, int threads, int batchSize,
+                         @Nonnull LongConsumer onCommit) throws CommitFailedException, InterruptedException {
+        checkNotNull(repo);
+        checkArgument(PathUtils.isAbsolute(checkNotNull(path)), "Path must be absolute. %s", path);
+        checkArgument(threads > 0, "threads must be positive. %s", threads);
+        checkArgument(batchSize > 0, "batchSize must be positive. %s", batchSize);
+        checkNotNull(onCommit);
+
+        // the root is created upfront so that the tasks only add distinct children to it
+        NodeBuilder root = repo.getNodeStore().getRoot().builder();
+        getOrCreate(root, path);
+        repo.merge(root);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+                new ThreadFactoryBuilder().setNameFormat("content-generator-%d").build());
+        try {
+            List<Future<Long>> tasks = Lists.newArrayList();
+            long span = span();
+            for (long from = 0, r = 0; from < count; from += span, r++) {
+                long start = from;
+                long to = Math.min(count, from + span);
+                long index = r;
+                tasks.add(executor.submit(() -> generateRange(repo, path, start, to, index, batchSize, onCommit)));
+            }
+
+            long generated = 0;
+            for (Future<Long> t : tasks) {
+                generated += t.get();
+            }
+            return generated;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CommitFailedException) {
+                throw (CommitFailedException) e.getCause();
+            }
+            throw new IllegalStateException("Error generating content", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private long generateRange(@Nonnull Repository repo, @Nonnull String path, long from, long to, long index,
+                               int batchSize, @Nonnull LongConsumer onCommit) throws CommitFailedException {
+        LOG.debug("Generating nodes [{}, {}) under {}", from, to, path);
+        NodeBuilder root = repo.getNodeStore().getRoot().builder();
+        Range range = new Range(getOrCreate(root, path), from, to, index);
+        int pending = 0;
+        while (range.hasNext()) {
+            range.next();
+            if (++pending >= batchSize) {
+                repo.merge(root);
+                onCommit.accept(pending);
+                pending = 0;
+                root = repo.getNodeStore().getRoot().builder();
+                range.reset(getOrCreate(root, path));
+            }
+        }
+        if (pending > 0) {
+            repo.merge(root);
+            onCommit.accept(pending);
+        }
+        return to - from;
+    }
+
+    /**
+     * generates the contiguous nodes {@code [from, to)} sharing the same random sequence.
+     */
+    private class Range {
+        private final Random random;
+        private final long to;
+        private long next;
+        private NodeBuilder parent;
+
+        // consecutive nodes share the same bucket
+        private long lastBucket = -1;
+        private NodeBuilder bucket;
+
+        Range(@Nonnull NodeBuilder parent, long from, long to, long index) {
+            this.random = new Random(seed * 31 + index);
+            this.parent = parent;
+            this.next = from;
+            this.to = to;
+        }
+
+        boolean hasNext() {
+            return next < to;
+        }
+
+        void next() {
+            long i = next++;
+            String p = relativePath(i);
+            if (i / fanOut != lastBucket) {
+                bucket = getOrCreate(parent, PathUtils.getParentPath(p));
+                lastBucket = i / fanOut;
+            }
+
+            NodeBuilder n = bucket.child(PathUtils.getName(p))
+                    .setProperty(JCR_PRIMARYTYPE, NT_OAK_UNSTRUCTURED, Type.NAME)
+                    .setProperty(COLOUR, COLOURS.getRandomColour(random));
+            for (int k = 0; k < properties; k++) {
+                n.setProperty("p" + k, Long.toHexString(random.nextLong()));
+            }
+        }
+
+        /**
+         * continue on a new builder, after a merge
+         */
+        void reset(@Nonnull NodeBuilder parent) {
+            this.parent = parent;
+            this.lastBucket = -1;
+            this.bucket = null;
+        }
+    }
+
+    private static NodeBuilder getOrCreate(@Nonnull NodeBuilder builder, @Nonnull String path) {
+        NodeBuilder b = builder;
+        for (String name : PathUtils.elements(path)) {
+            b = b.hasChildNode(name) ? b.getChildNode(name)
+                    : b.child(name).setProperty(JCR_PRIMARYTYPE, NT_OAK_UNSTRUCTURED, Type.NAME);
+        }
+        return b;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public int getFanOut() {
+        return fanOut;
+    }
+
+    public int getLevels() {
+        return levels;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ContentGenerator{count=%d, fanOut=%d, levels=%d, properties=%d, seed=%d}",
+                count, fanOut, levels, properties, seed);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.repository.initialisers;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.plugins.index.IndexUtils;
+import org.apache.jackrabbit.oak.spi.lifecycle.RepositoryInitializer;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.apache.jackrabbit.JcrConstants.JCR_PRIMARYTYPE;
+import static org.apache.jackrabbit.JcrConstants.NT_BASE;
+import static org.apache.jackrabbit.JcrConstants.NT_UNSTRUCTURED;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.ASYNC_PROPERTY_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NODE_TYPE;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.REINDEX_PROPERTY_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.TYPE_PROPERTY_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.COMPAT_MODE;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.INDEX_RULES;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.PROP_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.PROP_NODE;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.PROP_PROPERTY_INDEX;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.TYPE_LUCENE;
+
+/**
+ * defines a single Lucene index covering all the provided properties, so that queries with conditions on more
+ * of them are answered by one index lookup.
+ *
+ * Lucene indexes are asynchronous. The definition is rewritten, and the index rebuilt, whenever the list of
+ * properties changes.
+ */
+public class LucenePropertyIndex implements RepositoryInitializer {
+    private static final Logger LOG = LoggerFactory.getLogger(LucenePropertyIndex.class);
+    public static final String NAME = "lucene-properties";
+
+    private final Set<String> properties;
+    private final String lane;
+
+    /**
+     * @param properties the properties to index. Cannot be null.
+     * @param lane the async lane updating the index. Cannot be null.
+     */
+    public LucenePropertyIndex(@Nonnull Set<String> properties, @Nonnull String lane) {
+        this.properties = ImmutableSet.copyOf(checkNotNull(properties));
+        this.lane = checkNotNull(lane);
+    }
+
+    @Override
+    public void initialize(@Nonnull NodeBuilder builder) {
+        NodeBuilder oakIndex = IndexUtils.getOrCreateOakIndex(builder);
+        NodeBuilder def = oakIndex.getChildNode(NAME);
+        NodeBuilder props = def.getChildNode(INDEX_RULES).getChildNode(NT_BASE).getChildNode(PROP_NODE);
+        if (def.exists() && ImmutableSet.copyOf(props.getChildNodeNames()).equals(properties)) {
+            return;
+        }
+
+        LOG.info("Defining Lucene index `{}` on {}", NAME, properties);
+        def = oakIndex.child(NAME)
+                .setProperty(JCR_PRIMARYTYPE, INDEX_DEFINITIONS_NODE_TYPE, Type.NAME)
+                .setProperty(TYPE_PROPERTY_NAME, TYPE_LUCENE)
+                .setProperty(ASYNC_PROPERTY_NAME, lane)
+                .setProperty(COMPAT_MODE, 2L)
+                .setProperty(REINDEX_PROPERTY_NAME, true);
+        props = child(child(child(def, INDEX_RULES), NT_BASE), PROP_NODE);
+        for (String name : Lists.newArrayList(props.getChildNodeNames())) {
+            props.getChildNode(name).remove();
+        }
+        for (String p : properties) {
+            child(props, p)
+                    .setProperty(PROP_NAME, p)
+                    .setProperty(PROP_PROPERTY_INDEX, true);
+        }
+    }
+
+    private static NodeBuilder child(@Nonnull NodeBuilder parent, @Nonnull String name) {
+        return parent.child(name).setProperty(JCR_PRIMARYTYPE, NT_UNSTRUCTURED, Type.NAME);
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+
+package to.adapt.from02oak;
+
+import org.apache.jackrabbit.oak.plugins.memory.MemoryNodeStore;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeStore;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WalkTreeTest {
+    private static final int FLAT = WalkTree.FORK_CHUNK * 3 + 1;
+
+    private static NodeStore store() throws Exception {
+        NodeStore store = new MemoryNodeStore();
+        NodeBuilder root = store.getRoot().builder();
+        root.child("a").setProperty("colour", "red");
+        root.child("a").child("b").child("c");
+        root.child(":hidden").child("x");
+        NodeBuilder flat = root.child("flat");
+        for (int i = 0; i < FLAT; i++) {
+            // each with a child of its own, so that it's forked
+            flat.child("n" + i).child("leaf");
+        }
+        store.merge(root, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+        return store;
+    }
+
+    private static List<String> walk(NodeStore store, int depth, int threads) throws Exception {
+        StringWriter sw = new StringWriter();
+        WalkTree walker = new WalkTree(sw, depth);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            walker.walk(pool, "/", store.getRoot());
+        } finally {
+            pool.shutdown();
+        }
+        List<String> lines = Arrays.asList(sw.toString().split("\n"));
+        assertEquals(walker.getNodeCount(), lines.stream().filter(l -> l.startsWith("/")).count());
+        return lines;
+    }
+
+    @Test
+    public void unlimited() throws Exception {
+        List<String> lines = walk(store(), -1, 4);
+        List<String> paths = lines.stream().filter(l -> l.startsWith("/")).collect(Collectors.toList());
+
+        // root, a, b, c, flat and two per flat child
+        assertEquals(5 + FLAT * 2, paths.size());
+        assertTrue(paths.contains("/a/b/c"));
+        assertTrue(paths.contains("/flat/n" + (FLAT - 1) + "/leaf"));
+        assertTrue(lines.contains("  - colour: red"));
+        assertFalse(paths.stream().anyMatch(p -> p.contains(":hidden")));
+    }
+
+    @Test
+    public void depth() throws Exception {
+        NodeStore store = store();
+        List<String> paths = walk(store, 1, 2).stream().filter(l -> l.startsWith("/")).collect(Collectors.toList());
+        assertEquals(Arrays.asList("/", "/a", "/flat"), paths.stream().sorted().collect(Collectors.toList()));
+
+        paths = walk(store, 2, 2).stream().filter(l -> l.startsWith("/")).collect(Collectors.toList());
+        assertEquals(3 + 1 + FLAT, paths.size());
+        assertTrue(paths.contains("/a/b"));
+        assertFalse(paths.contains("/a/b/c"));
+    }
+}
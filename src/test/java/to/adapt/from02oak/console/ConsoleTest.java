@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.console;
+
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.junit.Test;
+import to.adapt.from02oak.repository.Repository;
+import to.adapt.from02oak.repository.TestRepository;
+
+import java.io.BufferedReader;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConsoleTest {
+    private static BufferedReader script(String... lines) {
+        return new BufferedReader(new StringReader(String.join("\n", lines)));
+    }
+
+    @Test
+    public void runScript() throws Exception {
+        Repository repo = new TestRepository();
+        StringWriter sw = new StringWriter();
+
+        int failures = new Console().runScript(script(
+                "# provisioning",
+                "add /a nt:unstructured",
+                "",
+                "add /b nt:unstructured",
+                "nonExistingCommand",
+                "exit",
+                "add /c nt:unstructured"), new PrintWriter(sw), 0);
+
+        assertEquals(sw.toString(), 1, failures);
+        NodeState root = repo.getNodeStore().getRoot();
+        assertTrue(root.hasChildNode("a"));
+        assertTrue(root.hasChildNode("b"));
+        assertFalse("nothing should run after exit", root.hasChildNode("c"));
+    }
+
+    @Test
+    public void runGroupedScript() throws Exception {
+        Repository repo = new TestRepository();
+        StringWriter sw = new StringWriter();
+
+        int failures = new Console().runScript(script(
+                "add /g1 nt:unstructured",
+                "add /g2 nt:unstructured",
+                "up /g1 --edit colour red",
+                "add /g3 nt:unstructured"), new PrintWriter(sw), 2);
+
+        assertEquals(sw.toString(), 0, failures);
+        assertTrue(sw.toString().contains("4 grouped operations saved"));
+        NodeState root = repo.getNodeStore().getRoot();
+        assertTrue(root.hasChildNode("g2"));
+        assertTrue("the last partial group is saved as well", root.hasChildNode("g3"));
+        assertEquals("red", root.getChildNode("g1").getString("colour"));
+    }
+
+    @Test
+    public void groupedScriptWithNodeStoreCommands() throws Exception {
+        Repository repo = new TestRepository();
+        StringWriter sw = new StringWriter();
+
+        int failures = new Console().runScript(script(
+                "add /a nt:unstructured",
+                "cp /a /b",
+                "up /b --edit colour red",
+                "add /c nt:unstructured"), new PrintWriter(sw), 100);
+
+        assertEquals(sw.toString(), 0, failures);
+        NodeState root = repo.getNodeStore().getRoot();
+        assertTrue(root.hasChildNode("a"));
+        assertEquals("the grouped session sees the copy", "red", root.getChildNode("b").getString("colour"));
+        assertTrue(root.hasChildNode("c"));
+    }
+}
@@ -20,14 +20,27 @@
 
 package to.adapt.from02oak.console.commands;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import to.adapt.from02oak.repository.Repository;
+import to.adapt.from02oak.repository.TestRepository;
 
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
 import java.util.List;
+import java.util.Random;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.junit.Assert.*;
 
 public class CatCommandTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Test
     public void analyseCommandLine() {
         assertNull(new CatCommand().analyseCommandLine(new String[]{"cat"}));
@@ -42,4 +55,53 @@ public class CatCommandTest {
     public void analyseCommandLineNullArgs() {
         new CatCommand().analyseCommandLine(null);
     }
+
+    @Test
+    public void binaryRequiresOut() throws Exception {
+        StringWriter sw = new StringWriter();
+        assertEquals(1, new CatCommand().execute(new PrintWriter(sw), new String[]{"cat", "/a", "--binary", "jcr:data"}));
+    }
+
+    @Test
+    public void transfer() throws Exception {
+        byte[] data = new byte[3 * 1024 * 1024 + 17];
+        new Random(1).nextBytes(data);
+        File source = folder.newFile("source");
+        File target = new File(folder.getRoot(), "target");
+        Files.write(source.toPath(), data);
+
+        assertEquals(data.length, CatCommand.transfer(source, target));
+        assertArrayEquals(data, Files.readAllBytes(target.toPath()));
+    }
+
+    @Test
+    public void saveBinary() throws Exception {
+        Repository repo = TestRepository.onDisk(folder.newFolder("repository"));
+        // bigger than what the segments inline, so it lands in the data store
+        byte[] big = new byte[64 * 1024];
+        new Random(42).nextBytes(big);
+        byte[] small = "small".getBytes(UTF_8);
+        File bigFile = folder.newFile("big.bin");
+        File smallFile = folder.newFile("small.bin");
+        Files.write(bigFile.toPath(), big);
+        Files.write(smallFile.toPath(), small);
+        PrintWriter pw = new PrintWriter(new StringWriter());
+        assertEquals(0, new PutCommand().execute(pw, new String[]{"put", "/big", "data", bigFile.getPath()}));
+        assertEquals(0, new PutCommand().execute(pw, new String[]{"put", "/small", "data", smallFile.getPath()}));
+
+        File out = new File(folder.getRoot(), "big.out");
+        StringWriter sw = new StringWriter();
+        assertEquals(sw.toString(), 0, new CatCommand().execute(new PrintWriter(sw),
+                new String[]{"cat", "/big", "--binary", "data", "--out", out.getPath()}));
+        assertTrue(sw.toString(), sw.toString().contains("zero-copy"));
+        assertArrayEquals(big, Files.readAllBytes(out.toPath()));
+
+        out = new File(folder.getRoot(), "small.out");
+        sw = new StringWriter();
+        assertEquals(sw.toString(), 0, new CatCommand().execute(new PrintWriter(sw),
+                new String[]{"cat", "/small", "--binary", "data", "--out", out.getPath()}));
+        assertTrue(sw.toString(), sw.toString().contains("streamed"));
+        assertArrayEquals(small, Files.readAllBytes(out.toPath()));
+        repo.close();
+    }
 }
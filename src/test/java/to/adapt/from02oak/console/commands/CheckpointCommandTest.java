@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.console.commands;
+
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.junit.Test;
+import to.adapt.from02oak.repository.Repository;
+import to.adapt.from02oak.repository.TestRepository;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+
+public class CheckpointCommandTest {
+    @Test
+    public void parseCommandLine() {
+        PrintWriter pw = new PrintWriter(new StringWriter());
+
+        assertEquals(CheckpointCommand.Action.LIST,
+                new CheckpointCommand().parseCommandLine(pw, new String[]{"checkpoint"}).action);
+        assertNull(new CheckpointCommand().parseCommandLine(pw, new String[]{"checkpoint", "drop"}));
+        assertNull(new CheckpointCommand().parseCommandLine(pw, new String[]{"checkpoint", "release"}));
+        assertNull(new CheckpointCommand().parseCommandLine(pw, new String[]{"checkpoint", "list", "--lifetime", "1"}));
+        assertNull(new CheckpointCommand().parseCommandLine(pw, new String[]{"checkpoint", "create", "--lifetime", "0"}));
+
+        CheckpointCommand.Options o = new CheckpointCommand().parseCommandLine(pw,
+                new String[]{"checkpoint", "create", "--label", "x"});
+        assertNotNull(o);
+        assertEquals(CheckpointCommand.Action.CREATE, o.action);
+        assertEquals(CheckpointCommand.DEFAULT_LIFETIME, o.lifetime);
+        assertEquals("x", o.label);
+
+        assertNull(new DiffCommand().parseCommandLine(pw, new String[]{"diff"}));
+        assertNull(new DiffCommand().parseCommandLine(pw, new String[]{"diff", "cp", "relative"}));
+        assertEquals("/", new DiffCommand().parseCommandLine(pw, new String[]{"diff", "cp"}).path);
+    }
+
+    @Test
+    public void createDiffRelease() throws Exception {
+        Repository repo = new TestRepository();
+        StringWriter sw = new StringWriter();
+        assertEquals(0, new CheckpointCommand().execute(new PrintWriter(sw), new String[]{"checkpoint", "create"}));
+        String cp = sw.toString().trim();
+
+        NodeBuilder root = repo.getNodeStore().getRoot().builder();
+        root.child("added");
+        repo.merge(root);
+
+        sw = new StringWriter();
+        assertEquals(0, new DiffCommand().execute(new PrintWriter(sw), new String[]{"diff", cp}));
+        assertThat(sw.toString(), containsString("+ /added"));
+
+        sw = new StringWriter();
+        assertEquals(0, new CheckpointCommand().execute(new PrintWriter(sw), new String[]{"checkpoint", "list"}));
+        assertThat(sw.toString(), containsString(cp));
+
+        assertEquals(0, new CheckpointCommand().execute(new PrintWriter(new StringWriter()),
+                new String[]{"checkpoint", "release", cp}));
+        assertEquals(1, new DiffCommand().execute(new PrintWriter(new StringWriter()), new String[]{"diff", cp}));
+        repo.close();
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.console.commands;
+
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.junit.Test;
+import to.adapt.from02oak.repository.Repository;
+import to.adapt.from02oak.repository.TestRepository;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+public class ColoursCommandTest {
+    @Test
+    public void countUpTo() {
+        NodeBuilder value = EMPTY_NODE.builder();
+        value.child("a").setProperty("match", true);
+        value.child("b").child("c").setProperty("match", true);
+        value.child("b").child("d").setProperty("match", true);
+
+        assertEquals(3, ColoursCommand.countUpTo(value.getNodeState(), 100));
+        assertEquals(2, ColoursCommand.countUpTo(value.getNodeState(), 2));
+        assertEquals(3L, (long) new ColoursCommand.Counter(value.getNodeState()).invoke());
+    }
+
+    @Test
+    public void countFlat() {
+        // more forks than a chunk, each with leaves counted inline
+        int n = ColoursCommand.Counter.FORK_CHUNK * 3 + 1;
+        NodeBuilder value = EMPTY_NODE.builder();
+        for (int i = 0; i < n; i++) {
+            value.child("n" + i).child("leaf").setProperty("match", true);
+            value.child("l" + i).setProperty("match", true);
+        }
+        value.child("nomatch");
+
+        assertEquals(2L * n, (long) new ForkJoinPool(4).invoke(new ColoursCommand.Counter(value.getNodeState())));
+    }
+
+    @Test
+    public void decode() {
+        assertEquals("red", ColoursCommand.decode("red"));
+        assertEquals("dark red", ColoursCommand.decode("dark%20red"));
+    }
+
+    @Test
+    public void exactCount() throws Exception {
+        Repository repo = new TestRepository();
+        StringWriter sw = new StringWriter();
+
+        assertEquals(0, new ColoursCommand().execute(new PrintWriter(sw), new String[]{"colours", "--count", "--exact"}));
+        assertThat(sw.toString(), containsString("total"));
+        assertThat(sw.toString(), containsString(" 100 in "));
+
+        assertEquals(1, new ColoursCommand().execute(new PrintWriter(sw), new String[]{"colours", "--index", "nope"}));
+        repo.close();
+    }
+}
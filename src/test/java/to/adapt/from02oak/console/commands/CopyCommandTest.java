@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.console.commands;
+
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.junit.Test;
+import to.adapt.from02oak.repository.Repository;
+import to.adapt.from02oak.repository.TestRepository;
+
+import javax.jcr.Session;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CopyCommandTest {
+    @Test
+    public void parseCommandLine() {
+        PrintWriter pw = new PrintWriter(new StringWriter());
+
+        assertNull(new CopyCommand(false).parseCommandLine(pw, new String[]{"cp"}));
+        assertNull(new CopyCommand(false).parseCommandLine(pw, new String[]{"cp", "/a"}));
+        assertNull(new CopyCommand(false).parseCommandLine(pw, new String[]{"cp", "/a", "b"}));
+        assertNull(new CopyCommand(false).parseCommandLine(pw, new String[]{"cp", "/", "/b"}));
+        assertNull(new CopyCommand(false).parseCommandLine(pw, new String[]{"cp", "/a", "/b", "/c"}));
+
+        CopyCommand.Options o = new CopyCommand(true).parseCommandLine(pw, new String[]{"mv", "/a", "/b/c"});
+        assertNotNull(o);
+        assertEquals("/a", o.source);
+        assertEquals("/b/c", o.target);
+    }
+
+    @Test
+    public void copyAndMove() throws Exception {
+        Repository repo = new TestRepository();
+        NodeBuilder root = repo.getNodeStore().getRoot().builder();
+        root.child("a").child("b");
+        repo.merge(root);
+
+        assertEquals(0, new CopyCommand(false).execute(new PrintWriter(new StringWriter()),
+                new String[]{"cp", "/a", "/c"}));
+        assertTrue(repo.getNodeStore().getRoot().getChildNode("c").hasChildNode("b"));
+
+        assertEquals(0, new CopyCommand(true).execute(new PrintWriter(new StringWriter()),
+                new String[]{"mv", "/c", "/a/c"}));
+        assertFalse(repo.getNodeStore().getRoot().hasChildNode("c"));
+        assertTrue(repo.getNodeStore().getRoot().getChildNode("a").getChildNode("c").hasChildNode("b"));
+
+        assertEquals(1, new CopyCommand(false).execute(new PrintWriter(new StringWriter()),
+                new String[]{"cp", "/missing", "/d"}));
+        repo.close();
+    }
+
+    @Test
+    public void copyInGroup() throws Exception {
+        Repository repo = new TestRepository();
+        repo.beginGroup(100);
+        Session s = repo.borrowSession();
+        s.getRootNode().addNode("grouped").setProperty("colour", "red");
+        repo.save(s);
+        repo.returnSession(s);
+
+        assertEquals(0, new CopyCommand(false).execute(new PrintWriter(new StringWriter()),
+                new String[]{"cp", "/grouped", "/copy"}));
+        assertEquals("red", repo.getNodeStore().getRoot().getChildNode("copy").getString("colour"));
+        repo.endGroup();
+        repo.close();
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.console.commands;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+import to.adapt.from02oak.repository.Repository;
+import to.adapt.from02oak.repository.TestRepository;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.*;
+
+public class ExplainCommandTest {
+    @Test
+    public void parseCommandLine() {
+        PrintWriter pw = new PrintWriter(new StringWriter());
+        assertNull(new ExplainCommand().parseCommandLine(pw, new String[]{"explain"}));
+
+        ExplainCommand.Options o = new ExplainCommand().parseCommandLine(pw,
+                "explain --strict 10 SELECT * FROM [nt:base] WHERE colour = 'red'".split(" "));
+        assertNotNull(o);
+        assertEquals("SELECT * FROM [nt:base] WHERE colour = 'red'", o.statement);
+        assertEquals(Long.valueOf(10), o.strict);
+        assertFalse(o.profile);
+    }
+
+    @Test
+    public void parsePlanAndLogs() {
+        assertEquals(ImmutableList.of("property"),
+                ExplainCommand.indexes("[nt:base] as [a] /* property colour = red */"));
+        assertEquals(ImmutableList.of("traverse"),
+                ExplainCommand.indexes("[nt:base] as [a] /* traverse \"*\" where [a].[p] = 1 */"));
+
+        Map<String, Double> costs = ExplainCommand.costs(ImmutableList.of(
+                "cost using filter Filter(...)", "cost for property is 33.0", "cost for traverse is 1000.0"));
+        assertEquals(33.0, costs.get("property"), 0);
+        assertEquals(1000.0, ExplainCommand.cost(ImmutableList.of("traverse"), costs), 0);
+
+        assertTrue("unknown cost", Double.isNaN(ExplainCommand.cost(ImmutableList.of("lucene:colour"), costs)));
+
+        assertEquals(2000, ExplainCommand.traversed(ImmutableList.of("Traversed 1000 nodes", "Traversed 2000 nodes")));
+        assertEquals(-1, ExplainCommand.traversed(ImmutableList.of("nothing")));
+    }
+
+    @Test
+    public void advancedIndexCost() {
+        String plan = "[nt:base] as [a] /* lucene:colour(/oak:index/colour) colour:red\n  where [a].[colour] = 'red' */";
+        List<String> indexes = ExplainCommand.indexes(plan);
+        assertEquals(ImmutableList.of("lucene:colour(/oak:index/colour)"), indexes);
+
+        Map<String, Double> costs = ExplainCommand.costs(ImmutableList.of(
+                "cost using filter Filter(query=select [jcr:path] from [nt:base] as [a] where [colour] = 'red')",
+                "cost for [/oak:index/colour] of type (lucene-property) with plan "
+                        + "[lucene:colour(/oak:index/colour) colour:red] is 2.05",
+                "cost for property is Infinity",
+                "cost for traverse is 1200.0"));
+        assertEquals(2.05, costs.get("lucene:colour(/oak:index/colour)"), 0);
+        assertEquals(1200.0, costs.get("traverse"), 0);
+        assertEquals(2.05, ExplainCommand.cost(indexes, costs), 0);
+    }
+
+    @Test
+    public void explainColourQuery() throws Exception {
+        Repository repo = new TestRepository();
+        StringWriter sw = new StringWriter();
+
+        int code = new ExplainCommand().execute(new PrintWriter(sw),
+                "explain --profile SELECT * FROM [nt:base] WHERE colour = 'red'".split(" "));
+        assertEquals(sw.toString(), 0, code);
+        assertThat(sw.toString(), containsString("property"));
+        assertThat(sw.toString(), containsString("rows:"));
+        repo.close();
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.console.commands;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import org.apache.jackrabbit.oak.api.Blob;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import to.adapt.from02oak.repository.Repository;
+import to.adapt.from02oak.repository.TestRepository;
+
+import javax.jcr.Session;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ExportCommandTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void parseCommandLine() {
+        PrintWriter pw = new PrintWriter(new StringWriter());
+
+        assertNull(new ExportCommand().parseCommandLine(pw, new String[]{"export", "/a"}));
+        assertNull(new ExportCommand().parseCommandLine(pw, new String[]{"export", "/", "f.jsonl"}));
+        assertNull(new ExportCommand().parseCommandLine(pw, new String[]{"export", "/a", "f.jsonl", "--binaries", "x"}));
+
+        ExportCommand.Options o = new ExportCommand().parseCommandLine(pw,
+                new String[]{"export", "/a", "f.jsonl", "--binaries", "reference"});
+        assertNotNull(o);
+        assertEquals("/a", o.path);
+        assertEquals(ExportCommand.Binaries.REFERENCE, o.binaries);
+    }
+
+    @Test
+    public void roundTrip() throws Exception {
+        Repository repo = new TestRepository();
+        byte[] data = "some binary content".getBytes("UTF-8");
+        NodeBuilder root = repo.getNodeStore().getRoot().builder();
+        NodeBuilder src = root.child("src");
+        src.setProperty("jcr:primaryType", "oak:Unstructured", Type.NAME);
+        src.setProperty("colour", "red");
+        src.setProperty("size", 3L);
+        src.setProperty("ratio", 2.0d);
+        src.setProperty("at", "2016-09-26T10:00:00.000Z", Type.DATE);
+        src.setProperty("sizes", Collections.<Long>emptyList(), Type.LONGS);
+        src.setProperty("tags", ImmutableList.of("x", "y"), Type.STRINGS);
+        Blob blob = repo.getNodeStore().createBlob(new ByteArrayInputStream(data));
+        src.child("child").setProperty("data", blob);
+        repo.merge(root);
+
+        File f = folder.newFile("export.jsonl");
+        StringWriter sw = new StringWriter();
+        assertEquals(sw.toString(), 0, new ExportCommand().execute(new PrintWriter(sw),
+                new String[]{"export", "/src", f.getAbsolutePath()}));
+        assertTrue(sw.toString(), sw.toString().contains("Exported 2 nodes"));
+
+        sw = new StringWriter();
+        assertEquals(sw.toString(), 0, new ImportCommand().execute(new PrintWriter(sw),
+                new String[]{"import", f.getAbsolutePath(), "/copies/dst", "--batch", "1"}));
+
+        NodeState dst = repo.getNodeStore().getRoot().getChildNode("copies").getChildNode("dst");
+        assertEquals("oak:Unstructured", dst.getName("jcr:primaryType"));
+        assertEquals("red", dst.getString("colour"));
+        assertEquals(Type.LONG, dst.getProperty("size").getType());
+        assertEquals(Type.DOUBLE, dst.getProperty("ratio").getType());
+        assertEquals(2.0d, dst.getProperty("ratio").getValue(Type.DOUBLE), 0);
+        PropertyState at = dst.getProperty("at");
+        assertEquals(Type.DATE, at.getType());
+        assertEquals("2016-09-26T10:00:00.000Z", at.getValue(Type.DATE));
+        assertEquals(Type.LONGS, dst.getProperty("sizes").getType());
+        assertEquals(0, dst.getProperty("sizes").count());
+        assertEquals(ImmutableList.of("x", "y"), ImmutableList.copyOf(dst.getProperty("tags").getValue(Type.STRINGS)));
+        Blob copy = dst.getChildNode("child").getProperty("data").getValue(Type.BINARY);
+        assertArrayEquals(data, ByteStreams.toByteArray(copy.getNewStream()));
+        repo.close();
+    }
+
+    @Test
+    public void roundTripInGroup() throws Exception {
+        Repository repo = new TestRepository();
+        repo.beginGroup(100);
+        Session s = repo.borrowSession();
+        s.getRootNode().addNode("grouped").setProperty("colour", "red");
+        repo.save(s);
+        repo.returnSession(s);
+
+        File f = folder.newFile("grouped.jsonl");
+        StringWriter sw = new StringWriter();
+        assertEquals(sw.toString(), 0, new ExportCommand().execute(new PrintWriter(sw),
+                new String[]{"export", "/grouped", f.getAbsolutePath()}));
+        assertTrue(sw.toString(), sw.toString().contains("Exported 1 nodes"));
+
+        s = repo.borrowSession();
+        s.getNode("/grouped").addNode("copies");
+        repo.save(s);
+        repo.returnSession(s);
+
+        sw = new StringWriter();
+        assertEquals(sw.toString(), 0, new ImportCommand().execute(new PrintWriter(sw),
+                new String[]{"import", f.getAbsolutePath(), "/grouped/copies/dst"}));
+        repo.endGroup();
+
+        NodeState copies = repo.getNodeStore().getRoot().getChildNode("grouped").getChildNode("copies");
+        assertEquals("red", copies.getChildNode("dst").getString("colour"));
+        repo.close();
+    }
+}
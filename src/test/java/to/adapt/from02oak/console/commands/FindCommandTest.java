@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.console.commands;
+
+import com.google.common.collect.ImmutableMap;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.junit.Test;
+import to.adapt.from02oak.repository.Repository;
+import to.adapt.from02oak.repository.TestRepository;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+
+public class FindCommandTest {
+    @Test
+    public void statement() {
+        assertEquals("SELECT * FROM [nt:base] WHERE [a] = $v0 AND [b] = $v1",
+                FindCommand.statement(ImmutableMap.of("a", "1", "b", "2")));
+    }
+
+    @Test
+    public void find() throws Exception {
+        Repository repo = new TestRepository();
+        NodeBuilder root = repo.getNodeStore().getRoot().builder();
+        root.child("a").setProperty("jcr:primaryType", "nt:unstructured", Type.NAME)
+                .setProperty("shape", "square").setProperty("size", "large");
+        root.child("b").setProperty("jcr:primaryType", "nt:unstructured", Type.NAME)
+                .setProperty("shape", "square").setProperty("size", "small");
+        repo.merge(root);
+
+        StringWriter sw = new StringWriter();
+        assertEquals(0, new FindCommand().execute(new PrintWriter(sw),
+                new String[]{"find", "shape=square", "size=small"}));
+        assertThat(sw.toString(), containsString("/b"));
+        assertThat(sw.toString(), not(containsString("/a")));
+        assertThat(sw.toString(), containsString("1 nodes found"));
+        repo.close();
+    }
+
+    @Test
+    public void wrongArguments() {
+        FindCommand c = new FindCommand();
+        PrintWriter out = new PrintWriter(new StringWriter());
+        assertNull(c.parseCommandLine(out, new String[]{"find"}));
+        assertNull(c.parseCommandLine(out, new String[]{"find", "shape"}));
+        assertNull(c.parseCommandLine(out, new String[]{"find", "=square"}));
+        assertNull(c.parseCommandLine(out, new String[]{"find", "sha]pe=square"}));
+    }
+}
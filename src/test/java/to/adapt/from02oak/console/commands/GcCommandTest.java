@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.console.commands;
+
+import org.junit.Test;
+import to.adapt.from02oak.repository.TestRepository;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+public class GcCommandTest {
+    @Test(expected = NullPointerException.class)
+    public void parseCommandLineNullArgs() {
+        new GcCommand().parseCommandLine(new PrintWriter(new ByteArrayOutputStream()), null);
+    }
+
+    @Test
+    public void parseCommandLine() {
+        PrintWriter pw = new PrintWriter(new ByteArrayOutputStream());
+
+        GcCommand.Options o = new GcCommand().parseCommandLine(pw, new String[]{"gc"});
+        assertNotNull(o);
+        assertEquals(GcCommand.Action.START, o.action);
+        assertFalse(o.force);
+        assertNull(o.lockWait);
+
+        o = new GcCommand().parseCommandLine(pw, new String[]{"gc", "--force", "--lock-wait", "5"});
+        assertNotNull(o);
+        assertTrue(o.force);
+        assertEquals(Integer.valueOf(5), o.lockWait);
+
+        o = new GcCommand().parseCommandLine(pw, new String[]{"gc", "--cancel"});
+        assertNotNull(o);
+        assertEquals(GcCommand.Action.CANCEL, o.action);
+
+        assertNull(new GcCommand().parseCommandLine(pw, new String[]{"gc", "--cancel", "--status"}));
+        assertNull(new GcCommand().parseCommandLine(pw, new String[]{"gc", "--retries", "many"}));
+    }
+
+    @Test
+    public void notOnMemoryStore() throws Exception {
+        new TestRepository();
+        StringWriter sw = new StringWriter();
+        assertEquals(1, new GcCommand().execute(new PrintWriter(sw), new String[]{"gc"}));
+        assertTrue(sw.toString().contains("segment store"));
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.console.commands;
+
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import to.adapt.from02oak.repository.Repository;
+import to.adapt.from02oak.repository.TestRepository;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.*;
+
+public class ImportCommandTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test(expected = NullPointerException.class)
+    public void parseCommandLineNullArgs() {
+        new ImportCommand().parseCommandLine(new PrintWriter(new ByteArrayOutputStream()), null);
+    }
+
+    @Test
+    public void parseCommandLine() {
+        PrintWriter pw = new PrintWriter(new ByteArrayOutputStream());
+
+        assertNull("file is mandatory", new ImportCommand().parseCommandLine(pw, new String[]{"import"}));
+        assertNull("batch must be positive", new ImportCommand().parseCommandLine(pw, new String[]{"import", "f", "--batch", "0"}));
+        assertNull("unknown format", new ImportCommand().parseCommandLine(pw, new String[]{"import", "f", "--format", "xml"}));
+
+        ImportCommand.Options o = new ImportCommand().parseCommandLine(pw, new String[]{"import", "nodes.csv"});
+        assertNotNull(o);
+        assertEquals(ImportCommand.Format.CSV, o.format);
+        assertEquals(ImportCommand.DEFAULT_BATCH_SIZE, o.batchSize);
+
+        o = new ImportCommand().parseCommandLine(pw, new String[]{"import", "nodes.txt", "--batch", "10"});
+        assertNotNull(o);
+        assertEquals(ImportCommand.Format.JSONL, o.format);
+        assertEquals(10, o.batchSize);
+    }
+
+    @Test
+    public void parseJson() {
+        ImportCommand.Record r = ImportCommand.parseJson(
+                "{\"path\": \"/a/b\", \"type\": \"nt:unstructured\", \"properties\": "
+                + "{\"colour\": \"red\", \"size\": 3, \"tags\": [\"x\", \"y\"], \"on\": true}}");
+        assertEquals("/a/b", r.path);
+        assertEquals("nt:unstructured", r.type);
+        assertEquals("red", r.properties.get("colour"));
+        assertEquals(3L, r.properties.get("size"));
+        assertEquals(Arrays.asList("x", "y"), r.properties.get("tags"));
+        assertEquals(Boolean.TRUE, r.properties.get("on"));
+    }
+
+    @Test
+    public void parseJsonTypes() {
+        ImportCommand.Record r = ImportCommand.parseJson(
+                "{\"path\": \"/a\", \"properties\": {\"at\": \"2016-09-26T10:00:00.000Z\"}, "
+                + "\"types\": {\"at\": \"Date\"}}");
+        assertEquals("Date", r.types.get("at"));
+    }
+
+    @Test
+    public void rebase() {
+        assertEquals("/t", ImportCommand.rebase("/s", "/t", "/s"));
+        assertEquals("/t/a/b", ImportCommand.rebase("/s", "/t", "/s/a/b"));
+        try {
+            ImportCommand.rebase("/s", "/t", "/other");
+            fail("outside of the source");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void parseCsv() {
+        ImportCommand.Record r = ImportCommand.parseCsv("/a/b,,colour=red,empty=");
+        assertEquals("/a/b", r.path);
+        assertNull(r.type);
+        assertEquals("red", r.properties.get("colour"));
+        assertEquals("", r.properties.get("empty"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void relativePath() {
+        ImportCommand.parseCsv("a/b,nt:unstructured");
+    }
+
+    @Test
+    public void importFile() throws Exception {
+        Repository repo = new TestRepository();
+        File f = folder.newFile("nodes.csv");
+        Files.write(f.toPath(), Arrays.asList(
+                "# a comment",
+                "/imported/n1,oak:Unstructured,colour=red",
+                "/imported/n2,oak:Unstructured,colour=green",
+                "/imported/deep/n3,,colour=blue"), UTF_8);
+
+        StringWriter sw = new StringWriter();
+        int code = new ImportCommand().execute(new PrintWriter(sw),
+                new String[]{"import", f.getAbsolutePath(), "--batch", "2"});
+        assertEquals(sw.toString(), 0, code);
+
+        NodeState imported = repo.getNodeStore().getRoot().getChildNode("imported");
+        assertEquals("red", imported.getChildNode("n1").getString("colour"));
+        assertEquals("green", imported.getChildNode("n2").getString("colour"));
+        assertEquals("blue", imported.getChildNode("deep").getChildNode("n3").getString("colour"));
+        repo.close();
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.console.commands;
+
+import org.junit.Test;
+import to.adapt.from02oak.repository.Repository;
+import to.adapt.from02oak.repository.TestRepository;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class IndexCommandTest {
+    @Test
+    public void syncByDefault() throws Exception {
+        Repository repo = new TestRepository();
+        StringWriter sw = new StringWriter();
+
+        assertEquals(0, new IndexCommand().execute(new PrintWriter(sw), new String[]{"index"}));
+        assertThat(sw.toString(), containsString("colour"));
+        assertThat(sw.toString(), containsString("sync"));
+        assertThat(sw.toString(), containsString("Async indexing is not running"));
+        repo.close();
+    }
+
+    @Test
+    public void create() throws Exception {
+        Repository repo = new TestRepository();
+        StringWriter sw = new StringWriter();
+
+        assertEquals(0, new IndexCommand().execute(new PrintWriter(sw), new String[]{"index", "create", "title"}));
+        while (repo.getReindexer().isRunning()) {
+            Thread.sleep(10);
+        }
+        assertEquals("completed", repo.getReindexer().getOutcome());
+        assertTrue(repo.getNodeStore().getRoot().getChildNode("oak:index").hasChildNode("title"));
+
+        sw = new StringWriter();
+        assertEquals(0, new IndexCommand().execute(new PrintWriter(sw), new String[]{"index"}));
+        assertThat(sw.toString(), containsString("Building 'title': completed"));
+
+        assertEquals(1, new IndexCommand().execute(new PrintWriter(new StringWriter()),
+                new String[]{"index", "create", "title"}));
+        repo.close();
+    }
+
+    @Test
+    public void wrongArguments() throws Exception {
+        assertEquals(1, new IndexCommand().execute(new PrintWriter(new StringWriter()), new String[]{"index", "foo"}));
+        assertEquals(1, new IndexCommand().execute(new PrintWriter(new StringWriter()), new String[]{"index", "create"}));
+    }
+}
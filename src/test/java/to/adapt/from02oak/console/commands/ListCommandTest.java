@@ -20,6 +20,10 @@
 
 package to.adapt.from02oak.console.commands;
 
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeStore;
 import org.junit.Test;
 import to.adapt.from02oak.repository.Repository;
 import to.adapt.from02oak.repository.TestRepository;
@@ -57,4 +61,46 @@ public class ListCommandTest {
             if (writer != null) { writer.close(); }
         }
     }
+
+    @Test
+    public void paging() throws IOException {
+        Repository repo = new TestRepository();
+        StringWriter writer = new StringWriter();
+        PrintWriter pw = new PrintWriter(writer);
+
+        assertEquals(0, CMD.execute(pw, new String[]{"ls", "/unitedcolours", "--count-only"}));
+        assertEquals("100", writer.toString().trim());
+
+        writer.getBuffer().setLength(0);
+        assertEquals(0, CMD.execute(pw, new String[]{"ls", "/unitedcolours", "--count-only", "--prefix", "n09"}));
+        assertEquals("10", writer.toString().trim());
+
+        writer.getBuffer().setLength(0);
+        assertEquals(0, CMD.execute(pw, new String[]{"ls", "/unitedcolours", "--offset", "95", "--limit", "3"}));
+        String[] lines = writer.toString().split("\\R");
+        assertEquals(4, lines.length);
+        assertTrue(lines[3].contains("--offset 98"));
+
+        writer.getBuffer().setLength(0);
+        assertEquals(0, CMD.execute(pw, new String[]{"ls", "/unitedcolours", "--offset", "98"}));
+        assertEquals(2, writer.toString().split("\\R").length);
+
+        writer.getBuffer().setLength(0);
+        assertEquals(1, CMD.execute(pw, new String[]{"ls", "/not/there"}));
+        repo.close();
+    }
+
+    @Test
+    public void countSkipsHidden() throws Exception {
+        Repository repo = new TestRepository();
+        NodeStore store = repo.getNodeStore();
+        NodeBuilder root = store.getRoot().builder();
+        root.getChildNode("unitedcolours").child(":hidden");
+        store.merge(root, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+
+        StringWriter writer = new StringWriter();
+        assertEquals(0, CMD.execute(new PrintWriter(writer), new String[]{"ls", "/unitedcolours", "--count-only"}));
+        assertEquals("100", writer.toString().trim());
+        repo.close();
+    }
 }
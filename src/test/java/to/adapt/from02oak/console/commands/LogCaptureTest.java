@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+
+
+package to.adapt.from02oak.console.commands;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class LogCaptureTest {
+    private static final String NAME = "to.adapt.from02oak.test.capture";
+
+    @Test
+    public void currentThreadOnly() throws Exception {
+        Logger log = LoggerFactory.getLogger(NAME + ".child");
+        assertFalse(log.isDebugEnabled());
+
+        try (LogCapture outer = new LogCapture(NAME)) {
+            try (LogCapture inner = new LogCapture(NAME)) {
+                assertTrue(log.isDebugEnabled());
+                log.debug("cost {}", 42);
+                assertEquals("cost 42", inner.getMessages().get(0));
+            }
+            assertTrue("still captured by the outer one", log.isDebugEnabled());
+
+            AtomicBoolean enabled = new AtomicBoolean();
+            Thread other = new Thread(() -> {
+                enabled.set(log.isDebugEnabled());
+                log.debug("other thread");
+            });
+            other.start();
+            other.join();
+            assertFalse(enabled.get());
+            assertEquals(1, outer.getMessages().size());
+        }
+
+        assertFalse("level untouched", log.isDebugEnabled());
+        assertNull(((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(NAME)).getLevel());
+    }
+}
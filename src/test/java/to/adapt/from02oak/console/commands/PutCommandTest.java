@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.console.commands;
+
+import com.google.common.io.ByteStreams;
+import org.apache.jackrabbit.oak.api.Blob;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import to.adapt.from02oak.repository.Repository;
+import to.adapt.from02oak.repository.TestRepository;
+
+import javax.jcr.Session;
+import java.io.File;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.*;
+
+public class PutCommandTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void parseCommandLine() throws Exception {
+        PrintWriter pw = new PrintWriter(new StringWriter());
+        File f = folder.newFile("a.txt");
+
+        assertNull(new PutCommand().parseCommandLine(pw, new String[]{"put", "/a", "data"}));
+        assertNull(new PutCommand().parseCommandLine(pw, new String[]{"put", "a", "data", f.getPath()}));
+        assertNull(new PutCommand().parseCommandLine(pw, new String[]{"put", "/a", "data", "/not/there"}));
+        assertNull(new PutCommand().parseCommandLine(pw, new String[]{"put", "/a", "data", f.getPath(), "--threads", "0"}));
+
+        PutCommand.Options o = new PutCommand().parseCommandLine(pw, new String[]{"put", "/a", "data", f.getPath()});
+        assertNotNull(o);
+        assertEquals(PutCommand.DEFAULT_BATCH_SIZE, o.batchSize);
+    }
+
+    @Test
+    public void toRelativePath() {
+        assertEquals("b/c.txt", PutCommand.toRelativePath(Paths.get("/a"), Paths.get("/a/b/c.txt")));
+        assertEquals("b%5B1%5D", PutCommand.toRelativePath(Paths.get("/a"), Paths.get("/a/b[1]")));
+    }
+
+    @Test
+    public void putDirectory() throws Exception {
+        Repository repo = new TestRepository();
+        File dir = folder.newFolder("files");
+        new File(dir, "sub").mkdir();
+        Files.write(new File(dir, "one.txt").toPath(), "one".getBytes(UTF_8));
+        Files.write(new File(dir, "sub/two.txt").toPath(), "two".getBytes(UTF_8));
+
+        StringWriter sw = new StringWriter();
+        int code = new PutCommand().execute(new PrintWriter(sw),
+                new String[]{"put", "/uploads", "data", dir.getPath(), "--threads", "2", "--batch", "1"});
+        assertEquals(sw.toString(), 0, code);
+        assertTrue(sw.toString(), sw.toString().contains("Uploaded 2 files, 6 bytes"));
+
+        NodeState uploads = repo.getNodeStore().getRoot().getChildNode("uploads");
+        assertEquals("one", read(uploads.getChildNode("one.txt").getProperty("data").getValue(Type.BINARY)));
+        assertEquals("two", read(uploads.getChildNode("sub").getChildNode("two.txt").getProperty("data").getValue(Type.BINARY)));
+        repo.close();
+    }
+
+    @Test
+    public void putTwice() throws Exception {
+        Repository repo = TestRepository.onDisk(folder.newFolder("repository"));
+        File f = folder.newFile("big.bin");
+        // bigger than what the segments inline
+        byte[] data = new byte[64 * 1024];
+        new Random(42).nextBytes(data);
+        Files.write(f.toPath(), data);
+
+        StringWriter sw = new StringWriter();
+        assertEquals(sw.toString(), 0, new PutCommand().execute(new PrintWriter(sw),
+                new String[]{"put", "/first", "data", f.getPath()}));
+        assertTrue(sw.toString(), sw.toString().contains("stored:       65536 bytes"));
+
+        sw = new StringWriter();
+        assertEquals(sw.toString(), 0, new PutCommand().execute(new PrintWriter(sw),
+                new String[]{"put", "/second", "data", f.getPath()}));
+        assertTrue(sw.toString(), sw.toString().contains("stored:       0 bytes"));
+        assertTrue(sw.toString(), sw.toString().contains("deduplicated: 65536 bytes"));
+        repo.close();
+    }
+
+    @Test
+    public void putInGroup() throws Exception {
+        Repository repo = new TestRepository();
+        repo.beginGroup(100);
+        Session s = repo.borrowSession();
+        s.getRootNode().addNode("grouped").setProperty("colour", "red");
+        repo.save(s);
+        repo.returnSession(s);
+
+        File f = folder.newFile("one.txt");
+        Files.write(f.toPath(), "one".getBytes(UTF_8));
+        assertEquals(0, new PutCommand().execute(new PrintWriter(new StringWriter()),
+                new String[]{"put", "/grouped/one.txt", "data", f.getPath()}));
+        repo.endGroup();
+
+        NodeState grouped = repo.getNodeStore().getRoot().getChildNode("grouped");
+        assertEquals("red", grouped.getString("colour"));
+        assertEquals("one", read(grouped.getChildNode("one.txt").getProperty("data").getValue(Type.BINARY)));
+        repo.close();
+    }
+
+    private static String read(Blob b) throws Exception {
+        try (InputStream in = b.getNewStream()) {
+            return new String(ByteStreams.toByteArray(in), UTF_8);
+        }
+    }
+}
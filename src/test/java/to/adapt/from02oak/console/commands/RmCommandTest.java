@@ -20,14 +20,22 @@
 
 package to.adapt.from02oak.console.commands;
 
-import org.junit.Assert;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.junit.Test;
+import to.adapt.from02oak.repository.Repository;
+import to.adapt.from02oak.repository.TestRepository;
 
+import javax.jcr.Session;
 import java.io.ByteArrayOutputStream;
 import java.io.PrintWriter;
+import java.io.StringWriter;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 
 public class RmCommandTest {
     @Test(expected = NullPointerException.class)
@@ -45,6 +53,65 @@ public class RmCommandTest {
         assertNull(new RmCommand().parseCommandLine(new PrintWriter(new ByteArrayOutputStream()), new String[0]));
         assertNull(new RmCommand().parseCommandLine(new PrintWriter(new ByteArrayOutputStream()), new String[]{"rm"}));
 
-        assertEquals("/path/to/node", new RmCommand().parseCommandLine(new PrintWriter(new ByteArrayOutputStream()), new String[]{"rm", "/path/to/node"}));
+        RmCommand.Options o = new RmCommand().parseCommandLine(new PrintWriter(new ByteArrayOutputStream()), new String[]{"rm", "/path/to/node"});
+        assertEquals("/path/to/node", o.path);
+        assertFalse(o.chunked);
+    }
+
+    @Test
+    public void parseChunked() {
+        PrintWriter pw = new PrintWriter(new ByteArrayOutputStream());
+        RmCommand.Options o = new RmCommand().parseCommandLine(pw,
+                new String[]{"rm", "--chunked", "--batch", "10", "--threads", "2", "/path"});
+        assertTrue(o.chunked);
+        assertEquals(10, o.batchSize);
+        assertEquals(2, o.threads);
+
+        assertNull(new RmCommand().parseCommandLine(pw, new String[]{"rm", "--batch", "10", "/path"}));
+        assertNull(new RmCommand().parseCommandLine(pw, new String[]{"rm", "--chunked", "/"}));
+        assertNull(new RmCommand().parseCommandLine(pw, new String[]{"rm", "--chunked", "--batch", "0", "/path"}));
+    }
+
+    @Test
+    public void chunked() throws Exception {
+        Repository repo = new TestRepository();
+        NodeBuilder root = repo.getNodeStore().getRoot().builder();
+        for (int i = 0; i < 10; i++) {
+            for (int j = 0; j < 10; j++) {
+                root.child("big").child("a" + i).child("b" + j);
+            }
+        }
+        repo.merge(root);
+
+        StringWriter sw = new StringWriter();
+        assertEquals(0, new RmCommand().execute(new PrintWriter(sw),
+                new String[]{"rm", "--chunked", "--batch", "7", "/big"}));
+        assertThat(sw.toString(), containsString("Removed 111 nodes"));
+        assertFalse(repo.getNodeStore().getRoot().hasChildNode("big"));
+
+        assertEquals(1, new RmCommand().execute(new PrintWriter(new StringWriter()),
+                new String[]{"rm", "--chunked", "/big"}));
+        repo.close();
+    }
+
+    @Test
+    public void chunkedInGroup() throws Exception {
+        Repository repo = new TestRepository();
+        NodeBuilder root = repo.getNodeStore().getRoot().builder();
+        root.child("big").child("a");
+        repo.merge(root);
+
+        repo.beginGroup(100);
+        Session s = repo.borrowSession();
+        s.getNode("/big").addNode("grouped");
+        repo.save(s);
+        repo.returnSession(s);
+
+        StringWriter sw = new StringWriter();
+        assertEquals(0, new RmCommand().execute(new PrintWriter(sw), new String[]{"rm", "--chunked", "/big"}));
+        assertThat(sw.toString(), containsString("Removed 3 nodes"));
+        repo.endGroup();
+        assertFalse(repo.getNodeStore().getRoot().hasChildNode("big"));
+        repo.close();
     }
 }
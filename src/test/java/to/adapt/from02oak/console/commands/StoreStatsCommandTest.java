@@ -0,0 +1,47 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.console.commands;
+
+import org.junit.Test;
+import to.adapt.from02oak.repository.TestRepository;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+public class StoreStatsCommandTest {
+    @Test
+    public void notOnMemoryStore() throws Exception {
+        new TestRepository().close();
+        StringWriter sw = new StringWriter();
+        assertEquals(1, new StoreStatsCommand().execute(new PrintWriter(sw), new String[]{"storestats"}));
+        assertThat(sw.toString(), containsString("segment store"));
+    }
+
+    @Test
+    public void wrongArguments() {
+        assertEquals(1, new StoreStatsCommand().execute(new PrintWriter(new StringWriter()),
+                new String[]{"storestats", "foo"}));
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.console.commands;
+
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TimedCommandTest {
+    private static final PrintWriter PW = new PrintWriter(new ByteArrayOutputStream());
+
+    private static class Failing implements Command {
+        @Override
+        public int execute(@Nonnull PrintWriter out, @Nonnull String[] args) throws IOException {
+            if (args.length > 0) {
+                throw new IOException("boom");
+            }
+            return 1;
+        }
+
+        @Override
+        public String getDescription() {
+            return "failing";
+        }
+
+        @Override
+        public boolean isExit() {
+            return false;
+        }
+    }
+
+    @Test
+    public void recordExecutions() throws Exception {
+        TimedCommand c = new TimedCommand(Command.NO_OP);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, c.execute(PW, new String[0]));
+        }
+
+        LatencyStats s = c.getStats();
+        assertEquals(100, s.getCount());
+        assertEquals(0, s.getErrors());
+        double[] p = s.getPercentiles(50, 99);
+        assertTrue(p[0] <= p[1]);
+        assertTrue(p[1] <= s.getMax());
+
+        s.reset();
+        assertEquals(0, s.getCount());
+        assertEquals(0, s.getPercentiles(50)[0], 0);
+    }
+
+    @Test
+    public void recordErrors() throws Exception {
+        TimedCommand c = new TimedCommand(new Failing());
+        assertEquals(1, c.execute(PW, new String[0]));
+        try {
+            c.execute(PW, new String[]{"throw"});
+            fail("exception expected");
+        } catch (IOException e) {
+            // expected
+        }
+
+        assertEquals(2, c.getStats().getCount());
+        assertEquals(2, c.getStats().getErrors());
+    }
+
+    @Test
+    public void everyCommandIsTimed() {
+        for (Commands c : Commands.values()) {
+            assertTrue(c.getCommand() instanceof TimedCommand);
+        }
+    }
+}
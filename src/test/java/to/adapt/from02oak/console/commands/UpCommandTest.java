@@ -22,7 +22,11 @@ package to.adapt.from02oak.console.commands;
 
 import org.junit.Assert;
 import org.junit.Test;
+import to.adapt.from02oak.repository.Repository;
+import to.adapt.from02oak.repository.TestRepository;
 
+import javax.jcr.Node;
+import javax.jcr.Session;
 import java.io.ByteArrayOutputStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
@@ -30,6 +34,7 @@ import java.util.Arrays;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import static org.hamcrest.CoreMatchers.containsString;
 import static org.junit.Assert.*;
 
 public class UpCommandTest {
@@ -114,4 +119,86 @@ public class UpCommandTest {
         assertNull(new UpCommand().parseCommandLine(pw, new String[]{"up", "/mickey/mouse"}));
         assertTrue(sw.getBuffer().length() > 0);
     }
+
+    @Test
+    public void parseCommandLineWhere() {
+        StringWriter sw = new StringWriter();
+        PrintWriter pw = new PrintWriter(sw);
+
+        UpCommand.Instruction i = new UpCommand().parseCommandLine(pw,
+                new String[]{"up", "--where", "[colour] = 'red'", "--edit", "colour", "blue", "--threads", "2"});
+        assertNotNull(i);
+        assertEquals(UpCommand.Operation.EDIT, i.op);
+        assertNull(i.path);
+        assertEquals("[colour] = 'red'", i.where);
+        assertEquals("blue", i.values.get(0));
+        assertEquals(UpCommand.DEFAULT_BULK_BATCH_SIZE, i.batchSize);
+        assertEquals(2, i.threads);
+
+        i = new UpCommand().parseCommandLine(pw, new String[]{"up", "--where", "[colour] = 'red'", "--delete", "colour"});
+        assertNotNull(i);
+        assertEquals(UpCommand.Operation.DELETE, i.op);
+
+        assertNull("batch needs where", new UpCommand().parseCommandLine(pw,
+                new String[]{"up", "/mickey/mouse", "--delete", "colour", "--batch", "10"}));
+        assertNull(new UpCommand().parseCommandLine(pw,
+                new String[]{"up", "--where", "[colour] = 'red'", "--delete", "colour", "--batch", "0"}));
+    }
+
+    @Test
+    public void where() throws Exception {
+        Repository repo = new TestRepository();
+        Session s = repo.borrowSession();
+        Node parent = s.getRootNode().addNode("bulk");
+        for (int i = 0; i < 50; i++) {
+            parent.addNode("n" + i).setProperty("colour", i % 2 == 0 ? "red" : "green");
+        }
+        s.save();
+        repo.returnSession(s);
+
+        StringWriter sw = new StringWriter();
+        assertEquals(0, new UpCommand().execute(new PrintWriter(sw), new String[]{"up", "--where",
+                "[colour] = 'red'", "--edit", "colour", "blue", "--batch", "7", "--threads", "3"}));
+        assertThat(sw.toString(), containsString("Updated 25 of 25"));
+
+        s = repo.borrowSession();
+        for (int i = 0; i < 50; i++) {
+            assertEquals(i % 2 == 0 ? "blue" : "green", s.getNode("/bulk/n" + i).getProperty("colour").getString());
+        }
+        repo.returnSession(s);
+
+        assertEquals(0, new UpCommand().execute(new PrintWriter(new StringWriter()),
+                new String[]{"up", "--where", "[colour] = 'green'", "--delete", "colour"}));
+        s = repo.borrowSession();
+        assertFalse(s.getNode("/bulk/n1").hasProperty("colour"));
+        repo.returnSession(s);
+
+        assertEquals(1, new UpCommand().execute(new PrintWriter(new StringWriter()),
+                new String[]{"up", "--where", "[colour] = 'blue'", "--delete", "colour", "--threads", "100"}));
+        repo.close();
+    }
+
+    @Test
+    public void whereInGroup() throws Exception {
+        Repository repo = new TestRepository();
+        repo.beginGroup(100);
+        Session s = repo.borrowSession();
+        Node parent = s.getRootNode().addNode("grouped");
+        for (int i = 0; i < 10; i++) {
+            parent.addNode("n" + i).setProperty("colour", "red");
+        }
+        repo.save(s);
+        repo.returnSession(s);
+
+        StringWriter sw = new StringWriter();
+        assertEquals(0, new UpCommand().execute(new PrintWriter(sw), new String[]{"up", "--where",
+                "[colour] = 'red'", "--edit", "colour", "blue"}));
+        assertThat("pending changes of the group are visible", sw.toString(), containsString("Updated 10 of 10"));
+        repo.endGroup();
+
+        s = repo.borrowSession();
+        assertEquals("blue", s.getNode("/grouped/n0").getProperty("colour").getString());
+        repo.returnSession(s);
+        repo.close();
+    }
 }
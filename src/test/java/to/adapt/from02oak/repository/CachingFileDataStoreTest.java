@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.repository;
+
+import com.google.common.io.ByteStreams;
+import org.apache.jackrabbit.core.data.DataIdentifier;
+import org.apache.jackrabbit.core.data.DataRecord;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CachingFileDataStoreTest {
+    private static final int KB = 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private CachingFileDataStore ds;
+
+    @Before
+    public void setUp() {
+        ds = new CachingFileDataStore(100 * KB, 32 * KB);
+        ds.setPath(folder.getRoot().getPath());
+        ds.init(null);
+    }
+
+    private static byte[] random(int size, long seed) {
+        byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    private DataIdentifier add(byte[] data) throws Exception {
+        return ds.addRecord(new ByteArrayInputStream(data)).getIdentifier();
+    }
+
+    private byte[] read(DataIdentifier id) throws Exception {
+        DataRecord r = ds.getRecord(id);
+        try (InputStream in = r.getStream()) {
+            return ByteStreams.toByteArray(in);
+        }
+    }
+
+    @Test
+    public void hitsAndMisses() throws Exception {
+        byte[] data = random(10 * KB, 1);
+        DataIdentifier id = add(data);
+
+        assertArrayEquals(data, read(id));
+        assertArrayEquals(data, read(id));
+        assertEquals(1, ds.getMisses());
+        assertEquals(1, ds.getHits());
+        assertEquals(10 * KB, ds.getCachedBytes());
+        assertEquals(10 * KB, ds.getRecord(id).getLength());
+    }
+
+    @Test
+    public void bigRecordsBypass() throws Exception {
+        byte[] data = random(64 * KB, 2);
+        DataIdentifier id = add(data);
+
+        assertArrayEquals(data, read(id));
+        assertArrayEquals(data, read(id));
+        assertEquals(0, ds.getHits());
+        assertEquals(2, ds.getBypassed());
+        assertEquals(0, ds.getCachedBytes());
+    }
+
+    @Test
+    public void eviction() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            read(add(random(10 * KB, 10 + i)));
+        }
+        assertTrue(ds.getEvictions() > 0);
+        assertTrue(ds.getCachedBytes() <= 100 * KB);
+    }
+
+    @Test
+    public void delete() throws Exception {
+        DataIdentifier id = add(random(10 * KB, 3));
+        read(id);
+        ds.deleteRecord(id);
+        assertNull(ds.getRecordIfStored(id));
+        assertEquals(0, ds.getCachedBytes());
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.repository;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CheckpointsTest {
+    private Repository repo;
+    private Checkpoints checkpoints;
+
+    @Before
+    public void setUp() throws Exception {
+        repo = new TestRepository();
+        checkpoints = repo.getCheckpoints();
+        NodeBuilder root = repo.getNodeStore().getRoot().builder();
+        for (int i = 0; i < 100; i++) {
+            root.child("content").child("n" + i).setProperty("colour", "red");
+        }
+        repo.merge(root);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        repo.close();
+    }
+
+    @Test
+    public void createListRelease() {
+        String cp = checkpoints.create(60000, ImmutableMap.of("label", "test"));
+        assertTrue(checkpoints.list().stream().anyMatch(i -> i.getName().equals(cp)
+                && "test".equals(i.getProperties().get("label"))));
+
+        assertTrue(checkpoints.release(cp));
+        assertFalse(checkpoints.list().stream().anyMatch(i -> i.getName().equals(cp)));
+        assertFalse(checkpoints.release(cp));
+    }
+
+    @Test
+    public void diff() throws Exception {
+        String cp = checkpoints.create(60000, ImmutableMap.of());
+        NodeBuilder root = repo.getNodeStore().getRoot().builder();
+        NodeBuilder content = root.getChildNode("content");
+        content.getChildNode("n1").setProperty("colour", "blue");
+        content.getChildNode("n2").remove();
+        content.child("new").child("deep");
+        repo.merge(root);
+
+        List<String> changes = Lists.newArrayList();
+        long compared = checkpoints.diff(cp, "/content", (change, path, property) -> changes.add(change + " " + path));
+
+        assertEquals(3, changes.size());
+        assertTrue(changes.contains("CHANGED /content/n1/colour"));
+        assertTrue(changes.contains("REMOVED /content/n2"));
+        assertTrue(changes.contains("ADDED /content/new"));
+        // the unchanged siblings are not visited
+        assertTrue(compared < 10);
+
+        changes.clear();
+        checkpoints.diff(cp, "/content/n3", (change, path, property) -> changes.add(path));
+        assertTrue(changes.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingCheckpoint() {
+        checkpoints.diff("missing", "/", (change, path, property) -> true);
+    }
+}
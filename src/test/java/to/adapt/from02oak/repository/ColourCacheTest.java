@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.repository;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.jcr.Session;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class ColourCacheTest {
+    private Repository repo;
+    private ColourCache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        repo = new TestRepository();
+        cache = repo.getColourCache();
+        assertNotNull(cache);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        repo.close();
+    }
+
+    @Test
+    public void putAndGet() {
+        cache.put("red", ImmutableList.of("/a", "/b"), cache.getGeneration());
+        assertEquals(ImmutableList.of("/a", "/b"), cache.get("red"));
+        assertNull(cache.get("green"));
+    }
+
+    @Test
+    public void staleResultsAreNotCached() {
+        long generation = cache.getGeneration();
+        cache.invalidateAll();
+        cache.put("red", ImmutableList.of("/a"), generation);
+        assertNull(cache.get("red"));
+    }
+
+    @Test
+    public void bigResultsAreNotCached() {
+        cache.put("red", Collections.nCopies(ColourCache.MAX_CACHED_PATHS + 1, "/a"), cache.getGeneration());
+        assertNull(cache.get("red"));
+    }
+
+    @Test
+    public void invalidatedOnColourChange() throws Exception {
+        cache.put("red", ImmutableList.of("/a"), cache.getGeneration());
+
+        Session s = repo.login(Repository.ADMIN);
+        try {
+            s.getNode("/unitedcolours/n000").setProperty("colour", "purple");
+            s.save();
+        } finally {
+            s.logout();
+        }
+
+        // observation is asynchronous
+        long deadline = System.currentTimeMillis() + 10000;
+        while (cache.get("red") != null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertNull(cache.get("red"));
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.repository;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.jackrabbit.oak.plugins.index.IndexUtils;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.junit.Test;
+
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.ASYNC_PROPERTY_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_CONTENT_NODE_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.REINDEX_PROPERTY_NAME;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ReindexerTest {
+    @Test
+    public void resume() throws Exception {
+        Repository repo = new TestRepository();
+        // as left by a shutdown while building
+        NodeBuilder root = repo.getNodeStore().getRoot().builder();
+        IndexUtils.createIndexDefinition(IndexUtils.getOrCreateOakIndex(root), "size", false, false,
+                ImmutableList.of("size"), null).setProperty(ASYNC_PROPERTY_NAME, Reindexer.LANE);
+        for (int i = 0; i < 10; i++) {
+            root.child("sized").child("n" + i).setProperty("size", (long) i);
+        }
+        repo.merge(root);
+
+        Reindexer reindexer = repo.getReindexer();
+        reindexer.resume();
+        while (reindexer.isRunning()) {
+            Thread.sleep(50);
+        }
+
+        assertEquals("completed", reindexer.getOutcome());
+        NodeState def = repo.getNodeStore().getRoot().getChildNode(INDEX_DEFINITIONS_NAME).getChildNode("size");
+        assertFalse(def.hasProperty(ASYNC_PROPERTY_NAME));
+        assertFalse(def.getBoolean(REINDEX_PROPERTY_NAME));
+        assertTrue(def.getChildNode(INDEX_CONTENT_NODE_NAME).hasChildNode("5"));
+        repo.close();
+    }
+}
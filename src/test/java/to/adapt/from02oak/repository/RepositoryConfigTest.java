@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.repository;
+
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RepositoryConfigTest {
+    @Test
+    public void defaults() {
+        RepositoryConfig c = RepositoryConfig.fromProperties(new Properties());
+        assertEquals("repository", c.getRepositoryPath());
+        assertEquals("repository/segment-tar", c.getSegmentPath());
+        assertEquals("repository/datastore", c.getDataStorePath());
+        assertNull(c.getSegmentCacheSize());
+        assertNull(c.getMemoryMapping());
+        assertTrue(c.getAsyncIndexes().isEmpty());
+        assertNull(c.getBlobCacheSize());
+    }
+
+    @Test
+    public void fromProperties() {
+        Properties p = new Properties();
+        p.setProperty(RepositoryConfig.REPOSITORY_PATH, "/tmp/repo");
+        p.setProperty(RepositoryConfig.SEGMENT_CACHE_SIZE, " 512 ");
+        p.setProperty(RepositoryConfig.MEMORY_MAPPING, "false");
+        p.setProperty(RepositoryConfig.MAX_TAR_SIZE, "128");
+        p.setProperty(RepositoryConfig.SESSION_POOL_SIZE, "2");
+        p.setProperty(RepositoryConfig.ASYNC_INDEXES, "colour, size,");
+        p.setProperty(RepositoryConfig.ASYNC_INTERVAL, "1");
+        p.setProperty(RepositoryConfig.LUCENE_PROPERTIES, "colour,p0");
+        p.setProperty(RepositoryConfig.BLOB_CACHE_SIZE, "64");
+        p.setProperty(RepositoryConfig.BLOB_CACHE_MAX_RECORD, "128");
+
+        RepositoryConfig c = RepositoryConfig.fromProperties(p);
+        assertEquals("/tmp/repo/segment-tar", c.getSegmentPath());
+        assertEquals(Integer.valueOf(512), c.getSegmentCacheSize());
+        assertEquals(Boolean.FALSE, c.getMemoryMapping());
+        assertEquals(Integer.valueOf(128), c.getMaxTarSize());
+        assertEquals(2, c.getSessionPoolSize());
+        assertEquals(ImmutableSet.of("colour", "size"), c.getAsyncIndexes());
+        assertEquals(1, c.getAsyncInterval());
+        assertEquals(ImmutableSet.of("colour", "p0"), c.getLuceneProperties());
+        assertEquals(Integer.valueOf(64), c.getBlobCacheSize());
+        assertEquals(128, c.getBlobCacheMaxRecord());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void notANumber() {
+        Properties p = new Properties();
+        p.setProperty(RepositoryConfig.STRING_CACHE_SIZE, "lots");
+        RepositoryConfig.fromProperties(p);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeSize() {
+        new RepositoryConfig().setTemplateCacheSize(-1);
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.repository;
+
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class SegmentStoreStatsTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void statistics() throws Exception {
+        Repository repo = new Repository(new RepositoryConfig().setRepositoryPath(folder.getRoot().getPath()));
+        try {
+            SegmentStoreStats stats = repo.getSegmentStoreStats();
+            assertNotNull(stats);
+
+            NodeBuilder root = repo.getNodeStore().getRoot().builder();
+            for (int i = 0; i < 1000; i++) {
+                root.child("stats").child("n" + i).setProperty("p", "value " + i);
+            }
+            repo.merge(root);
+            assertEquals("value 1",
+                    repo.getNodeStore().getRoot().getChildNode("stats").getChildNode("n1").getString("p"));
+
+            // segments reach the tar files asynchronously. Only check the figures are there.
+            assertTrue(stats.getOnDiskSize() >= 0);
+            assertTrue(stats.getWriteThroughput() >= 0);
+            assertEquals(3, stats.getCaches().size());
+            assertTrue(stats.getCaches().get("segment").getRequestCount() >= 0);
+            assertFalse(ManagementFactory.getPlatformMBeanServer()
+                    .queryNames(new ObjectName(SegmentStoreStats.DOMAIN + ":*"), null).isEmpty());
+        } finally {
+            repo.close();
+        }
+        assertTrue(ManagementFactory.getPlatformMBeanServer()
+                .queryNames(new ObjectName(SegmentStoreStats.DOMAIN + ":*"), null).isEmpty());
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.repository;
+
+import org.junit.Test;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SessionPoolTest {
+    @Test
+    public void reuseReturnedSessions() throws Exception {
+        Repository repo = new TestRepository();
+        SessionPool pool = repo.getSessionPool();
+
+        Session s1 = repo.borrowSession();
+        assertEquals(1, pool.getActive());
+        assertEquals(1, pool.getMisses());
+        repo.returnSession(s1);
+        assertEquals(0, pool.getActive());
+        assertEquals(1, pool.getIdle());
+
+        Session s2 = repo.borrowSession();
+        assertSame("idle sessions should be reused", s1, s2);
+        assertEquals(1, pool.getHits());
+        repo.returnSession(s2);
+
+        repo.close();
+    }
+
+    @Test
+    public void pendingChangesAreDiscarded() throws Exception {
+        Repository repo = new TestRepository();
+
+        Session s = repo.borrowSession();
+        s.getRootNode().addNode("notSaved");
+        assertTrue(s.hasPendingChanges());
+        repo.returnSession(s);
+
+        s = repo.borrowSession();
+        assertFalse(s.hasPendingChanges());
+        assertFalse(s.nodeExists("/notSaved"));
+        repo.returnSession(s);
+
+        repo.close();
+    }
+
+    @Test
+    public void leaksReportedOnClose() throws Exception {
+        Repository repo = new TestRepository();
+        SessionPool pool = repo.getSessionPool();
+
+        Session s = repo.borrowSession();
+        pool.close();
+        assertEquals(1, pool.getLeaks());
+        assertFalse(s.isLive());
+
+        repo.close();
+    }
+
+    @Test(expected = RepositoryException.class)
+    public void closedPool() throws Exception {
+        Repository repo = new TestRepository();
+        repo.close();
+        repo.borrowSession();
+    }
+
+    @Test
+    public void nullIsIgnored() throws Exception {
+        Repository repo = new TestRepository();
+        repo.returnSession(null);
+        assertEquals(0, repo.getSessionPool().getActive());
+        repo.close();
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.repository;
+
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SubtreeCopierTest {
+    private Repository repo;
+
+    @Before
+    public void setUp() throws Exception {
+        repo = new TestRepository();
+        NodeBuilder root = repo.getNodeStore().getRoot().builder();
+        NodeBuilder a = root.child("a");
+        for (int i = 0; i < 10; i++) {
+            a.child("n" + i).setProperty("p", i);
+        }
+        root.child("b");
+        repo.merge(root);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        repo.close();
+    }
+
+    @Test
+    public void copy() throws Exception {
+        SubtreeCopier.copy(repo, "/a", "/b/a2");
+
+        NodeState root = repo.getNodeStore().getRoot();
+        assertTrue(root.hasChildNode("a"));
+        NodeState copy = root.getChildNode("b").getChildNode("a2");
+        assertEquals(root.getChildNode("a"), copy);
+        assertEquals(10, copy.getChildNodeCount(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void move() throws Exception {
+        NodeState source = repo.getNodeStore().getRoot().getChildNode("a");
+        SubtreeCopier.move(repo, "/a", "/b/a");
+
+        NodeState root = repo.getNodeStore().getRoot();
+        assertFalse(root.hasChildNode("a"));
+        assertEquals(source, root.getChildNode("b").getChildNode("a"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingSource() throws Exception {
+        SubtreeCopier.copy(repo, "/missing", "/c");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void existingTarget() throws Exception {
+        SubtreeCopier.copy(repo, "/a", "/b");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingTargetParent() throws Exception {
+        SubtreeCopier.copy(repo, "/a", "/c/a");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void belowItself() throws Exception {
+        SubtreeCopier.move(repo, "/a", "/a/n0/a");
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.repository;
+
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SubtreeRemoverTest {
+    private Repository repo;
+
+    @Before
+    public void setUp() throws Exception {
+        repo = new TestRepository();
+        NodeBuilder root = repo.getNodeStore().getRoot().builder();
+        NodeBuilder big = root.child("big");
+        for (int i = 0; i < 20; i++) {
+            NodeBuilder a = big.child("a" + i);
+            for (int j = 0; j < 20; j++) {
+                a.child("b" + j).child("c");
+            }
+        }
+        root.child("keep");
+        repo.merge(root);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        repo.close();
+    }
+
+    @Test
+    public void batches() throws Exception {
+        List<Long> commits = new CopyOnWriteArrayList<>();
+        long removed = new SubtreeRemover(repo, "/big", 50).remove(1, commits::add);
+
+        assertEquals(20 + 20 * 20 * 2 + 1, removed);
+        assertEquals(removed, commits.stream().mapToLong(Long::longValue).sum());
+        assertTrue(commits.size() > 1);
+        for (long c : commits) {
+            // a node is removed right after its last descendant, possibly overflowing by the depth
+            assertTrue(c <= 50 + 3);
+        }
+        NodeState root = repo.getNodeStore().getRoot();
+        assertFalse(root.hasChildNode("big"));
+        assertTrue(root.hasChildNode("keep"));
+    }
+
+    @Test
+    public void parallel() throws Exception {
+        long removed = new SubtreeRemover(repo, "/big", 30).remove(4, n -> {});
+        assertEquals(20 + 20 * 20 * 2 + 1, removed);
+        assertFalse(repo.getNodeStore().getRoot().hasChildNode("big"));
+    }
+
+    @Test
+    public void resume() throws Exception {
+        // stop after the first commit, as if interrupted
+        List<Long> commits = new CopyOnWriteArrayList<>();
+        try {
+            new SubtreeRemover(repo, "/big", 100).remove(1, n -> {
+                commits.add(n);
+                throw new IllegalStateException("stop");
+            });
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals(1, commits.size());
+        assertTrue(repo.getNodeStore().getRoot().hasChildNode("big"));
+
+        long removed = new SubtreeRemover(repo, "/big", 100).remove(2, n -> {});
+        assertEquals(20 + 20 * 20 * 2 + 1 - commits.get(0), removed);
+        assertFalse(repo.getNodeStore().getRoot().hasChildNode("big"));
+    }
+
+    @Test
+    public void missing() throws Exception {
+        assertEquals(0, new SubtreeRemover(repo, "/missing", 10).remove(1, n -> {}));
+    }
+}
@@ -23,6 +23,8 @@ package to.adapt.from02oak.repository;
 import org.apache.jackrabbit.oak.plugins.memory.MemoryNodeStore;
 import org.apache.jackrabbit.oak.spi.state.NodeStore;
 
+import javax.annotation.Nonnull;
+import java.io.File;
 import java.io.IOException;
 
 public class TestRepository extends Repository {
@@ -30,4 +32,13 @@ public class TestRepository extends Repository {
         super(new MemoryNodeStore());
         setRepo(this);
     }
+
+    /**
+     * @return a repository backed by a segment and a file data store in {@code dir}, set as the current one
+     */
+    public static Repository onDisk(@Nonnull File dir) throws IOException {
+        Repository r = new Repository(new RepositoryConfig().setRepositoryPath(dir.getPath()));
+        setRepo(r);
+        return r;
+    }
 }
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.repository.initialisers;
+
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.junit.Test;
+import to.adapt.from02oak.repository.Repository;
+import to.adapt.from02oak.repository.TestRepository;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class ContentGeneratorTest {
+    @Test
+    public void levels() {
+        assertEquals(1, ContentGenerator.levels(100, 1000));
+        assertEquals(1, ContentGenerator.levels(1000, 1000));
+        assertEquals(2, ContentGenerator.levels(1001, 1000));
+        assertEquals(3, ContentGenerator.levels(10000000, 1000));
+    }
+
+    @Test
+    public void relativePath() {
+        ContentGenerator flat = new ContentGenerator(100, 1000, 0, 0);
+        assertEquals("n000", flat.relativePath(0));
+        assertEquals("n099", flat.relativePath(99));
+
+        ContentGenerator bucketed = new ContentGenerator(1000, 10, 0, 0);
+        assertEquals(3, bucketed.getLevels());
+        assertEquals("b00/b00/n000", bucketed.relativePath(0));
+        assertEquals("b01/b02/n123", bucketed.relativePath(123));
+        assertEquals("b09/b09/n999", bucketed.relativePath(999));
+    }
+
+    @Test
+    public void withDepth() {
+        ContentGenerator g = ContentGenerator.withDepth(1000000, 2, 0, 0);
+        assertEquals(2, g.getLevels());
+        assertEquals(1000, g.getFanOut());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidFanOut() {
+        new ContentGenerator(10, 1, 0, 0);
+    }
+
+    @Test
+    public void generateIsRepeatable() throws Exception {
+        Repository repo = new TestRepository();
+        AtomicLong merged = new AtomicLong();
+
+        assertEquals(250, new ContentGenerator(250, 10, 2, 42).generate(repo, "/one", 1, 7, merged::addAndGet));
+        assertEquals(250, new ContentGenerator(250, 10, 2, 42).generate(repo, "/two", 4, 50, merged::addAndGet));
+        assertEquals(500, merged.get());
+
+        NodeState root = repo.getNodeStore().getRoot();
+        for (String p : new String[]{"b00/b00/n000", "b01/b02/n123", "b02/b04/n249"}) {
+            NodeState one = get(root.getChildNode("one"), p);
+            NodeState two = get(root.getChildNode("two"), p);
+            assertTrue(p, one.exists());
+            assertNotNull(one.getString(ContentGenerator.COLOUR));
+            assertEquals(p, one.getString(ContentGenerator.COLOUR), two.getString(ContentGenerator.COLOUR));
+            assertEquals(p, one.getString("p1"), two.getString("p1"));
+        }
+        assertEquals(10, root.getChildNode("one").getChildNode("b01").getChildNodeCount(Long.MAX_VALUE));
+        repo.close();
+    }
+
+    private static NodeState get(NodeState state, String path) {
+        NodeState s = state;
+        for (String name : path.split("/")) {
+            s = s.getChildNode(name);
+        }
+        return s;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package to.adapt.from02oak.repository.initialisers;
+
+import com.google.common.collect.ImmutableSet;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.junit.Test;
+
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
+import static org.junit.Assert.*;
+
+public class LucenePropertyIndexTest {
+    @Test
+    public void definition() {
+        NodeBuilder root = EMPTY_NODE.builder();
+        new LucenePropertyIndex(ImmutableSet.of("colour", "p0"), "async").initialize(root);
+
+        NodeState def = root.getNodeState().getChildNode("oak:index").getChildNode(LucenePropertyIndex.NAME);
+        assertEquals("lucene", def.getString("type"));
+        assertEquals("async", def.getString("async"));
+        NodeState props = def.getChildNode("indexRules").getChildNode("nt:base").getChildNode("properties");
+        assertEquals(ImmutableSet.of("colour", "p0"), ImmutableSet.copyOf(props.getChildNodeNames()));
+        assertTrue(props.getChildNode("p0").getBoolean("propertyIndex"));
+    }
+
+    @Test
+    public void redefinedOnlyWhenPropertiesChange() {
+        NodeBuilder root = EMPTY_NODE.builder();
+        new LucenePropertyIndex(ImmutableSet.of("colour"), "async").initialize(root);
+        NodeBuilder def = root.getChildNode("oak:index").getChildNode(LucenePropertyIndex.NAME);
+        def.setProperty("reindex", false);
+
+        new LucenePropertyIndex(ImmutableSet.of("colour"), "async").initialize(root);
+        assertFalse(def.getBoolean("reindex"));
+
+        new LucenePropertyIndex(ImmutableSet.of("p0"), "async").initialize(root);
+        NodeState props = root.getNodeState().getChildNode("oak:index").getChildNode(LucenePropertyIndex.NAME)
+                .getChildNode("indexRules").getChildNode("nt:base").getChildNode("properties");
+        assertEquals(ImmutableSet.of("p0"), ImmutableSet.copyOf(props.getChildNodeNames()));
+        assertTrue(root.getChildNode("oak:index").getChildNode(LucenePropertyIndex.NAME).getBoolean("reindex"));
+    }
+}